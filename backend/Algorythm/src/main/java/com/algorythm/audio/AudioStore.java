@@ -0,0 +1,233 @@
+package com.algorythm.audio;
+
+import com.algorythm.cache.SegmentedLruCache;
+import com.algorythm.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+
+/**
+ * Local audio files behind songs.audio_file_url.
+ *
+ * The path component of the URL is resolved under audio.root, so
+ * https://cdn.example.com/audio/a.mp3 and audio/a.mp3 both map to
+ * {audio.root}/audio/a.mp3. Files are compared by real path, so neither
+ * ".." nor a symlink can reach outside audio.root. The first
+ * audio.introCacheBytes of each file are kept in a segmented LRU cache of
+ * audio.introCacheEntries, since most plays and seeks-to-start only ever
+ * touch the intro; the cache holds up to the product of the two on the
+ * heap (32 MB by default). Everything else is read through memory-mapped
+ * segments of at most audio.mapSegmentBytes.
+ */
+public class AudioStore {
+    private static final Logger logger = LoggerFactory.getLogger(AudioStore.class);
+    private static volatile AudioStore instance;
+
+    /**
+     * A resolved audio file and the attributes it was resolved with
+     */
+    public static final class AudioFile {
+        private final Path path;
+        private final long length;
+        private final long lastModified;
+        private final String contentType;
+
+        AudioFile(Path path, long length, long lastModified, String contentType) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Strong validator derived from size and modification time
+         */
+        public String getETag() {
+            return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+    }
+
+    private static final class Intro {
+        final long length;
+        final long lastModified;
+        final byte[] bytes;
+
+        Intro(long length, long lastModified, byte[] bytes) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Path root;
+    private final int introBytes;
+    private final int mapSegmentBytes;
+    private final SegmentedLruCache<Path, Intro> intros;
+    // Resolved on first use, since audio.root may be created after startup
+    private volatile Path realRoot;
+
+    AudioStore(Path root, int introBytes, int introCacheEntries, int mapSegmentBytes) {
+        this.root = root.toAbsolutePath().normalize();
+        this.introBytes = introBytes;
+        this.mapSegmentBytes = mapSegmentBytes;
+        this.intros = introBytes > 0 ? new SegmentedLruCache<>(introCacheEntries, 0) : null;
+    }
+
+    /**
+     * Get the shared store, configured from db.properties on first use
+     */
+    public static AudioStore getInstance() {
+        if (instance == null) {
+            synchronized (AudioStore.class) {
+                if (instance == null) {
+                    AudioStore store = new AudioStore(
+                        Paths.get(DatabaseConfig.getProperty("audio.root", "audio")),
+                        DatabaseConfig.getIntProperty("audio.introCacheBytes", 256 * 1024),
+                        DatabaseConfig.getIntProperty("audio.introCacheEntries", 128),
+                        DatabaseConfig.getIntProperty("audio.mapSegmentBytes", 4 * 1024 * 1024));
+                    instance = store;
+                    logger.info("Serving audio from {}", store.root);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Resolve a song's audio_file_url to a readable local file
+     *
+     * @return the file, or null if the URL does not point to a file under audio.root
+     */
+    public AudioFile resolve(String audioFileUrl) throws IOException {
+        if (audioFileUrl == null || audioFileUrl.isEmpty()) {
+            return null;
+        }
+        String relative;
+        try {
+            URI uri = new URI(audioFileUrl);
+            relative = uri.getScheme() != null ? uri.getPath() : audioFileUrl;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (relative == null) {
+            return null;
+        }
+        while (relative.startsWith("/")) {
+            relative = relative.substring(1);
+        }
+
+        Path realRoot = this.realRoot;
+        Path file;
+        try {
+            if (realRoot == null) {
+                realRoot = root.toRealPath();
+                this.realRoot = realRoot;
+            }
+            file = root.resolve(relative).toRealPath();
+        } catch (NoSuchFileException | InvalidPathException e) {
+            return null;
+        }
+        if (!file.startsWith(realRoot) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return new AudioFile(file, attrs.size(), attrs.lastModifiedTime().toMillis(), contentType(file));
+    }
+
+    /**
+     * The cached first bytes of a file, loading them on a miss
+     *
+     * @return the intro (at most audio.introCacheBytes, shorter for short
+     *         files), or null if intro caching is disabled
+     */
+    public byte[] intro(AudioFile file) throws IOException {
+        if (intros == null) {
+            return null;
+        }
+        Intro intro = intros.get(file.path);
+        if (intro != null && intro.length == file.length && intro.lastModified == file.lastModified) {
+            return intro.bytes;
+        }
+
+        byte[] bytes = new byte[(int) Math.min(introBytes, file.length)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+                // keep reading until the intro is full
+            }
+        }
+        if (buffer.hasRemaining()) {
+            // File shrank since it was resolved; don't cache a short read
+            return null;
+        }
+        intros.put(file.path, new Intro(file.length, file.lastModified, bytes));
+        return bytes;
+    }
+
+    /**
+     * Whether a range starting at this offset begins inside the cached intro
+     */
+    public boolean startsInIntro(long position) {
+        return intros != null && position < introBytes;
+    }
+
+    /**
+     * Map the next segment of [position, end) read-only
+     */
+    public ByteBuffer map(FileChannel channel, long position, long end) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapSegmentBytes, end - position));
+    }
+
+    private static String contentType(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        switch (dot >= 0 ? name.substring(dot + 1) : "") {
+            case "mp3":
+                return "audio/mpeg";
+            case "m4a":
+            case "mp4":
+                return "audio/mp4";
+            case "aac":
+                return "audio/aac";
+            case "ogg":
+            case "oga":
+            case "opus":
+                return "audio/ogg";
+            case "flac":
+                return "audio/flac";
+            case "wav":
+                return "audio/wav";
+            default:
+                return "application/octet-stream";
+        }
+    }
+}
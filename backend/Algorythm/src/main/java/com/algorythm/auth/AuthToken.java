@@ -0,0 +1,78 @@
+package com.algorythm.auth;
+
+/**
+ * Claims carried by a verified token
+ */
+public final class AuthToken {
+    private final String tokenId;
+    private final String sessionId;
+    private final Long userId;
+    private final String username;
+    private final String subscriptionType;
+    private final long issuedAt;
+    private final long expiresAt;
+    private final long authTime;
+
+    AuthToken(String tokenId, String sessionId, Long userId, String username, String subscriptionType,
+              long issuedAt, long expiresAt, long authTime) {
+        this.tokenId = tokenId;
+        this.sessionId = sessionId;
+        this.userId = userId;
+        this.username = username;
+        this.subscriptionType = subscriptionType;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+        this.authTime = authTime;
+    }
+
+    /**
+     * Id of this token; every refresh gets a new one
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * Id shared by a login's token and every refresh of it, used for revocation
+     */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Subscription when the token was issued; a change takes effect on the
+     * next refresh
+     */
+    public String getSubscriptionType() {
+        return subscriptionType;
+    }
+
+    /**
+     * Epoch seconds
+     */
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    /**
+     * Epoch seconds
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * When the user logged in, epoch seconds
+     */
+    public long getAuthTime() {
+        return authTime;
+    }
+}
@@ -0,0 +1,144 @@
+package com.algorythm.auth;
+
+import com.algorythm.dao.TokenRevocationDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session ids revoked by a logout on any node, and users whose sessions
+ * were all revoked when the account was deactivated or deleted.
+ *
+ * Lookups only touch the in-memory map. A logout is applied here at once
+ * and written to token_revocations; every node re-reads the recent rows
+ * every auth.revocation.pollMs, so a logout reaches the other nodes within
+ * one poll. Entries are dropped once the tokens they cover have expired,
+ * which keeps the set down to the logouts of the last token lifetime.
+ *
+ * A user revocation is stored as the id "u:{userId}:{epoch seconds}" and
+ * covers every session that user logged in at or before that time.
+ */
+final class RevocationCache {
+    private static final Logger logger = LoggerFactory.getLogger(RevocationCache.class);
+    // Expired rows are deleted from the table every this many polls
+    private static final int PURGE_EVERY_POLLS = 300;
+    private static final String USER_PREFIX = "u:";
+
+    private final TokenRevocationDAO revocationDAO;
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+    // User id -> latest login time (epoch seconds) whose sessions are revoked
+    private final ConcurrentHashMap<Long, Long> usersRevokedBefore = new ConcurrentHashMap<>();
+    private final int windowSeconds;
+    private final ScheduledExecutorService poller;
+    private int polls;
+
+    RevocationCache(long pollMs) {
+        this(new TokenRevocationDAO(), pollMs);
+    }
+
+    RevocationCache(TokenRevocationDAO revocationDAO, long pollMs) {
+        this.revocationDAO = revocationDAO;
+        // Generous overlap so a slow poll or a late commit is never missed
+        this.windowSeconds = (int) Math.max(60, TimeUnit.MILLISECONDS.toSeconds(pollMs) * 5);
+        try {
+            Map<String, Long> active = new HashMap<>();
+            revocationDAO.findActive(active);
+            addAll(active);
+        } catch (SQLException e) {
+            logger.warn("Could not load token revocations, relying on the next poll", e);
+        }
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "token-revocation-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollMs, pollMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether the session was logged out, or its user's sessions up to
+     * authTime were revoked
+     */
+    boolean isRevoked(String sessionId, long userId, long authTime) {
+        if (revoked.containsKey(sessionId)) {
+            return true;
+        }
+        Long before = usersRevokedBefore.get(userId);
+        return before != null && authTime <= before;
+    }
+
+    /**
+     * Revoke on this node now and on the others at their next poll
+     */
+    void revoke(String sessionId, long expiresAtMillis) throws SQLException {
+        revoked.put(sessionId, expiresAtMillis);
+        revocationDAO.insert(sessionId, expiresAtMillis);
+    }
+
+    /**
+     * Revoke every session of the user that logged in at or before
+     * authTimeSeconds
+     */
+    void revokeUser(long userId, long authTimeSeconds, long expiresAtMillis) throws SQLException {
+        String id = USER_PREFIX + userId + ":" + authTimeSeconds;
+        add(id, expiresAtMillis);
+        revocationDAO.insert(id, expiresAtMillis);
+    }
+
+    private void addAll(Map<String, Long> rows) {
+        for (Map.Entry<String, Long> row : rows.entrySet()) {
+            add(row.getKey(), row.getValue());
+        }
+    }
+
+    private void add(String id, long expiresAtMillis) {
+        revoked.put(id, expiresAtMillis);
+        if (id.startsWith(USER_PREFIX)) {
+            int colon = id.indexOf(':', USER_PREFIX.length());
+            try {
+                long userId = Long.parseLong(id.substring(USER_PREFIX.length(), colon));
+                long before = Long.parseLong(id.substring(colon + 1));
+                usersRevokedBefore.merge(userId, before, Math::max);
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                logger.warn("Ignoring malformed user revocation {}", id);
+            }
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            Map<String, Long> recent = new HashMap<>();
+            revocationDAO.findRecent(windowSeconds, recent);
+            addAll(recent);
+            long now = System.currentTimeMillis();
+            revoked.values().removeIf(expiresAt -> expiresAt <= now);
+            // The latest revocation of a user expires last, so its row outlives the older ones
+            usersRevokedBefore.entrySet().removeIf(
+                e -> !revoked.containsKey(USER_PREFIX + e.getKey() + ":" + e.getValue()));
+            if (++polls >= PURGE_EVERY_POLLS) {
+                polls = 0;
+                int purged = revocationDAO.deleteExpired();
+                if (purged > 0) {
+                    logger.debug("Purged {} expired token revocations", purged);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.error("Token revocation poll failed", e);
+        }
+    }
+
+    int size() {
+        return revoked.size();
+    }
+
+    void shutdown() {
+        poller.shutdownNow();
+    }
+}
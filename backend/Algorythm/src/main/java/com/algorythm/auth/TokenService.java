@@ -0,0 +1,314 @@
+package com.algorythm.auth;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.model.User;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Issues and verifies the signed bearer tokens used instead of HttpSession.
+ *
+ * A token is a compact HS256 JWT (header.payload.signature, base64url)
+ * holding the user id, username, subscription type, issue and expiry times,
+ * the login time (auth_time), a random token id and the id of the login
+ * session. Verifying it needs only the shared auth.tokenSecret and the
+ * revocation set in memory, so any node can serve any request without a
+ * session store or a database lookup. Tokens live for auth.tokenTtlSeconds
+ * and are refreshed by AuthFilter once half of that has passed, with the
+ * user's current subscription, until auth.maxSessionSeconds after login.
+ * A refresh gets a new token id but keeps the session id, so one logout
+ * revokes the whole chain; deactivating or deleting a user revokes every
+ * session that user logged in before. auth.tokenSecret.previous is still
+ * accepted while keys are rotated.
+ */
+public final class TokenService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String HEADER =
+        ENCODER.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+    private static final Gson gson = new Gson();
+
+    private static volatile TokenService instance;
+
+    private static final class Claims {
+        String jti;
+        // Absent from tokens issued before sessions had their own id
+        String sid;
+        Long uid;
+        String name;
+        String plan;
+        long iat;
+        long exp;
+        @SerializedName("auth_time")
+        long authTime;
+    }
+
+    private final ThreadLocal<Mac> mac;
+    private final ThreadLocal<Mac> previousMac;
+    private final long ttlSeconds;
+    private final long maxSessionSeconds;
+    private final long revocationGraceMs;
+    private final RevocationCache revocations;
+    private final SecureRandom random = new SecureRandom();
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    TokenService(byte[] secret, byte[] previousSecret, long ttlSeconds, long maxSessionSeconds,
+                 RevocationCache revocations, long revocationPollMs) {
+        this.mac = macFor(secret);
+        this.previousMac = previousSecret != null ? macFor(previousSecret) : null;
+        this.ttlSeconds = ttlSeconds;
+        this.maxSessionSeconds = maxSessionSeconds;
+        // A node that has not yet seen a logout may refresh the token once more
+        this.revocationGraceMs = revocationPollMs * 2;
+        this.revocations = revocations;
+    }
+
+    /**
+     * Get the shared service, creating it from db.properties on first use
+     */
+    public static TokenService getInstance() {
+        if (instance == null) {
+            synchronized (TokenService.class) {
+                if (instance == null) {
+                    long pollMs = DatabaseConfig.getLongProperty("auth.revocation.pollMs", 2000);
+                    TokenService service = new TokenService(
+                        secret("auth.tokenSecret", true),
+                        secret("auth.tokenSecret.previous", false),
+                        DatabaseConfig.getLongProperty("auth.tokenTtlSeconds", 3600),
+                        DatabaseConfig.getLongProperty("auth.maxSessionSeconds", 86400),
+                        new RevocationCache(pollMs),
+                        pollMs);
+                    DatabaseConfig.registerShutdownHook(service.revocations::shutdown);
+                    instance = service;
+                    logger.info("Token authentication started (mode={}, ttl={}s)", getMode(), service.ttlSeconds);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static byte[] secret(String key, boolean generate) {
+        String value = DatabaseConfig.getProperty(key, "").trim();
+        if (value.isEmpty()) {
+            if (!generate) {
+                return null;
+            }
+            logger.warn("{} is not set; using a random key, so tokens will not survive a restart " +
+                "or validate on other nodes", key);
+            byte[] random = new byte[MIN_SECRET_LENGTH];
+            new SecureRandom().nextBytes(random);
+            return random;
+        }
+        if (value.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException(key + " must be at least " + MIN_SECRET_LENGTH + " characters");
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ThreadLocal<Mac> macFor(byte[] secret) {
+        SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+        return ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance(ALGORITHM);
+                m.init(key);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " unavailable", e);
+            }
+        });
+    }
+
+    /**
+     * auth.mode: "session", "token" or "both"
+     */
+    public static String getMode() {
+        return DatabaseConfig.getProperty("auth.mode", "both").trim().toLowerCase();
+    }
+
+    /**
+     * Whether logins issue tokens and AuthFilter accepts them
+     */
+    public static boolean isEnabled() {
+        return !"session".equals(getMode());
+    }
+
+    /**
+     * Whether logins still create an HttpSession
+     */
+    public static boolean sessionsEnabled() {
+        return !"token".equals(getMode());
+    }
+
+    /**
+     * Issue a token for a user who has just logged in
+     */
+    public String issue(User user) {
+        issued.increment();
+        long now = nowSeconds();
+        return sign(randomId(), user.getUserId(), user.getUsername(), user.getSubscriptionType(), now, now);
+    }
+
+    /**
+     * A fresh token for the same login session with a new id and expiry.
+     * The caller passes the user's current username and subscription, read
+     * after checking the account is still active.
+     */
+    public String refresh(AuthToken token, String username, String subscriptionType) {
+        refreshed.increment();
+        return sign(token.getSessionId(), token.getUserId(), username, subscriptionType, nowSeconds(),
+            token.getAuthTime());
+    }
+
+    /**
+     * Whether at least half of the token's lifetime has passed and the
+     * session still has time left to extend it by
+     */
+    public boolean shouldRefresh(AuthToken token) {
+        long now = nowSeconds();
+        return now >= token.getIssuedAt() + ttlSeconds / 2
+            && token.getAuthTime() + maxSessionSeconds > token.getExpiresAt();
+    }
+
+    private String sign(String sessionId, Long userId, String username, String subscriptionType,
+                        long issuedAt, long authTime) {
+        Claims claims = new Claims();
+        claims.jti = randomId();
+        claims.sid = sessionId;
+        claims.uid = userId;
+        claims.name = username;
+        claims.plan = subscriptionType;
+        claims.iat = issuedAt;
+        claims.authTime = authTime;
+        claims.exp = Math.min(issuedAt + ttlSeconds, authTime + maxSessionSeconds);
+        String signingInput = HEADER + "." + ENCODER.encodeToString(gson.toJson(claims).getBytes(StandardCharsets.UTF_8));
+        return signingInput + "." + ENCODER.encodeToString(mac(mac, signingInput));
+    }
+
+    private String randomId() {
+        byte[] id = new byte[16];
+        random.nextBytes(id);
+        return ENCODER.encodeToString(id);
+    }
+
+    /**
+     * The token's claims, or null if it is malformed, forged, expired or revoked
+     */
+    public AuthToken verify(String token) {
+        AuthToken result = parse(token);
+        if (result != null) {
+            verified.increment();
+        } else {
+            rejected.increment();
+        }
+        return result;
+    }
+
+    private AuthToken parse(String token) {
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first < 0 || second < 0 || token.indexOf('.', second + 1) >= 0
+                || !HEADER.equals(token.substring(0, first))) {
+            return null;
+        }
+        String signingInput = token.substring(0, second);
+        Claims claims;
+        try {
+            byte[] signature = DECODER.decode(token.substring(second + 1));
+            if (!MessageDigest.isEqual(signature, mac(mac, signingInput))
+                    && (previousMac == null || !MessageDigest.isEqual(signature, mac(previousMac, signingInput)))) {
+                return null;
+            }
+            claims = gson.fromJson(new String(DECODER.decode(token.substring(first + 1, second)),
+                StandardCharsets.UTF_8), Claims.class);
+        } catch (IllegalArgumentException | JsonParseException e) {
+            return null;
+        }
+        if (claims == null || claims.jti == null || claims.uid == null) {
+            return null;
+        }
+        // Older tokens were their own session and carry no login time
+        String sessionId = claims.sid != null ? claims.sid : claims.jti;
+        long authTime = claims.authTime > 0 ? claims.authTime : claims.iat;
+        long now = nowSeconds();
+        if (claims.exp <= now || authTime + maxSessionSeconds <= now
+                || revocations.isRevoked(sessionId, claims.uid, authTime)) {
+            return null;
+        }
+        return new AuthToken(claims.jti, sessionId, claims.uid, claims.name, claims.plan, claims.iat, claims.exp,
+            authTime);
+    }
+
+    private static byte[] mac(ThreadLocal<Mac> mac, String signingInput) {
+        return mac.get().doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Revoke the token's login session, every token in it, on all nodes
+     */
+    public void revoke(AuthToken token) throws SQLException {
+        revocations.revoke(token.getSessionId(), revocationExpiry());
+    }
+
+    /**
+     * Revoke every session the user has logged in so far, on all nodes;
+     * later logins are not affected
+     */
+    public void revokeUser(Long userId) throws SQLException {
+        revocations.revokeUser(userId, nowSeconds(), revocationExpiry());
+    }
+
+    private long revocationExpiry() {
+        // Covers the latest expiry any refresh of a revoked token can have
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds) + revocationGraceMs;
+    }
+
+    private static long nowSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    // Metrics
+
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+
+    public long getRefreshedCount() {
+        return refreshed.sum();
+    }
+
+    public long getVerifiedCount() {
+        return verified.sum();
+    }
+
+    /**
+     * Presented tokens that were malformed, forged, expired or revoked
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getRevokedCount() {
+        return revocations.size();
+    }
+}
@@ -0,0 +1,192 @@
+package com.algorythm.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache with segmented LRU eviction and a per-entry TTL.
+ *
+ * New entries go into a probation segment; a second hit promotes them to the
+ * protected segment, so one-off lookups cannot flush out the hot set. The key
+ * space is striped across independently locked shards to keep lock hold
+ * times short under concurrent readers.
+ */
+public class SegmentedLruCache<K, V> {
+    private static final int SHARD_COUNT = 16;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Shard<K, V>[] shards;
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maxSize   maximum number of entries across all shards
+     * @param ttlMillis time-to-live per entry, or 0 for no expiry
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.ttlMillis = ttlMillis;
+        int shardCount = Math.min(SHARD_COUNT, Integer.highestOneBit(maxSize));
+        this.shards = new Shard[shardCount];
+        int perShard = Math.max(1, maxSize / shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>(this, perShard);
+        }
+    }
+
+    public V get(K key) {
+        V value = shardFor(key).get(key, System.currentTimeMillis());
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        shardFor(key).put(key, value, expiresAt);
+    }
+
+    public void invalidate(K key) {
+        shardFor(key).remove(key);
+    }
+
+    public void invalidateAll() {
+        for (Shard<K, V> shard : shards) {
+            shard.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard<K, V> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    private Shard<K, V> shardFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (shards.length - 1)];
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Shard<SK, SV> {
+        private final SegmentedLruCache<?, ?> owner;
+        private final int protectedCapacity;
+        private final int capacity;
+        private final LinkedHashMap<SK, Entry<SV>> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<SK, Entry<SV>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+        Shard(SegmentedLruCache<?, ?> owner, int capacity) {
+            this.owner = owner;
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, (int) (capacity * PROTECTED_RATIO));
+        }
+
+        synchronized SV get(SK key, long now) {
+            Entry<SV> entry = protectedSegment.get(key);
+            if (entry != null) {
+                if (entry.expiresAt <= now) {
+                    protectedSegment.remove(key);
+                    owner.expirations.increment();
+                    return null;
+                }
+                return entry.value;
+            }
+
+            entry = probation.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= now) {
+                owner.expirations.increment();
+                return null;
+            }
+
+            // Second hit: promote, demoting the protected LRU entry if full
+            protectedSegment.put(key, entry);
+            if (protectedSegment.size() > protectedCapacity) {
+                Iterator<Map.Entry<SK, Entry<SV>>> it = protectedSegment.entrySet().iterator();
+                Map.Entry<SK, Entry<SV>> eldest = it.next();
+                it.remove();
+                probation.put(eldest.getKey(), eldest.getValue());
+            }
+            return entry.value;
+        }
+
+        synchronized void put(SK key, SV value, long expiresAt) {
+            Entry<SV> entry = new Entry<>(value, expiresAt);
+            if (protectedSegment.containsKey(key)) {
+                protectedSegment.put(key, entry);
+                return;
+            }
+            probation.put(key, entry);
+            while (probation.size() + protectedSegment.size() > capacity) {
+                LinkedHashMap<SK, Entry<SV>> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+                Iterator<SK> it = victimSegment.keySet().iterator();
+                it.next();
+                it.remove();
+                owner.evictions.increment();
+            }
+        }
+
+        synchronized void remove(SK key) {
+            if (protectedSegment.remove(key) == null) {
+                probation.remove(key);
+            }
+        }
+
+        synchronized void clear() {
+            probation.clear();
+            protectedSegment.clear();
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedSegment.size();
+        }
+    }
+}
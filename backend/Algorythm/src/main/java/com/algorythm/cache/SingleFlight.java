@@ -0,0 +1,239 @@
+package com.algorythm.cache;
+
+import com.algorythm.config.DatabaseConfig;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces identical concurrent reads into one database call.
+ *
+ * The first caller for a key runs the load; callers arriving for the same
+ * key while it is in flight wait for it and share its result or exception
+ * instead of borrowing connections of their own. Nothing is kept once the
+ * load returns, so this only removes duplicate work and never serves stale
+ * data. One instance exists per DAO method, keyed by that method's
+ * parameters, and every instance is listed in {@link #all()} for /metrics.
+ *
+ * A write calls invalidate(key): a load already in flight may have read the
+ * old row, so later callers start a new one instead of joining it, and the
+ * old load's onLoaded callback (which callers use to fill a cache) is
+ * skipped. A leader that fails because its thread was interrupted, e.g. by
+ * its own request's deadline, does not fail its waiters; they retry.
+ *
+ * Shared results are seen by several threads and must be treated as
+ * read-only, like SongCache entries; instances can hand waiters a copy
+ * instead when callers are known to modify what they get.
+ */
+public final class SingleFlight<K, V> {
+    private static final Map<String, SingleFlight<?, ?>> registry = new ConcurrentSkipListMap<>();
+
+    /**
+     * Load run by the caller that leads a flight
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws SQLException;
+    }
+
+    private final String name;
+    private final UnaryOperator<V> shareAs;
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        // Guarded by the flight
+        boolean invalidated;
+    }
+
+    /**
+     * Completes a flight whose leader was interrupted; its waiters retry
+     */
+    private static final class LeaderInterrupted extends RuntimeException {
+        LeaderInterrupted() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param name    metrics label, e.g. "SongDAO.findByAlbum"
+     * @param shareAs applied to the result for each waiter, e.g. a copy
+     *                constructor; null hands waiters the same instance
+     */
+    public SingleFlight(String name, UnaryOperator<V> shareAs) {
+        this.name = name;
+        this.shareAs = shareAs;
+        registry.put(name, this);
+    }
+
+    public SingleFlight(String name) {
+        this(name, null);
+    }
+
+    /**
+     * Whether identical reads are coalesced (coalesce.enabled in db.properties)
+     */
+    public static boolean isEnabled() {
+        return DatabaseConfig.getBooleanProperty("coalesce.enabled", true);
+    }
+
+    /**
+     * Run loader for key, or wait for the identical call already in flight
+     */
+    public V load(K key, Loader<V> loader) throws SQLException {
+        return load(key, loader, null);
+    }
+
+    /**
+     * Like load(key, loader), and pass the loaded value to onLoaded unless
+     * invalidate(key) was called while it loaded. Runs once per load, in the
+     * leader, so callers can cache the value without caching a row that a
+     * concurrent write has already replaced.
+     */
+    public V load(K key, Loader<V> loader, Consumer<V> onLoaded) throws SQLException {
+        if (!isEnabled()) {
+            V value = loader.load();
+            if (onLoaded != null) {
+                onLoaded.accept(value);
+            }
+            return value;
+        }
+        calls.increment();
+        while (true) {
+            Flight<V> flight = new Flight<>();
+            Flight<V> leader = inFlight.putIfAbsent(key, flight);
+            if (leader != null) {
+                coalesced.increment();
+                V value;
+                try {
+                    value = await(leader.result);
+                } catch (LeaderInterrupted e) {
+                    inFlight.remove(key, leader);
+                    continue;
+                }
+                return value != null && shareAs != null ? shareAs.apply(value) : value;
+            }
+            return lead(key, flight, loader, onLoaded);
+        }
+    }
+
+    private V lead(K key, Flight<V> flight, Loader<V> loader, Consumer<V> onLoaded) throws SQLException {
+        try {
+            V value = loader.load();
+            if (onLoaded != null) {
+                synchronized (flight) {
+                    if (!flight.invalidated) {
+                        onLoaded.accept(value);
+                    }
+                }
+            }
+            flight.result.complete(value);
+            return value;
+        } catch (SQLException | RuntimeException | Error e) {
+            // Waiters did not ask to be interrupted; let one of them load instead
+            flight.result.completeExceptionally(isInterrupt(e) ? new LeaderInterrupted() : e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Detach the load in flight for key, if any, after a write. Call before
+     * invalidating caches filled through onLoaded.
+     */
+    public void invalidate(K key) {
+        Flight<V> flight = inFlight.remove(key);
+        if (flight != null) {
+            synchronized (flight) {
+                flight.invalidated = true;
+            }
+        }
+    }
+
+    private static boolean isInterrupt(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof InterruptedIOException
+                    || t instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private V await(CompletableFuture<V> leader) throws SQLException {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            // E.g. a request deadline; stop waiting but leave the leader running
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for coalesced " + name, e);
+        } catch (CancellationException e) {
+            throw new SQLException("Coalesced " + name + " was cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LeaderInterrupted) {
+                throw (LeaderInterrupted) cause;
+            }
+            if (cause instanceof SQLException) {
+                throw new SQLException(cause.getMessage(), ((SQLException) cause).getSQLState(),
+                    ((SQLException) cause).getErrorCode(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException("Coalesced " + name + " failed", cause);
+        }
+    }
+
+    /**
+     * Every instance created so far, by name
+     */
+    public static Map<String, SingleFlight<?, ?>> all() {
+        return Collections.unmodifiableMap(registry);
+    }
+
+    // Metrics
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Calls made while coalescing was enabled, leaders and waiters alike
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * Calls that waited on another caller's load instead of querying
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,43 @@
+package com.algorythm.cache;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.model.Song;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared read-through cache of Song objects keyed by song id.
+ *
+ * Configured from db.properties (cache.song.*). Cached songs are shared
+ * between requests and must be treated as read-only by callers.
+ */
+public final class SongCache {
+    private static final Logger logger = LoggerFactory.getLogger(SongCache.class);
+    private static volatile SegmentedLruCache<Long, Song> cache;
+
+    private SongCache() {}
+
+    /**
+     * Whether song caching is enabled in db.properties
+     */
+    public static boolean isEnabled() {
+        return DatabaseConfig.getBooleanProperty("cache.song.enabled", true);
+    }
+
+    /**
+     * Get the shared cache instance, creating it on first use
+     */
+    public static SegmentedLruCache<Long, Song> get() {
+        if (cache == null) {
+            synchronized (SongCache.class) {
+                if (cache == null) {
+                    int maxSize = DatabaseConfig.getIntProperty("cache.song.maxSize", 10000);
+                    long ttlSeconds = DatabaseConfig.getLongProperty("cache.song.ttlSeconds", 300);
+                    cache = new SegmentedLruCache<>(maxSize, ttlSeconds * 1000);
+                    logger.info("Song cache initialized (maxSize={}, ttl={}s)", maxSize, ttlSeconds);
+                }
+            }
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,46 @@
+package com.algorythm.cache;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.model.UserProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared cache of UserProfile snapshots keyed by user id.
+ *
+ * Configured from db.properties (cache.profile.*). Entries are filled on
+ * login and on a profile miss, and dropped by UserService whenever it
+ * changes a user. Other nodes only see such a change once their entry
+ * expires, so cache.profile.ttlSeconds bounds how stale a profile can be
+ * across the cluster.
+ */
+public final class UserProfileCache {
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileCache.class);
+    private static volatile SegmentedLruCache<Long, UserProfile> cache;
+
+    private UserProfileCache() {}
+
+    /**
+     * Whether profile caching is enabled in db.properties
+     */
+    public static boolean isEnabled() {
+        return DatabaseConfig.getBooleanProperty("cache.profile.enabled", true);
+    }
+
+    /**
+     * Get the shared cache instance, creating it on first use
+     */
+    public static SegmentedLruCache<Long, UserProfile> get() {
+        if (cache == null) {
+            synchronized (UserProfileCache.class) {
+                if (cache == null) {
+                    int maxSize = DatabaseConfig.getIntProperty("cache.profile.maxSize", 10000);
+                    long ttlSeconds = DatabaseConfig.getLongProperty("cache.profile.ttlSeconds", 60);
+                    cache = new SegmentedLruCache<>(maxSize, ttlSeconds * 1000);
+                    logger.info("Profile cache initialized (maxSize={}, ttl={}s)", maxSize, ttlSeconds);
+                }
+            }
+        }
+        return cache;
+    }
+}
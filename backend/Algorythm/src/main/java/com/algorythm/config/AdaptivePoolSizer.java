@@ -0,0 +1,184 @@
+package com.algorythm.config;
+
+import com.algorythm.metrics.QueryMetrics;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resizes Hikari pools at runtime from their acquire wait and utilization.
+ *
+ * Every hikari.adaptive.sampleMs each pool's active and waiting connection
+ * counts are sampled; every hikari.adaptive.intervalMs the window is judged.
+ * A pool grows by a quarter (at least one connection) when connections
+ * timed out, the mean acquire wait reached hikari.adaptive.targetAcquireMs,
+ * or callers were waiting in at least half the samples. It shrinks by one
+ * when nobody waited and peak utilization stayed under
+ * hikari.adaptive.lowUtilization. Sizes stay within
+ * hikari.adaptive.minPoolSize and hikari.adaptive.maxPoolSize; the ceiling
+ * should leave room under MySQL's max_connections for every instance.
+ *
+ * Acquire waits come from QueryMetrics, so with metrics.enabled=false only
+ * the waiting-thread samples drive growth.
+ */
+public final class AdaptivePoolSizer {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    /**
+     * A pool under control and its current window
+     */
+    public static final class Target {
+        private final String name;
+        private final HikariDataSource dataSource;
+        private final LongAdder grown = new LongAdder();
+        private final LongAdder shrunk = new LongAdder();
+
+        private int samples;
+        private int waitingSamples;
+        private int peakActive;
+        private long lastAcquires;
+        private long lastAcquireNanos;
+        private long lastTimeouts;
+
+        Target(HikariDataSource dataSource) {
+            this.name = dataSource.getPoolName();
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMaximumPoolSize() {
+            return dataSource.getHikariConfigMXBean().getMaximumPoolSize();
+        }
+
+        public long getGrowCount() {
+            return grown.sum();
+        }
+
+        public long getShrinkCount() {
+            return shrunk.sum();
+        }
+    }
+
+    private final List<Target> targets = new CopyOnWriteArrayList<>();
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long targetAcquireNanos;
+    private final double lowUtilization;
+    private final int samplesPerWindow;
+    private final ScheduledExecutorService scheduler;
+
+    AdaptivePoolSizer(int minPoolSize, int maxPoolSize, long targetAcquireMs, double lowUtilization,
+                      long sampleMs, long intervalMs) {
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.targetAcquireNanos = TimeUnit.MILLISECONDS.toNanos(targetAcquireMs);
+        this.lowUtilization = lowUtilization;
+        this.samplesPerWindow = (int) Math.max(1, intervalMs / sampleMs);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-sizer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::sampleQuietly, sampleMs, sampleMs, TimeUnit.MILLISECONDS);
+    }
+
+    void add(HikariDataSource dataSource) {
+        targets.add(new Target(dataSource));
+    }
+
+    private void sampleQuietly() {
+        for (Target target : targets) {
+            try {
+                sample(target);
+            } catch (RuntimeException e) {
+                logger.error("Pool sizing failed for {}", target.name, e);
+            }
+        }
+    }
+
+    private void sample(Target target) {
+        HikariPoolMXBean pool = target.dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+        target.samples++;
+        target.peakActive = Math.max(target.peakActive, pool.getActiveConnections());
+        if (pool.getThreadsAwaitingConnection() > 0) {
+            target.waitingSamples++;
+        }
+        if (target.samples >= samplesPerWindow) {
+            decide(target);
+            target.samples = 0;
+            target.waitingSamples = 0;
+            target.peakActive = 0;
+        }
+    }
+
+    private void decide(Target target) {
+        long acquires = 0;
+        long acquireNanos = 0;
+        long timeouts = 0;
+        QueryMetrics.PoolCounters counters = QueryMetrics.getPoolCounters(target.name);
+        if (counters != null) {
+            acquires = counters.getAcquireCount() - target.lastAcquires;
+            acquireNanos = counters.getAcquireNanos() - target.lastAcquireNanos;
+            timeouts = counters.getTimeoutCount() - target.lastTimeouts;
+            target.lastAcquires = counters.getAcquireCount();
+            target.lastAcquireNanos = counters.getAcquireNanos();
+            target.lastTimeouts = counters.getTimeoutCount();
+        }
+        long meanWaitNanos = acquires > 0 ? acquireNanos / acquires : 0;
+
+        HikariConfigMXBean config = target.dataSource.getHikariConfigMXBean();
+        int current = config.getMaximumPoolSize();
+        boolean starved = timeouts > 0 || meanWaitNanos >= targetAcquireNanos
+            || target.waitingSamples * 2 >= target.samples;
+        double utilization = (double) target.peakActive / current;
+
+        int size = current;
+        if (starved && current < maxPoolSize) {
+            size = Math.min(maxPoolSize, current + Math.max(1, current / 4));
+        } else if (!starved && target.waitingSamples == 0 && utilization < lowUtilization && current > minPoolSize) {
+            size = current - 1;
+        }
+        if (size == current) {
+            return;
+        }
+
+        if (size < config.getMinimumIdle()) {
+            config.setMinimumIdle(size);
+        }
+        config.setMaximumPoolSize(size);
+        if (size > current) {
+            target.grown.increment();
+            logger.info("Pool {} grown {} -> {} (mean acquire {} ms, {} timeouts, waiting in {}/{} samples)",
+                target.name, current, size, TimeUnit.NANOSECONDS.toMillis(meanWaitNanos), timeouts,
+                target.waitingSamples, target.samples);
+        } else {
+            target.shrunk.increment();
+            logger.info("Pool {} shrunk {} -> {} (peak utilization {})",
+                target.name, current, size, String.format("%.2f", utilization));
+        }
+    }
+
+    public List<Target> getTargets() {
+        return Collections.unmodifiableList(targets);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
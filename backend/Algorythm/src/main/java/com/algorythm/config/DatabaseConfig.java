@@ -1,5 +1,6 @@
 package com.algorythm.config;
 
+import com.algorythm.metrics.QueryMetrics;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
@@ -9,15 +10,31 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 
 /**
- * Database configuration and connection pool management using HikariCP
+ * Database configuration and connection pool management using HikariCP.
+ *
+ * Writes and read-your-writes reads use the primary pool. DAOs that can
+ * tolerate replication lag ask for getReadConnection(), which is served by
+ * the replicas in db.replica.urls when any are configured and healthy.
  */
 public class DatabaseConfig {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConfig.class);
     private static HikariDataSource dataSource;
+    private static ReadReplicas readReplicas;
+    private static AdaptivePoolSizer poolSizer;
+    private static Properties properties;
     private static final String PROPERTIES_FILE = "db.properties";
+    // Lets benchmarks and local tooling point at another classpath resource
+    private static final String PROPERTIES_OVERRIDE = "algorythm.db.properties";
+    // -Dalgorythm.{key}=value, or ALGORYTHM_{KEY} in the environment, overrides a setting
+    private static final String SYSTEM_PROPERTY_PREFIX = "algorythm.";
+    private static final String ENV_PREFIX = "ALGORYTHM_";
+    private static final List<Runnable> shutdownHooks = new ArrayList<>();
 
     static {
         try {
@@ -32,18 +49,83 @@ public class DatabaseConfig {
      * Initialize the HikariCP connection pool
      */
     private static void initializeDataSource() throws IOException {
-        Properties properties = loadProperties();
+        properties = loadProperties();
         
+        // Statement latency and pool wait instrumentation, served on /metrics
+        QueryMetrics.configure(
+            Boolean.parseBoolean(properties.getProperty("metrics.enabled", "true").trim()),
+            Long.parseLong(properties.getProperty("metrics.slowQueryMs", "250").trim()),
+            Long.parseLong(properties.getProperty("metrics.slowAcquireMs", "100").trim()));
+        
+        dataSource = new HikariDataSource(poolConfig("MusicStreamingPool",
+            properties.getProperty("db.url"),
+            properties.getProperty("db.username"),
+            properties.getProperty("db.password"),
+            Long.parseLong(properties.getProperty("hikari.connectionTimeout", "30000"))));
+        logger.info("Database connection pool initialized successfully");
+
+        String replicaUrls = properties.getProperty("db.replica.urls", "").trim();
+        if (!replicaUrls.isEmpty()) {
+            initializeReplicas(replicaUrls.split("\\s*,\\s*"));
+        }
+
+        if (getBooleanProperty("hikari.adaptive.enabled", false)) {
+            poolSizer = new AdaptivePoolSizer(
+                getIntProperty("hikari.adaptive.minPoolSize", 5),
+                getIntProperty("hikari.adaptive.maxPoolSize", 30),
+                getLongProperty("hikari.adaptive.targetAcquireMs", 10),
+                Double.parseDouble(getProperty("hikari.adaptive.lowUtilization", "0.5").trim()),
+                getLongProperty("hikari.adaptive.sampleMs", 1000),
+                getLongProperty("hikari.adaptive.intervalMs", 10000));
+            poolSizer.add(dataSource);
+            if (readReplicas != null) {
+                for (ReadReplicas.Replica replica : readReplicas.getReplicas()) {
+                    poolSizer.add(replica.getDataSource());
+                }
+            }
+            logger.info("Adaptive pool sizing enabled");
+        }
+    }
+
+    private static void initializeReplicas(String[] urls) {
+        // Replica pools fail fast so a dead replica costs a read little before the primary takes it
+        long connectionTimeout = getLongProperty("db.replica.connectionTimeout", 1000);
+        List<ReadReplicas.Replica> replicas = new ArrayList<>(urls.length);
+        for (int i = 0; i < urls.length; i++) {
+            HikariConfig config = poolConfig("MusicStreamingPool-replica-" + (i + 1), urls[i],
+                getProperty("db.replica.username", properties.getProperty("db.username")),
+                getProperty("db.replica.password", properties.getProperty("db.password")),
+                connectionTimeout);
+            config.setMaximumPoolSize(getIntProperty("db.replica.maximumPoolSize", config.getMaximumPoolSize()));
+            config.setMinimumIdle(Math.min(config.getMinimumIdle(), config.getMaximumPoolSize()));
+            config.setReadOnly(true);
+            // Start even if the replica is down; the lag check keeps it out of rotation
+            config.setInitializationFailTimeout(-1);
+            replicas.add(new ReadReplicas.Replica(i + 1, new HikariDataSource(config)));
+        }
+        readReplicas = new ReadReplicas(replicas,
+            getProperty("db.replica.lagQuery", "SHOW REPLICA STATUS").trim(),
+            getProperty("db.replica.lagColumn", "Seconds_Behind_Source").trim(),
+            Double.parseDouble(getProperty("db.replica.maxLagSeconds", "5").trim()),
+            getLongProperty("db.replica.lagCheckMs", 1000));
+        logger.info("Read replica pools initialized ({} replicas)", replicas.size());
+    }
+
+    /**
+     * Pool settings shared by the primary and the replicas
+     */
+    private static HikariConfig poolConfig(String poolName, String url, String username, String password,
+                                           long connectionTimeout) {
         HikariConfig config = new HikariConfig();
-        config.setJdbcUrl(properties.getProperty("db.url"));
-        config.setUsername(properties.getProperty("db.username"));
-        config.setPassword(properties.getProperty("db.password"));
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
         config.setDriverClassName(properties.getProperty("db.driver"));
         
         // Connection pool settings
         config.setMaximumPoolSize(Integer.parseInt(properties.getProperty("hikari.maximumPoolSize", "10")));
         config.setMinimumIdle(Integer.parseInt(properties.getProperty("hikari.minimumIdle", "5")));
-        config.setConnectionTimeout(Long.parseLong(properties.getProperty("hikari.connectionTimeout", "30000")));
+        config.setConnectionTimeout(connectionTimeout);
         config.setIdleTimeout(Long.parseLong(properties.getProperty("hikari.idleTimeout", "600000")));
         config.setMaxLifetime(Long.parseLong(properties.getProperty("hikari.maxLifetime", "1800000")));
         
@@ -52,28 +134,56 @@ public class DatabaseConfig {
         config.addDataSourceProperty("prepStmtCacheSize", properties.getProperty("hikari.prepStmtCacheSize", "250"));
         config.addDataSourceProperty("prepStmtCacheSqlLimit", properties.getProperty("hikari.prepStmtCacheSqlLimit", "2048"));
         
-        config.setPoolName("MusicStreamingPool");
+        config.setPoolName(poolName);
         config.setAutoCommit(true);
         config.setConnectionTestQuery("SELECT 1");
-        
-        dataSource = new HikariDataSource(config);
-        logger.info("Database connection pool initialized successfully");
+        if (QueryMetrics.isEnabled()) {
+            config.setMetricsTrackerFactory(QueryMetrics.trackerFactory());
+        }
+        return config;
     }
 
     /**
-     * Load database properties from db.properties file
+     * Load database properties from db.properties file, then apply
+     * overrides from the environment and system properties, so deployments
+     * can change a setting without rebuilding the war
      */
     private static Properties loadProperties() throws IOException {
         Properties properties = new Properties();
-        try (InputStream input = DatabaseConfig.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
+        String resource = System.getProperty(PROPERTIES_OVERRIDE, PROPERTIES_FILE);
+        try (InputStream input = DatabaseConfig.class.getClassLoader().getResourceAsStream(resource)) {
             if (input == null) {
-                throw new IOException("Unable to find " + PROPERTIES_FILE);
+                throw new IOException("Unable to find " + resource);
             }
             properties.load(input);
         }
+        applyOverrides(properties);
         return properties;
     }
 
+    /**
+     * An environment variable ALGORYTHM_{KEY}, with the key upper-cased and
+     * dots replaced by underscores (ALGORYTHM_ASYNC_VIRTUALTHREADS), overrides
+     * a key present in the file. A system property algorythm.{key} overrides
+     * any key and takes precedence over the environment.
+     */
+    private static void applyOverrides(Properties properties) {
+        for (String key : properties.stringPropertyNames()) {
+            String value = System.getenv(ENV_PREFIX + key.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "_"));
+            if (value != null) {
+                properties.setProperty(key, value);
+                logger.info("Setting {} overridden from the environment", key);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(SYSTEM_PROPERTY_PREFIX) && !name.equals(PROPERTIES_OVERRIDE)) {
+                String key = name.substring(SYSTEM_PROPERTY_PREFIX.length());
+                properties.setProperty(key, System.getProperty(name));
+                logger.info("Setting {} overridden by system property", key);
+            }
+        }
+    }
+
     /**
      * Get a connection from the pool
      * 
@@ -84,13 +194,79 @@ public class DatabaseConfig {
         if (dataSource == null) {
             throw new SQLException("DataSource not initialized");
         }
-        return dataSource.getConnection();
+        return QueryMetrics.instrument(dataSource.getConnection());
+    }
+
+    /**
+     * Get a connection for a read that tolerates replication lag: from a
+     * healthy replica when any are configured, otherwise from the primary
+     */
+    public static Connection getReadConnection() throws SQLException {
+        Connection replica = readReplicas != null ? readReplicas.getConnection() : null;
+        return replica != null ? QueryMetrics.instrument(replica) : getConnection();
+    }
+
+    /**
+     * Get a configuration value from db.properties
+     */
+    public static String getProperty(String key, String defaultValue) {
+        return properties != null ? properties.getProperty(key, defaultValue) : defaultValue;
+    }
+
+    /**
+     * Get an integer configuration value from db.properties
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        return Integer.parseInt(getProperty(key, String.valueOf(defaultValue)).trim());
+    }
+
+    /**
+     * Get a long configuration value from db.properties
+     */
+    public static long getLongProperty(String key, long defaultValue) {
+        return Long.parseLong(getProperty(key, String.valueOf(defaultValue)).trim());
+    }
+
+    /**
+     * Get a boolean configuration value from db.properties
+     */
+    public static boolean getBooleanProperty(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getProperty(key, String.valueOf(defaultValue)).trim());
+    }
+
+    /**
+     * Register a task to run before the pool is closed, e.g. flushing buffered writes.
+     * Tasks run in reverse registration order.
+     */
+    public static void registerShutdownHook(Runnable hook) {
+        synchronized (shutdownHooks) {
+            shutdownHooks.add(hook);
+        }
     }
 
     /**
      * Close the connection pool (call on application shutdown)
      */
     public static void closeDataSource() {
+        List<Runnable> hooks;
+        synchronized (shutdownHooks) {
+            hooks = new ArrayList<>(shutdownHooks);
+            shutdownHooks.clear();
+        }
+        for (int i = hooks.size() - 1; i >= 0; i--) {
+            try {
+                hooks.get(i).run();
+            } catch (RuntimeException e) {
+                logger.error("Shutdown hook failed", e);
+            }
+        }
+
+        if (poolSizer != null) {
+            poolSizer.shutdown();
+        }
+        if (readReplicas != null) {
+            readReplicas.close();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             logger.info("Database connection pool closed");
@@ -103,4 +279,18 @@ public class DatabaseConfig {
     public static HikariDataSource getDataSource() {
         return dataSource;
     }
+
+    /**
+     * The replica pools, or null when db.replica.urls is empty
+     */
+    public static ReadReplicas getReadReplicas() {
+        return readReplicas;
+    }
+
+    /**
+     * The pool size controller, or null unless hikari.adaptive.enabled
+     */
+    public static AdaptivePoolSizer getPoolSizer() {
+        return poolSizer;
+    }
 }
@@ -0,0 +1,224 @@
+package com.algorythm.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.util.DriverDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pools for the read replicas listed in db.replica.urls.
+ *
+ * Reads are spread round-robin over the replicas that are currently
+ * healthy. A background check runs db.replica.lagQuery on each replica every
+ * db.replica.lagCheckMs and takes it out of rotation while its lag, read
+ * from the db.replica.lagColumn column, is unknown or above
+ * db.replica.maxLagSeconds. The check uses its own connection outside the
+ * pool, so a replica whose pool is merely busy is not reported as down. A
+ * replica that fails to hand out a pooled connection is also taken out
+ * until its next good check. When no replica is usable getConnection
+ * returns null and the caller falls back to the primary.
+ */
+public final class ReadReplicas {
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicas.class);
+
+    /**
+     * One replica and its pool
+     */
+    public static final class Replica {
+        private final int index;
+        private final String url;
+        private final HikariDataSource dataSource;
+        private final DriverDataSource monitorSource;
+        private Connection monitorConnection;
+        private volatile boolean healthy;
+        private volatile double lagSeconds = -1;
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        Replica(int index, HikariDataSource dataSource) {
+            this.index = index;
+            this.url = dataSource.getJdbcUrl();
+            this.dataSource = dataSource;
+            this.monitorSource = new DriverDataSource(url, dataSource.getDriverClassName(), new Properties(),
+                dataSource.getUsername(), dataSource.getPassword());
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public HikariDataSource getDataSource() {
+            return dataSource;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         * Last measured lag, or -1 if unknown
+         */
+        public double getLagSeconds() {
+            return lagSeconds;
+        }
+
+        public long getReadCount() {
+            return reads.sum();
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+    }
+
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final String lagColumn;
+    private final double maxLagSeconds;
+    private final ScheduledExecutorService monitor;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder fallbacks = new LongAdder();
+
+    ReadReplicas(List<Replica> replicas, String lagQuery, String lagColumn, double maxLagSeconds, long lagCheckMs) {
+        this.replicas = replicas;
+        this.lagQuery = lagQuery;
+        this.lagColumn = lagColumn;
+        this.maxLagSeconds = maxLagSeconds;
+        this.monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-lag-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        // Replicas start out of rotation until their first check passes
+        checkAll();
+        monitor.scheduleWithFixedDelay(this::checkAll, lagCheckMs, lagCheckMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A connection from the next healthy replica, or null if there is none
+     */
+    Connection getConnection() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection conn = replica.dataSource.getConnection();
+                replica.reads.increment();
+                return conn;
+            } catch (SQLException e) {
+                replica.failures.increment();
+                replica.healthy = false;
+                logger.warn("Replica {} unavailable, taking it out of rotation: {}", replica.index, e.getMessage());
+            }
+        }
+        fallbacks.increment();
+        return null;
+    }
+
+    private void checkAll() {
+        for (Replica replica : replicas) {
+            check(replica);
+        }
+    }
+
+    private void check(Replica replica) {
+        double lag;
+        try {
+            lag = measureLag(replica);
+        } catch (SQLException | RuntimeException e) {
+            logger.debug("Lag check failed on replica {}", replica.index, e);
+            closeMonitorConnection(replica);
+            lag = -1;
+        }
+        replica.lagSeconds = lag;
+        boolean healthy = lag >= 0 && lag <= maxLagSeconds;
+        if (healthy != replica.healthy) {
+            if (healthy) {
+                logger.info("Replica {} back in rotation (lag {}s)", replica.index, lag);
+            } else {
+                logger.warn("Replica {} out of rotation (lag {})", replica.index, lag >= 0 ? lag + "s" : "unknown");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    /**
+     * Lag in seconds; -1 when the replica reports none, e.g. replication stopped
+     */
+    private double measureLag(Replica replica) throws SQLException {
+        if (replica.monitorConnection == null) {
+            replica.monitorConnection = replica.monitorSource.getConnection();
+        }
+        Connection conn = replica.monitorConnection;
+        if (lagQuery.isEmpty()) {
+            // Lag checking off; only connectivity is verified
+            return conn.isValid(1) ? 0 : -1;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                return -1;
+            }
+            double lag = rs.getDouble(lagColumn);
+            return rs.wasNull() ? -1 : lag;
+        }
+    }
+
+    private static void closeMonitorConnection(Replica replica) {
+        if (replica.monitorConnection != null) {
+            try {
+                replica.monitorConnection.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing lag check connection", e);
+            }
+            replica.monitorConnection = null;
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    /**
+     * Reads sent to the primary because no replica was usable
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    void close() {
+        monitor.shutdownNow();
+        try {
+            monitor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Replica replica : replicas) {
+            closeMonitorConnection(replica);
+            replica.dataSource.close();
+        }
+        logger.info("Read replica pools closed");
+    }
+}
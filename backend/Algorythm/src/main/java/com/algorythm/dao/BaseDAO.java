@@ -5,12 +5,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
+import java.util.List;
 
 /**
  * Base DAO class with common database operations
  */
 public abstract class BaseDAO {
     protected static final Logger logger = LoggerFactory.getLogger(BaseDAO.class);
+    // Ids bound per IN (...) list; well under MySQL's 65535 placeholder limit
+    protected static final int MAX_IN_LIST = 1000;
 
     /**
      * Get a database connection from the pool
@@ -19,6 +22,14 @@ public abstract class BaseDAO {
         return DatabaseConfig.getConnection();
     }
 
+    /**
+     * Get a connection for a read that may be served by a lagging replica.
+     * Use getConnection() for writes and for reads that must see them.
+     */
+    protected Connection getReadConnection() throws SQLException {
+        return DatabaseConfig.getReadConnection();
+    }
+
     /**
      * Close database resources safely
      */
@@ -89,6 +100,26 @@ public abstract class BaseDAO {
         }
     }
 
+    /**
+     * Whether a statement failed on a unique or primary key (MySQL 1062, or
+     * SQLState 23505 on other databases)
+     */
+    protected static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+    }
+
+    /**
+     * Whether a statement was refused because of the data it carried (a
+     * constraint, foreign key or out-of-range value) rather than a failure
+     * that retrying could fix. MySQL reports CHECK violations (3819) with
+     * the generic SQLState HY000, so the error code is checked as well.
+     */
+    protected static boolean isDataError(SQLException e) {
+        String state = e.getSQLState();
+        return e.getErrorCode() == 3819
+            || (state != null && (state.startsWith("22") || state.startsWith("23")));
+    }
+
     /**
      * Execute an INSERT query and return generated key
      */
@@ -121,4 +152,104 @@ public abstract class BaseDAO {
             closeResources(conn, stmt, rs);
         }
     }
+
+    /**
+     * Insert many rows with multi-row INSERT statements on one connection.
+     * Rows are split into statements of at most maxRowsPerStatement rows and
+     * committed together.
+     *
+     * @param insertPrefix e.g. "INSERT INTO t (a, b) VALUES "
+     * @param rows         one parameter array per row, all the same length
+     * @return number of rows inserted
+     */
+    protected int executeMultiRowInsert(String insertPrefix, List<Object[]> rows, int maxRowsPerStatement)
+            throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Connection conn = null;
+        
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            int inserted = insertRows(conn, insertPrefix, rows, maxRowsPerStatement);
+            conn.commit();
+            return inserted;
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    logger.error("Error rolling back multi-row insert", rollbackError);
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    logger.error("Error restoring auto-commit", e);
+                }
+            }
+            closeResources(conn, null);
+        }
+    }
+
+    /**
+     * Multi-row insert on a caller-managed connection, e.g. as one step of a
+     * larger transaction
+     *
+     * @return number of rows inserted
+     */
+    protected int insertRows(Connection conn, String insertPrefix, List<Object[]> rows, int maxRowsPerStatement)
+            throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int columns = rows.get(0).length;
+        int inserted = 0;
+        for (int start = 0; start < rows.size(); start += maxRowsPerStatement) {
+            List<Object[]> chunk = rows.subList(start, Math.min(start + maxRowsPerStatement, rows.size()));
+            try (PreparedStatement stmt = conn.prepareStatement(buildMultiRowSql(insertPrefix, columns, chunk.size()))) {
+                int index = 1;
+                for (Object[] row : chunk) {
+                    for (Object value : row) {
+                        stmt.setObject(index++, value);
+                    }
+                }
+                inserted += stmt.executeUpdate();
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Comma-separated "?" placeholders for an IN (...) list
+     */
+    protected static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static String buildMultiRowSql(String insertPrefix, int columns, int rows) {
+        StringBuilder row = new StringBuilder("(");
+        for (int c = 0; c < columns; c++) {
+            row.append(c == 0 ? "?" : ", ?");
+        }
+        row.append(")");
+
+        StringBuilder sql = new StringBuilder(insertPrefix.length() + rows * (row.length() + 2));
+        sql.append(insertPrefix);
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.toString();
+    }
 }
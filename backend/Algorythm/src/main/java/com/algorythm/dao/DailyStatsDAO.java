@@ -0,0 +1,102 @@
+package com.algorythm.dao;
+
+import com.algorythm.model.DailyArtistStats;
+import com.algorythm.model.DailySongStats;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * Data Access Object for daily_song_stats and daily_artist_stats
+ */
+public class DailyStatsDAO extends BaseDAO {
+
+    // MySQL applies ON DUPLICATE KEY UPDATE assignments left to right, so the
+    // weighted averages are computed before play_count is incremented.
+    private static final String UPSERT_SONG_SQL =
+        "INSERT INTO daily_song_stats (song_id, stat_date, play_count, unique_listeners, skip_count, " +
+        "completion_rate, avg_completion_percentage) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE " +
+        "completion_rate = IF(VALUES(completion_rate) IS NULL, completion_rate, " +
+        "(COALESCE(completion_rate, 0) * play_count + VALUES(completion_rate) * VALUES(play_count)) " +
+        "/ (play_count + VALUES(play_count))), " +
+        "avg_completion_percentage = IF(VALUES(avg_completion_percentage) IS NULL, avg_completion_percentage, " +
+        "(COALESCE(avg_completion_percentage, 0) * play_count + VALUES(avg_completion_percentage) * VALUES(play_count)) " +
+        "/ (play_count + VALUES(play_count))), " +
+        "unique_listeners = GREATEST(unique_listeners, VALUES(unique_listeners)), " +
+        "skip_count = skip_count + VALUES(skip_count), " +
+        "play_count = play_count + VALUES(play_count)";
+
+    private static final String UPSERT_ARTIST_SQL =
+        "INSERT INTO daily_artist_stats (artist_id, stat_date, total_plays, unique_listeners) " +
+        "VALUES (?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE " +
+        "unique_listeners = GREATEST(unique_listeners, VALUES(unique_listeners)), " +
+        "total_plays = total_plays + VALUES(total_plays)";
+
+    /**
+     * Add per-song and per-artist deltas in one transaction, so a failure
+     * leaves neither table changed and the caller can retry both
+     */
+    public void upsertStats(List<DailySongStats> songStats, List<DailyArtistStats> artistStats) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            if (!songStats.isEmpty()) {
+                upsertSongStats(conn, songStats);
+            }
+            if (!artistStats.isEmpty()) {
+                upsertArtistStats(conn, artistStats);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    logger.error("Error rolling back daily stats", rollbackError);
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    logger.error("Error restoring auto-commit", e);
+                }
+            }
+            closeResources(conn, null);
+        }
+    }
+
+    private void upsertSongStats(Connection conn, List<DailySongStats> stats) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SONG_SQL)) {
+            for (DailySongStats s : stats) {
+                stmt.setLong(1, s.getSongId());
+                stmt.setDate(2, Date.valueOf(s.getStatDate()));
+                stmt.setInt(3, s.getPlayCount());
+                stmt.setInt(4, s.getUniqueListeners());
+                stmt.setInt(5, s.getSkipCount());
+                stmt.setObject(6, s.getCompletionRate());
+                stmt.setObject(7, s.getAvgCompletionPercentage());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void upsertArtistStats(Connection conn, List<DailyArtistStats> stats) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_ARTIST_SQL)) {
+            for (DailyArtistStats s : stats) {
+                stmt.setLong(1, s.getArtistId());
+                stmt.setDate(2, Date.valueOf(s.getStatDate()));
+                stmt.setInt(3, s.getTotalPlays());
+                stmt.setInt(4, s.getUniqueListeners());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.algorythm.dao;
+
+import com.algorythm.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind buffer for users.last_login.
+ *
+ * Logins record their time here instead of borrowing a connection for an
+ * UPDATE of their own. Every lastLogin.flushIntervalMs the latest time per
+ * user is written as one JDBC batch, so repeated logins by the same user
+ * between flushes cost a single row update. A crash loses at most one
+ * interval of last-login times; a normal shutdown flushes everything
+ * through DatabaseConfig.closeDataSource().
+ */
+public class LastLoginBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(LastLoginBuffer.class);
+
+    private static volatile LastLoginBuffer instance;
+
+    private final UserDAO userDAO = new UserDAO();
+    private final long flushIntervalMs;
+    private final ScheduledExecutorService scheduler;
+    private final Object flushLock = new Object();
+    private final ConcurrentHashMap<Long, Timestamp> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushCount = new AtomicLong();
+    private final AtomicLong rowsFlushed = new AtomicLong();
+
+    LastLoginBuffer(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "last-login-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the shared buffer, creating it from db.properties on first use
+     */
+    public static LastLoginBuffer getInstance() {
+        if (instance == null) {
+            synchronized (LastLoginBuffer.class) {
+                if (instance == null) {
+                    LastLoginBuffer buffer = new LastLoginBuffer(
+                        DatabaseConfig.getLongProperty("lastLogin.flushIntervalMs", 1000));
+                    DatabaseConfig.registerShutdownHook(buffer::shutdown);
+                    instance = buffer;
+                    logger.info("Last-login write-behind buffer started (interval={}ms)", buffer.flushIntervalMs);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Whether last-login updates should go through the buffer
+     */
+    public static boolean isEnabled() {
+        return DatabaseConfig.getBooleanProperty("lastLogin.writeBehind.enabled", true);
+    }
+
+    public void recordLogin(Long userId) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        pending.merge(userId, now, (a, b) -> a.after(b) ? a : b);
+    }
+
+    /**
+     * Write all pending last-login times to the database as one batch
+     */
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Map<Long, Timestamp> batch = new HashMap<>(pending);
+            try {
+                userDAO.updateLastLogins(batch);
+            } catch (SQLException e) {
+                // Entries stay pending and go out with the next flush
+                failedFlushCount.incrementAndGet();
+                throw e;
+            }
+            // Keep any login recorded while the batch was being written
+            for (Map.Entry<Long, Timestamp> e : batch.entrySet()) {
+                pending.remove(e.getKey(), e.getValue());
+            }
+            flushCount.incrementAndGet();
+            rowsFlushed.addAndGet(batch.size());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            logger.error("Failed to flush last-login times, will retry", e);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error flushing last-login times", e);
+        }
+    }
+
+    /**
+     * Stop the flush timer and write out whatever is still pending
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+            logger.info("Last-login buffer flushed on shutdown");
+        } catch (SQLException e) {
+            logger.error("Final last-login flush failed, {} updates lost", pending.size(), e);
+        }
+    }
+
+    // Metrics
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushCount.get();
+    }
+
+    public long getRowsFlushed() {
+        return rowsFlushed.get();
+    }
+}
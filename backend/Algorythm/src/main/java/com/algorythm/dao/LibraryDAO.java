@@ -0,0 +1,92 @@
+package com.algorythm.dao;
+
+import java.sql.*;
+
+/**
+ * Data Access Object for a user's liked songs and followed artists
+ * (user_likes and user_follows_artist)
+ */
+public class LibraryDAO extends BaseDAO {
+
+    /**
+     * Receives ids one at a time, so loaders never box them into a list
+     */
+    public interface IdConsumer {
+        void accept(long id);
+    }
+
+    /**
+     * Record a like
+     *
+     * @return true if the like is new, false if it already existed or the song does not exist
+     */
+    public boolean insertLike(Long userId, Long songId) throws SQLException {
+        String sql = "INSERT IGNORE INTO user_likes (user_id, song_id) " +
+                    "SELECT ?, song_id FROM songs WHERE song_id = ?";
+        return executeUpdate(sql, userId, songId) > 0;
+    }
+
+    /**
+     * Remove a like
+     *
+     * @return true if a like was removed
+     */
+    public boolean deleteLike(Long userId, Long songId) throws SQLException {
+        String sql = "DELETE FROM user_likes WHERE user_id = ? AND song_id = ?";
+        return executeUpdate(sql, userId, songId) > 0;
+    }
+
+    /**
+     * Record a follow
+     *
+     * @return true if the follow is new, false if it already existed or the artist does not exist
+     */
+    public boolean insertFollow(Long userId, Long artistId) throws SQLException {
+        String sql = "INSERT IGNORE INTO user_follows_artist (user_id, artist_id) " +
+                    "SELECT ?, artist_id FROM artists WHERE artist_id = ?";
+        return executeUpdate(sql, userId, artistId) > 0;
+    }
+
+    /**
+     * Remove a follow
+     *
+     * @return true if a follow was removed
+     */
+    public boolean deleteFollow(Long userId, Long artistId) throws SQLException {
+        String sql = "DELETE FROM user_follows_artist WHERE user_id = ? AND artist_id = ?";
+        return executeUpdate(sql, userId, artistId) > 0;
+    }
+
+    /**
+     * Read all song ids a user liked
+     */
+    public void loadLikedSongIds(Long userId, IdConsumer consumer) throws SQLException {
+        loadIds("SELECT song_id FROM user_likes WHERE user_id = ?", userId, consumer);
+    }
+
+    /**
+     * Read all artist ids a user follows
+     */
+    public void loadFollowedArtistIds(Long userId, IdConsumer consumer) throws SQLException {
+        loadIds("SELECT artist_id FROM user_follows_artist WHERE user_id = ?", userId, consumer);
+    }
+
+    private void loadIds(String sql, Long userId, IdConsumer consumer) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, userId);
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                consumer.accept(rs.getLong(1));
+            }
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+}
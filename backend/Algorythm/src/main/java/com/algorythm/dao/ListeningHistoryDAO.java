@@ -0,0 +1,45 @@
+package com.algorythm.dao;
+
+import com.algorythm.model.ListeningEvent;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object for listening_history
+ */
+public class ListeningHistoryDAO extends BaseDAO {
+
+    private static final String INSERT_PREFIX =
+        "INSERT INTO listening_history (user_id, song_id, played_at, duration_played, " +
+        "completion_percentage) VALUES ";
+
+    // 5 placeholders per row keeps each statement far below driver limits
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    /**
+     * Insert a batch of plays with multi-row INSERTs in one transaction
+     */
+    public int insertBatch(List<ListeningEvent> events) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (ListeningEvent event : events) {
+            rows.add(new Object[] {
+                event.getUserId(),
+                event.getSongId(),
+                event.getPlayedAt(),
+                event.getDurationPlayedSeconds(),
+                event.getCompletionPercentage()
+            });
+        }
+        return executeMultiRowInsert(INSERT_PREFIX, rows, ROWS_PER_STATEMENT);
+    }
+
+    /**
+     * Whether an insert failed because some row can never be stored, e.g. an
+     * unknown song or an out-of-range completion percentage
+     */
+    public static boolean isRejectedRow(SQLException e) {
+        return isDataError(e);
+    }
+}
@@ -0,0 +1,64 @@
+package com.algorythm.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor over (created_at, id), encoded as URL-safe base64.
+ *
+ * Listings are ordered by created_at DESC, id DESC, so the next page starts
+ * strictly after the last row of the previous one and the database can seek
+ * on the index instead of scanning and discarding OFFSET rows. created_at is
+ * nullable and NULLs sort last, so a cursor may carry a null created_at;
+ * queries then continue among the NULL rows by id alone.
+ */
+public final class PageCursor {
+    private static final String VERSION = "1";
+
+    private final Timestamp createdAt;
+    private final long id;
+
+    public PageCursor(Timestamp createdAt, long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = createdAt != null
+            ? VERSION + ":" + createdAt.getTime() + ":" + createdAt.getNanos() + ":" + id
+            : VERSION + ":-:-:" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor from a request parameter
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static PageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 4 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            if ("-".equals(parts[1])) {
+                return new PageCursor(null, Long.parseLong(parts[3]));
+            }
+            Timestamp createdAt = new Timestamp(Long.parseLong(parts[1]));
+            createdAt.setNanos(Integer.parseInt(parts[2]));
+            return new PageCursor(createdAt, Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
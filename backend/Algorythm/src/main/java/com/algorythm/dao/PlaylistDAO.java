@@ -0,0 +1,475 @@
+package com.algorythm.dao;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.model.Playlist;
+import com.algorythm.model.Song;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Data Access Object for playlists and their tracks.
+ *
+ * Track order is kept in playlist_songs.position as sparse keys spaced
+ * POSITION_GAP apart. Appends take max + gap and a move takes the midpoint
+ * of its new neighbours, so reordering updates a single row; only when two
+ * neighbours run out of room is the playlist renumbered. Every change to a
+ * playlist's tracks locks its playlists row and adjusts total_songs and
+ * total_duration_seconds in the same transaction.
+ */
+public class PlaylistDAO extends BaseDAO {
+    static final long POSITION_GAP = 1L << 16;
+    private static final int MAX_ROWS_PER_INSERT = 500;
+
+    private static final String COLUMNS =
+        "playlist_id, user_id, playlist_name, description, cover_image_url, is_public, " +
+        "total_songs, total_duration_seconds, follower_count, created_at, updated_at";
+
+    /**
+     * Work done on one connection inside a transaction
+     */
+    private interface Transactional<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Create a new playlist
+     */
+    public Long createPlaylist(Playlist playlist) throws SQLException {
+        String sql = "INSERT INTO playlists (user_id, playlist_name, description, cover_image_url, is_public) " +
+                    "VALUES (?, ?, ?, ?, ?)";
+        return executeInsert(sql,
+            playlist.getUserId(),
+            playlist.getPlaylistName(),
+            playlist.getDescription(),
+            playlist.getCoverImageUrl(),
+            playlist.isPublic()
+        );
+    }
+
+    /**
+     * Find playlist by ID
+     */
+    public Playlist findById(Long playlistId) throws SQLException {
+        String sql = "SELECT " + COLUMNS + " FROM playlists WHERE playlist_id = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, playlistId);
+            rs = stmt.executeQuery();
+            
+            if (rs.next()) {
+                return mapResultSetToPlaylist(rs);
+            }
+            return null;
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * Find all playlists owned by a user, newest first
+     */
+    public List<Playlist> findByUser(Long userId) throws SQLException {
+        String sql = "SELECT " + COLUMNS + " FROM playlists WHERE user_id = ? ORDER BY created_at DESC";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<Playlist> playlists = new ArrayList<>();
+        
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, userId);
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                playlists.add(mapResultSetToPlaylist(rs));
+            }
+            return playlists;
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * Delete playlist (its tracks go with it through ON DELETE CASCADE)
+     */
+    public boolean deletePlaylist(Long playlistId) throws SQLException {
+        String sql = "DELETE FROM playlists WHERE playlist_id = ?";
+        return executeUpdate(sql, playlistId) > 0;
+    }
+
+    /**
+     * Stream a playlist's songs in playlist order to a callback.
+     * Large playlists are fetched in chunks of db.streamFetchSize rows.
+     */
+    public void streamSongs(Long playlistId, RowCallback<Song> callback) throws SQLException, IOException {
+        String sql = "SELECT " + SongRowMapper.LIST_QUALIFIED + " FROM playlist_songs ps " +
+                    "JOIN songs s ON s.song_id = ps.song_id " +
+                    "WHERE ps.playlist_id = ? ORDER BY ps.position";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(DatabaseConfig.getIntProperty("db.streamFetchSize", 500));
+            stmt.setLong(1, playlistId);
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                callback.accept(SongRowMapper.mapList(rs));
+            }
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * Append songs to the end of a playlist in request order. Songs that do
+     * not exist or are already in the playlist are skipped; the rest are
+     * written with multi-row INSERTs.
+     *
+     * @return number of songs added, or -1 if the playlist does not exist
+     */
+    public int addSongs(Long playlistId, Long addedByUserId, Collection<Long> songIds) throws SQLException {
+        Set<Long> requested = new LinkedHashSet<>(songIds);
+        if (requested.isEmpty()) {
+            return 0;
+        }
+        return inTransaction(conn -> {
+            if (!lockPlaylist(conn, playlistId)) {
+                return -1;
+            }
+            Map<Long, Integer> durations = findDurations(conn, requested);
+            Set<Long> present = findPresent(conn, playlistId, requested);
+
+            long position = maxPosition(conn, playlistId);
+            long addedDuration = 0;
+            List<Object[]> rows = new ArrayList<>();
+            for (Long songId : requested) {
+                Integer duration = durations.get(songId);
+                if (duration == null || present.contains(songId)) {
+                    continue;
+                }
+                position += POSITION_GAP;
+                rows.add(new Object[] {playlistId, songId, addedByUserId, position});
+                addedDuration += duration;
+            }
+
+            insertRows(conn, "INSERT INTO playlist_songs (playlist_id, song_id, added_by_user_id, position) VALUES ",
+                rows, MAX_ROWS_PER_INSERT);
+            if (!rows.isEmpty()) {
+                adjustTotals(conn, playlistId, rows.size(), addedDuration);
+            }
+            return rows.size();
+        });
+    }
+
+    /**
+     * Remove a song from a playlist
+     */
+    public boolean removeSong(Long playlistId, Long songId) throws SQLException {
+        return inTransaction(conn -> {
+            if (!lockPlaylist(conn, playlistId)) {
+                return false;
+            }
+            Integer duration = null;
+            String sql = "SELECT s.duration_seconds FROM playlist_songs ps " +
+                        "JOIN songs s ON s.song_id = ps.song_id " +
+                        "WHERE ps.playlist_id = ? AND ps.song_id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, playlistId);
+                stmt.setLong(2, songId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        duration = rs.getInt(1);
+                    }
+                }
+            }
+            if (duration == null) {
+                return false;
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "DELETE FROM playlist_songs WHERE playlist_id = ? AND song_id = ?")) {
+                stmt.setLong(1, playlistId);
+                stmt.setLong(2, songId);
+                stmt.executeUpdate();
+            }
+            adjustTotals(conn, playlistId, -1, -duration);
+            return true;
+        });
+    }
+
+    /**
+     * Move a song to directly after another song, or to the top when
+     * afterSongId is null. Normally updates only the moved row.
+     *
+     * @return false if the playlist, the song or afterSongId is not found
+     */
+    public boolean moveSong(Long playlistId, Long songId, Long afterSongId) throws SQLException {
+        return inTransaction(conn -> {
+            if (!lockPlaylist(conn, playlistId) || positionOf(conn, playlistId, songId) == null) {
+                return false;
+            }
+            if (songId.equals(afterSongId)) {
+                return true;
+            }
+            Long previous = null;
+            if (afterSongId != null) {
+                previous = positionOf(conn, playlistId, afterSongId);
+                if (previous == null) {
+                    return false;
+                }
+            }
+
+            Long position = positionAfter(conn, playlistId, songId, previous);
+            if (position == null) {
+                renumber(conn, playlistId);
+                previous = afterSongId != null ? positionOf(conn, playlistId, afterSongId) : null;
+                position = positionAfter(conn, playlistId, songId, previous);
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE playlist_songs SET position = ? WHERE playlist_id = ? AND song_id = ?")) {
+                stmt.setLong(1, position);
+                stmt.setLong(2, playlistId);
+                stmt.setLong(3, songId);
+                stmt.executeUpdate();
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Lock the playlist row for the rest of the transaction, serializing
+     * concurrent edits to the same playlist
+     */
+    private boolean lockPlaylist(Connection conn, Long playlistId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT playlist_id FROM playlists WHERE playlist_id = ? FOR UPDATE")) {
+            stmt.setLong(1, playlistId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private void adjustTotals(Connection conn, Long playlistId, int songDelta, long durationDelta)
+            throws SQLException {
+        String sql = "UPDATE playlists SET total_songs = GREATEST(total_songs + ?, 0), " +
+                    "total_duration_seconds = GREATEST(total_duration_seconds + ?, 0) WHERE playlist_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, songDelta);
+            stmt.setLong(2, durationDelta);
+            stmt.setLong(3, playlistId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private long maxPosition(Connection conn, Long playlistId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT MAX(position) FROM playlist_songs WHERE playlist_id = ?")) {
+            stmt.setLong(1, playlistId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private Long positionOf(Connection conn, Long playlistId, Long songId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT position FROM playlist_songs WHERE playlist_id = ? AND song_id = ?")) {
+            stmt.setLong(1, playlistId);
+            stmt.setLong(2, songId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Key for a song placed right after position previous (null for the top),
+     * or null if there is no free key before the next song
+     */
+    private Long positionAfter(Connection conn, Long playlistId, Long songId, Long previous) throws SQLException {
+        String sql = "SELECT MIN(position) FROM playlist_songs WHERE playlist_id = ? AND song_id <> ?" +
+                    (previous != null ? " AND position > ?" : "");
+        Long next = null;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, playlistId);
+            stmt.setLong(2, songId);
+            if (previous != null) {
+                stmt.setLong(3, previous);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    long value = rs.getLong(1);
+                    next = rs.wasNull() ? null : value;
+                }
+            }
+        }
+
+        if (previous == null) {
+            return next == null ? POSITION_GAP : next - POSITION_GAP;
+        }
+        if (next == null) {
+            return previous + POSITION_GAP;
+        }
+        return next - previous > 1 ? previous + (next - previous) / 2 : null;
+    }
+
+    /**
+     * Respace all keys of a playlist POSITION_GAP apart, keeping their order
+     */
+    private void renumber(Connection conn, Long playlistId) throws SQLException {
+        List<Long> songIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT song_id FROM playlist_songs WHERE playlist_id = ? ORDER BY position")) {
+            stmt.setLong(1, playlistId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    songIds.add(rs.getLong(1));
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE playlist_songs SET position = ? WHERE playlist_id = ? AND song_id = ?")) {
+            long position = 0;
+            for (Long songId : songIds) {
+                position += POSITION_GAP;
+                stmt.setLong(1, position);
+                stmt.setLong(2, playlistId);
+                stmt.setLong(3, songId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        logger.info("Renumbered {} tracks of playlist {}", songIds.size(), playlistId);
+    }
+
+    /**
+     * Durations of the given songs that exist
+     */
+    private Map<Long, Integer> findDurations(Connection conn, Set<Long> songIds) throws SQLException {
+        Map<Long, Integer> durations = new HashMap<>();
+        for (List<Long> chunk : chunks(songIds)) {
+            String sql = "SELECT song_id, duration_seconds FROM songs WHERE song_id IN (" +
+                        placeholders(chunk.size()) + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setLong(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        durations.put(rs.getLong(1), rs.getInt(2));
+                    }
+                }
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * The given songs that are already in the playlist
+     */
+    private Set<Long> findPresent(Connection conn, Long playlistId, Set<Long> songIds) throws SQLException {
+        Set<Long> present = new HashSet<>();
+        for (List<Long> chunk : chunks(songIds)) {
+            String sql = "SELECT song_id FROM playlist_songs WHERE playlist_id = ? AND song_id IN (" +
+                        placeholders(chunk.size()) + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, playlistId);
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setLong(i + 2, chunk.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        present.add(rs.getLong(1));
+                    }
+                }
+            }
+        }
+        return present;
+    }
+
+    private static List<List<Long>> chunks(Set<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(Math.min(ids.size(), MAX_IN_LIST));
+        for (Long id : ids) {
+            chunk.add(id);
+            if (chunk.size() == MAX_IN_LIST) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(MAX_IN_LIST);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private <T> T inTransaction(Transactional<T> work) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            T result = work.run(conn);
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    logger.error("Error rolling back playlist update", rollbackError);
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    logger.error("Error restoring auto-commit", e);
+                }
+            }
+            closeResources(conn, null);
+        }
+    }
+
+    /**
+     * Map ResultSet to Playlist object
+     */
+    private Playlist mapResultSetToPlaylist(ResultSet rs) throws SQLException {
+        Playlist playlist = new Playlist();
+        playlist.setPlaylistId(rs.getLong(1));
+        playlist.setUserId(rs.getLong(2));
+        playlist.setPlaylistName(rs.getString(3));
+        playlist.setDescription(rs.getString(4));
+        playlist.setCoverImageUrl(rs.getString(5));
+        playlist.setPublic(rs.getBoolean(6));
+        playlist.setTotalSongs(rs.getInt(7));
+        playlist.setTotalDurationSeconds(rs.getLong(8));
+        playlist.setFollowerCount(rs.getLong(9));
+        playlist.setCreatedAt(rs.getTimestamp(10));
+        playlist.setUpdatedAt(rs.getTimestamp(11));
+        return playlist;
+    }
+}
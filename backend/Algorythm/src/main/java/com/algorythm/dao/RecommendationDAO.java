@@ -0,0 +1,154 @@
+package com.algorythm.dao;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.model.Recommendation;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object for the recommendations table and the interaction
+ * streams the recommendation engine is built from
+ */
+public class RecommendationDAO extends BaseDAO {
+
+    private static final String INSERT_PREFIX =
+        "INSERT INTO recommendations (user_id, song_id, recommendation_source, relevance_score) VALUES ";
+
+    /**
+     * Receives (user, song) pairs one at a time without boxing
+     */
+    public interface InteractionConsumer {
+        void accept(long userId, long songId);
+    }
+
+    /**
+     * Highest history_id currently in listening_history, or 0 if empty
+     */
+    public long getMaxHistoryId() throws SQLException {
+        return queryMax("SELECT MAX(history_id) FROM listening_history");
+    }
+
+    /**
+     * Highest like_id currently in user_likes, or 0 if empty
+     */
+    public long getMaxLikeId() throws SQLException {
+        return queryMax("SELECT MAX(like_id) FROM user_likes");
+    }
+
+    /**
+     * Stream plays with afterId < history_id <= upToId in id order. Plays
+     * below minCompletionPercent are treated as skips and left out.
+     */
+    public void streamPlays(long afterId, long upToId, int minCompletionPercent, InteractionConsumer consumer)
+            throws SQLException {
+        String sql = "SELECT user_id, song_id FROM listening_history " +
+                    "WHERE history_id > ? AND history_id <= ? " +
+                    "AND (completion_percentage IS NULL OR completion_percentage >= ?) " +
+                    "ORDER BY history_id";
+        streamPairs(sql, consumer, afterId, upToId, minCompletionPercent);
+    }
+
+    /**
+     * Stream likes with afterId < like_id <= upToId in id order
+     */
+    public void streamLikes(long afterId, long upToId, InteractionConsumer consumer) throws SQLException {
+        String sql = "SELECT user_id, song_id FROM user_likes " +
+                    "WHERE like_id > ? AND like_id <= ? ORDER BY like_id";
+        streamPairs(sql, consumer, afterId, upToId);
+    }
+
+    /**
+     * Replace the given users' recommendations from one source in a single
+     * transaction, so readers never see a user with half a list
+     */
+    public int replaceRecommendations(String source, List<Long> userIds, List<Recommendation> recommendations)
+            throws SQLException {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> rows = new ArrayList<>(recommendations.size());
+        for (Recommendation r : recommendations) {
+            rows.add(new Object[] { r.getUserId(), r.getSongId(), source, r.getRelevanceScore() });
+        }
+
+        StringBuilder delete = new StringBuilder(
+            "DELETE FROM recommendations WHERE recommendation_source = ? AND user_id IN (");
+        for (int i = 0; i < userIds.size(); i++) {
+            delete.append(i == 0 ? "?" : ", ?");
+        }
+        delete.append(")");
+
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            stmt = conn.prepareStatement(delete.toString());
+            stmt.setString(1, source);
+            for (int i = 0; i < userIds.size(); i++) {
+                stmt.setLong(i + 2, userIds.get(i));
+            }
+            stmt.executeUpdate();
+            int inserted = insertRows(conn, INSERT_PREFIX, rows, 500);
+            conn.commit();
+            return inserted;
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    logger.error("Error rolling back recommendation batch", rollbackError);
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    logger.error("Error restoring auto-commit", e);
+                }
+            }
+            closeResources(conn, stmt);
+        }
+    }
+
+    private void streamPairs(String sql, InteractionConsumer consumer, Object... params) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(DatabaseConfig.getIntProperty("db.streamFetchSize", 500));
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                consumer.accept(rs.getLong(1), rs.getLong(2));
+            }
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    private long queryMax(String sql) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.algorythm.dao;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one at a time from a streaming query
+ */
+@FunctionalInterface
+public interface RowCallback<T> {
+    void accept(T row) throws IOException;
+}
@@ -0,0 +1,78 @@
+package com.algorythm.dao;
+
+import com.algorythm.model.SongSearchDocument;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object for loading search index documents
+ */
+public class SearchDAO extends BaseDAO {
+
+    private static final String DOCUMENT_SQL =
+        "SELECT s.song_id, s.song_title, s.play_count, a.artist_name, al.album_title " +
+        "FROM songs s " +
+        "LEFT JOIN artists a ON a.artist_id = s.artist_id " +
+        "LEFT JOIN albums al ON al.album_id = s.album_id";
+
+    /**
+     * Load the searchable text of every song, from a read replica when configured
+     */
+    public List<SongSearchDocument> findAllDocuments() throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<SongSearchDocument> documents = new ArrayList<>();
+        
+        try {
+            conn = getReadConnection();
+            stmt = conn.prepareStatement(DOCUMENT_SQL);
+            stmt.setFetchSize(1000);
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                documents.add(mapResultSetToDocument(rs));
+            }
+            return documents;
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * Load the searchable text of one song. Called right after the song is
+     * written, so it reads from the primary.
+     */
+    public SongSearchDocument findDocument(Long songId) throws SQLException {
+        String sql = DOCUMENT_SQL + " WHERE s.song_id = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, songId);
+            rs = stmt.executeQuery();
+            
+            if (rs.next()) {
+                return mapResultSetToDocument(rs);
+            }
+            return null;
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    private SongSearchDocument mapResultSetToDocument(ResultSet rs) throws SQLException {
+        return new SongSearchDocument(
+            rs.getLong("song_id"),
+            rs.getString("song_title"),
+            rs.getString("artist_name"),
+            rs.getString("album_title"),
+            rs.getLong("play_count")
+        );
+    }
+}
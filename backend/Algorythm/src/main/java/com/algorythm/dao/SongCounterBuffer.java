@@ -0,0 +1,350 @@
+package com.algorythm.dao;
+
+import com.algorythm.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for song play and like counters.
+ *
+ * Increments are accumulated in memory in a striped counter per song and
+ * written to the songs table as a single JDBC batch, either every
+ * counters.flushIntervalMs or as soon as counters.flushThreshold increments
+ * are pending. A crash loses at most one flush interval of increments;
+ * a normal shutdown flushes everything through DatabaseConfig.closeDataSource().
+ *
+ * A failed flush keeps its deltas for the next attempt, but only for
+ * counters.maxRetryMs: once the database has been failing that long the
+ * pending deltas are dropped and counted, so a crash during an outage still
+ * loses at most that window. After shutdown isEnabled() reports false and
+ * callers go back to direct updates.
+ */
+public class SongCounterBuffer extends BaseDAO {
+
+    /**
+     * Notified after a batch of counter deltas has been committed
+     */
+    public interface FlushListener {
+        void onFlush(Map<Long, Long> playDeltas, Map<Long, Long> likeDeltas);
+    }
+
+    private static final String FLUSH_SQL =
+        "UPDATE songs SET play_count = play_count + ?, " +
+        "like_count = GREATEST(like_count + ?, 0) WHERE song_id = ?";
+
+    private static volatile SongCounterBuffer instance;
+    private static volatile boolean shutDown;
+
+    private final long flushIntervalMs;
+    private final long flushThreshold;
+    private final long maxRetryMs;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+    private final List<FlushListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Counters are swapped out on every flush. The previous generation is
+    // drained once more on the following flush to pick up any increment that
+    // raced with the swap.
+    private volatile Generation current = new Generation();
+    private Generation previous = new Generation();
+
+    // Only decides when to flush early; one atomic add is cheaper than summing a LongAdder per increment
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushCount = new AtomicLong();
+    private final AtomicLong droppedDeltas = new AtomicLong();
+    // Start of the current run of failed flushes, 0 while flushes succeed
+    private long failingSinceMillis;
+    private final AtomicLong rowsFlushed = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    private static final class Generation {
+        final ConcurrentHashMap<Long, LongAdder> plays = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, LongAdder> likes = new ConcurrentHashMap<>();
+    }
+
+    SongCounterBuffer(long flushIntervalMs, long flushThreshold, long maxRetryMs) {
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushThreshold = flushThreshold;
+        this.maxRetryMs = maxRetryMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "song-counter-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the shared buffer, creating it from db.properties on first use
+     */
+    public static SongCounterBuffer getInstance() {
+        if (instance == null) {
+            synchronized (SongCounterBuffer.class) {
+                if (instance == null) {
+                    SongCounterBuffer buffer = new SongCounterBuffer(
+                        DatabaseConfig.getLongProperty("counters.flushIntervalMs", 250),
+                        DatabaseConfig.getLongProperty("counters.flushThreshold", 10000),
+                        DatabaseConfig.getLongProperty("counters.maxRetryMs", 60000));
+                    DatabaseConfig.registerShutdownHook(buffer::shutdown);
+                    instance = buffer;
+                    logger.info("Song counter write-behind buffer started (interval={}ms, threshold={})",
+                        buffer.flushIntervalMs, buffer.flushThreshold);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * The shared buffer if it has been started, without starting it
+     */
+    public static SongCounterBuffer getStartedInstance() {
+        return instance;
+    }
+
+    /**
+     * Whether play/like increments should go through the buffer
+     */
+    public static boolean isEnabled() {
+        return !shutDown && DatabaseConfig.getBooleanProperty("counters.writeBehind.enabled", true);
+    }
+
+    public void recordPlay(Long songId) {
+        add(current.plays, songId, 1);
+    }
+
+    public void recordLike(Long songId) {
+        add(current.likes, songId, 1);
+    }
+
+    public void recordUnlike(Long songId) {
+        add(current.likes, songId, -1);
+    }
+
+    public void addFlushListener(FlushListener listener) {
+        listeners.add(listener);
+    }
+
+    private void add(ConcurrentHashMap<Long, LongAdder> counters, Long songId, long delta) {
+        counters.computeIfAbsent(songId, id -> new LongAdder()).add(delta);
+        if (pendingEvents.incrementAndGet() >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    flushScheduled.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the final flush picks this increment up
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Write all pending deltas to the database as one batch
+     */
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            Generation drained = previous;
+            previous = current;
+            current = new Generation();
+
+            Map<Long, Long> playDeltas = new TreeMap<>();
+            Map<Long, Long> likeDeltas = new TreeMap<>();
+            drain(drained.plays, playDeltas);
+            drain(drained.likes, likeDeltas);
+            drain(previous.plays, playDeltas);
+            drain(previous.likes, likeDeltas);
+            pendingEvents.set(0);
+
+            if (playDeltas.isEmpty() && likeDeltas.isEmpty()) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            try {
+                writeBatch(playDeltas, likeDeltas);
+            } catch (SQLException e) {
+                failedFlushCount.incrementAndGet();
+                long now = System.currentTimeMillis();
+                if (failingSinceMillis == 0) {
+                    failingSinceMillis = now;
+                }
+                if (now - failingSinceMillis < maxRetryMs) {
+                    requeue(playDeltas, current.plays);
+                    requeue(likeDeltas, current.likes);
+                } else {
+                    long dropped = playDeltas.size() + likeDeltas.size();
+                    droppedDeltas.addAndGet(dropped);
+                    logger.error("Song counter flushes failing for {}ms, dropping {} pending deltas",
+                        now - failingSinceMillis, dropped);
+                }
+                throw e;
+            }
+
+            failingSinceMillis = 0;
+            flushCount.incrementAndGet();
+            lastFlushMillis = System.currentTimeMillis() - start;
+            for (FlushListener listener : listeners) {
+                try {
+                    listener.onFlush(playDeltas, likeDeltas);
+                } catch (RuntimeException e) {
+                    logger.error("Counter flush listener failed", e);
+                }
+            }
+        }
+    }
+
+    private void writeBatch(Map<Long, Long> playDeltas, Map<Long, Long> likeDeltas) throws SQLException {
+        // Sorted ids keep row-lock acquisition order stable across flushes
+        TreeMap<Long, long[]> rows = new TreeMap<>();
+        for (Map.Entry<Long, Long> e : playDeltas.entrySet()) {
+            rows.computeIfAbsent(e.getKey(), id -> new long[2])[0] = e.getValue();
+        }
+        for (Map.Entry<Long, Long> e : likeDeltas.entrySet()) {
+            rows.computeIfAbsent(e.getKey(), id -> new long[2])[1] = e.getValue();
+        }
+
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            stmt = conn.prepareStatement(FLUSH_SQL);
+            for (Map.Entry<Long, long[]> row : rows.entrySet()) {
+                stmt.setLong(1, row.getValue()[0]);
+                stmt.setLong(2, row.getValue()[1]);
+                stmt.setLong(3, row.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+            rowsFlushed.addAndGet(rows.size());
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    logger.error("Error rolling back counter flush", rollbackError);
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    logger.error("Error restoring auto-commit", e);
+                }
+            }
+            closeResources(conn, stmt);
+        }
+    }
+
+    private void drain(ConcurrentHashMap<Long, LongAdder> counters, Map<Long, Long> into) {
+        for (Map.Entry<Long, LongAdder> e : counters.entrySet()) {
+            long delta = e.getValue().sumThenReset();
+            if (delta != 0) {
+                into.merge(e.getKey(), delta, Long::sum);
+            }
+        }
+    }
+
+    private void requeue(Map<Long, Long> deltas, ConcurrentHashMap<Long, LongAdder> counters) {
+        for (Map.Entry<Long, Long> e : deltas.entrySet()) {
+            counters.computeIfAbsent(e.getKey(), id -> new LongAdder()).add(e.getValue());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            logger.error("Failed to flush song counters, will retry", e);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error flushing song counters", e);
+        }
+    }
+
+    /**
+     * Stop the flush timer and write out whatever is still pending
+     */
+    public void shutdown() {
+        shutDown = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+            logger.info("Song counter buffer flushed on shutdown");
+        } catch (SQLException e) {
+            logger.error("Final song counter flush failed, pending deltas lost: plays={}, likes={}",
+                getPendingPlayDeltas(), getPendingLikeDeltas(), e);
+        }
+    }
+
+    // Metrics
+
+    public long getPendingPlayDeltas() {
+        return sum(current.plays) + sum(previous.plays);
+    }
+
+    public long getPendingLikeDeltas() {
+        return sum(current.likes) + sum(previous.likes);
+    }
+
+    public int getPendingSongCount() {
+        return current.plays.size() + current.likes.size();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushCount.get();
+    }
+
+    /**
+     * Per-song deltas given up on after counters.maxRetryMs of failed flushes
+     */
+    public long getDroppedDeltas() {
+        return droppedDeltas.get();
+    }
+
+    public long getRowsFlushed() {
+        return rowsFlushed.get();
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    private static long sum(ConcurrentHashMap<Long, LongAdder> counters) {
+        long total = 0;
+        for (LongAdder adder : counters.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+}
+
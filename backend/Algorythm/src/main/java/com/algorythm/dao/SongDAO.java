@@ -1,15 +1,38 @@
 package com.algorythm.dao;
 
+import com.algorythm.cache.SingleFlight;
+import com.algorythm.cache.SongCache;
+import com.algorythm.model.Page;
 import com.algorythm.model.Song;
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.search.SongSearchIndex;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Data Access Object for Song operations
+ * Data Access Object for Song operations.
+ * Catalog reads go to the read replicas when configured. Reads that fill the
+ * song cache use the primary: a lagging replica could otherwise put back a
+ * row that an update has just invalidated, and keep it there for the TTL.
  */
 public class SongDAO extends BaseDAO {
+    // Popular albums and artists are requested by many clients at once; the
+    // lists returned through these are shared and unmodifiable
+    private static final SingleFlight<Long, List<Song>> byArtist = new SingleFlight<>("SongDAO.findByArtist");
+    private static final SingleFlight<Long, List<Song>> byAlbum = new SingleFlight<>("SongDAO.findByAlbum");
+    private static final SingleFlight<Integer, List<Song>> topSongs = new SingleFlight<>("SongDAO.getTopSongs");
+    private static final SingleFlight<Long, List<Song>> smallByArtist =
+        new SingleFlight<>("SongDAO.findByArtistIfSmall");
+    private static final SingleFlight<Long, List<Song>> smallByAlbum =
+        new SingleFlight<>("SongDAO.findByAlbumIfSmall");
 
     /**
      * Create a new song
@@ -20,7 +43,7 @@ public class SongDAO extends BaseDAO {
                     "lyrics, language, explicit_content, is_premium_only) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
-        return executeInsert(sql,
+        Long songId = executeInsert(sql,
             song.getSongTitle(),
             song.getAlbumId(),
             song.getArtistId(),
@@ -35,25 +58,62 @@ public class SongDAO extends BaseDAO {
             song.isExplicitContent(),
             song.isPremiumOnly()
         );
+        SongSearchIndex.onSongChanged(songId);
+        return songId;
     }
 
     /**
-     * Find song by ID
+     * Find song by ID, served from the song cache when possible
      */
     public Song findById(Long songId) throws SQLException {
-        String sql = "SELECT * FROM songs WHERE song_id = ?";
+        Song song = findCached(songId);
+        return song != null ? song : loadById(songId);
+    }
+
+    /**
+     * Find song by ID in the cache only
+     *
+     * @return the cached song, or null on a miss or if caching is disabled
+     */
+    public Song findCached(Long songId) {
+        return SongCache.isEnabled() ? SongCache.get().get(songId) : null;
+    }
+
+    /**
+     * Read a song from the primary and cache it, for callers that have
+     * already missed findCached
+     */
+    public Song loadById(Long songId) throws SQLException {
+        boolean cacheEnabled = SongCache.isEnabled();
+        Song song = queryById(songId, cacheEnabled);
+        if (song != null && cacheEnabled) {
+            SongCache.get().put(songId, song);
+        }
+        return song;
+    }
+
+    /**
+     * Find song by ID, always reading from the database (a replica when
+     * configured) and never caching the result
+     */
+    public Song findByIdUncached(Long songId) throws SQLException {
+        return queryById(songId, false);
+    }
+
+    private Song queryById(Long songId, boolean primary) throws SQLException {
+        String sql = "SELECT " + SongRowMapper.DETAIL + " FROM songs WHERE song_id = ?";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         
         try {
-            conn = getConnection();
+            conn = primary ? getConnection() : getReadConnection();
             stmt = conn.prepareStatement(sql);
             stmt.setLong(1, songId);
             rs = stmt.executeQuery();
             
             if (rs.next()) {
-                return mapResultSetToSong(rs);
+                return SongRowMapper.mapDetail(rs);
             }
             return null;
         } finally {
@@ -62,48 +122,167 @@ public class SongDAO extends BaseDAO {
     }
 
     /**
-     * Find songs by artist ID
+     * Find several songs by ID in as few round-trips as possible.
+     *
+     * Cached songs are used as they are; the rest are read with
+     * WHERE song_id IN (...) in chunks of MAX_IN_LIST and put into the cache,
+     * from the primary while caching is enabled.
+     * Songs come back in the order of songIds (duplicates repeated), with
+     * unknown ids left out. Like findById this returns the detail view.
      */
-    public List<Song> findByArtist(Long artistId) throws SQLException {
-        String sql = "SELECT * FROM songs WHERE artist_id = ? ORDER BY release_date DESC";
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
-        List<Song> songs = new ArrayList<>();
-        
-        try {
-            conn = getConnection();
-            stmt = conn.prepareStatement(sql);
-            stmt.setLong(1, artistId);
-            rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                songs.add(mapResultSetToSong(rs));
+    public List<Song> findByIds(List<Long> songIds) throws SQLException {
+        return findByIds(songIds, true);
+    }
+
+    /**
+     * Find several songs by ID in the list view, without lyrics.
+     *
+     * Same lookup and ordering as findByIds, but cache misses are read with
+     * the list projection from a replica and are not cached, since the cache
+     * holds detail rows. Cache hits are returned as copies without lyrics.
+     */
+    public List<Song> findListByIds(List<Long> songIds) throws SQLException {
+        return findByIds(songIds, false);
+    }
+
+    private List<Song> findByIds(List<Long> songIds, boolean detail) throws SQLException {
+        if (songIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        boolean cacheEnabled = SongCache.isEnabled();
+        boolean fillCache = cacheEnabled && detail;
+        Map<Long, Song> found = new HashMap<>(songIds.size() * 2);
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long songId : songIds) {
+            if (songId == null || found.containsKey(songId) || missing.contains(songId)) {
+                continue;
+            }
+            Song song = cacheEnabled ? SongCache.get().get(songId) : null;
+            if (song != null) {
+                found.put(songId, detail ? song : withoutLyrics(song));
+            } else {
+                missing.add(songId);
             }
-            return songs;
-        } finally {
-            closeResources(conn, stmt, rs);
         }
+
+        if (!missing.isEmpty()) {
+            List<Long> ids = new ArrayList<>(missing);
+            String projection = detail ? SongRowMapper.DETAIL : SongRowMapper.LIST;
+            Connection conn = null;
+            try {
+                conn = fillCache ? getConnection() : getReadConnection();
+                for (int start = 0; start < ids.size(); start += MAX_IN_LIST) {
+                    List<Long> chunk = ids.subList(start, Math.min(start + MAX_IN_LIST, ids.size()));
+                    String sql = "SELECT " + projection + " FROM songs WHERE song_id IN (" +
+                                placeholders(chunk.size()) + ")";
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            stmt.setLong(i + 1, chunk.get(i));
+                        }
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                Song song = detail ? SongRowMapper.mapDetail(rs) : SongRowMapper.mapList(rs);
+                                found.put(song.getSongId(), song);
+                                if (fillCache) {
+                                    SongCache.get().put(song.getSongId(), song);
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                closeResources(conn, null);
+            }
+        }
+
+        List<Song> songs = new ArrayList<>(songIds.size());
+        for (Long songId : songIds) {
+            Song song = songId != null ? found.get(songId) : null;
+            if (song != null) {
+                songs.add(song);
+            }
+        }
+        return songs;
+    }
+
+    private static Song withoutLyrics(Song song) {
+        Song copy = new Song(song);
+        copy.setLyrics(null);
+        return copy;
     }
 
     /**
-     * Find songs by album ID
+     * Find songs by artist ID. Identical concurrent calls share one query.
+     */
+    public List<Song> findByArtist(Long artistId) throws SQLException {
+        return byArtist.load(artistId, () -> Collections.unmodifiableList(queryByArtist(artistId)));
+    }
+
+    /**
+     * Songs by artist ID if there are at most coalesce.maxRows of them, else
+     * null; the caller should then stream them with streamByArtist. Identical
+     * concurrent calls share one query, and no more than that many rows are
+     * ever held in memory.
+     */
+    public List<Song> findByArtistIfSmall(Long artistId) throws SQLException {
+        int maxRows = maxCoalescedRows();
+        return smallByArtist.load(artistId, () -> unmodifiableOrNull(queryByArtist(artistId, maxRows)));
+    }
+
+    private List<Song> queryByArtist(Long artistId) throws SQLException {
+        return queryByArtist(artistId, 0);
+    }
+
+    /**
+     * @param maxRows stop and return null past this many rows; 0 for no limit
+     */
+    private List<Song> queryByArtist(Long artistId, int maxRows) throws SQLException {
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs WHERE artist_id = ? ORDER BY release_date DESC";
+        return queryList(maxRows > 0 ? sql + " LIMIT " + (maxRows + 1) : sql, artistId, maxRows);
+    }
+
+    /**
+     * Find songs by album ID. Identical concurrent calls share one query.
      */
     public List<Song> findByAlbum(Long albumId) throws SQLException {
-        String sql = "SELECT * FROM songs WHERE album_id = ? ORDER BY track_number";
+        return byAlbum.load(albumId, () -> Collections.unmodifiableList(queryByAlbum(albumId)));
+    }
+
+    /**
+     * Songs by album ID if there are at most coalesce.maxRows of them, else
+     * null; see findByArtistIfSmall
+     */
+    public List<Song> findByAlbumIfSmall(Long albumId) throws SQLException {
+        int maxRows = maxCoalescedRows();
+        return smallByAlbum.load(albumId, () -> unmodifiableOrNull(queryByAlbum(albumId, maxRows)));
+    }
+
+    private List<Song> queryByAlbum(Long albumId) throws SQLException {
+        return queryByAlbum(albumId, 0);
+    }
+
+    private List<Song> queryByAlbum(Long albumId, int maxRows) throws SQLException {
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs WHERE album_id = ? ORDER BY track_number";
+        return queryList(maxRows > 0 ? sql + " LIMIT " + (maxRows + 1) : sql, albumId, maxRows);
+    }
+
+    private List<Song> queryList(String sql, Long id, int maxRows) throws SQLException {
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         List<Song> songs = new ArrayList<>();
         
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(sql);
-            stmt.setLong(1, albumId);
+            stmt.setLong(1, id);
             rs = stmt.executeQuery();
             
             while (rs.next()) {
-                songs.add(mapResultSetToSong(rs));
+                if (maxRows > 0 && songs.size() == maxRows) {
+                    return null;
+                }
+                songs.add(SongRowMapper.mapList(rs));
             }
             return songs;
         } finally {
@@ -111,23 +290,55 @@ public class SongDAO extends BaseDAO {
         }
     }
 
+    private static int maxCoalescedRows() {
+        return Math.max(1, DatabaseConfig.getIntProperty("coalesce.maxRows", 500));
+    }
+
+    private static List<Song> unmodifiableOrNull(List<Song> songs) {
+        return songs != null ? Collections.unmodifiableList(songs) : null;
+    }
+
+    /**
+     * Stream songs by artist ID to a callback without buffering the full list
+     */
+    public void streamByArtist(Long artistId, RowCallback<Song> callback) throws SQLException, IOException {
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs WHERE artist_id = ? ORDER BY release_date DESC";
+        streamSongs(sql, false, callback, artistId);
+    }
+
+    /**
+     * Stream songs by album ID to a callback without buffering the full list
+     */
+    public void streamByAlbum(Long albumId, RowCallback<Song> callback) throws SQLException, IOException {
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs WHERE album_id = ? ORDER BY track_number";
+        streamSongs(sql, false, callback, albumId);
+    }
+
+    /**
+     * Stream the whole catalog, including lyrics, to a callback, e.g. for exports
+     */
+    public void streamAll(RowCallback<Song> callback) throws SQLException, IOException {
+        String sql = "SELECT " + SongRowMapper.DETAIL + " FROM songs ORDER BY song_id";
+        streamSongs(sql, true, callback);
+    }
+
     /**
      * Get all songs
      */
     public List<Song> findAll() throws SQLException {
-        String sql = "SELECT * FROM songs ORDER BY created_at DESC LIMIT 100";
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs ORDER BY created_at DESC LIMIT 100";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         List<Song> songs = new ArrayList<>();
         
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(sql);
             rs = stmt.executeQuery();
             
             while (rs.next()) {
-                songs.add(mapResultSetToSong(rs));
+                songs.add(SongRowMapper.mapList(rs));
             }
             return songs;
         } finally {
@@ -135,6 +346,40 @@ public class SongDAO extends BaseDAO {
         }
     }
 
+    /**
+     * Get one page of songs, newest first, using keyset pagination
+     *
+     * @param cursor cursor from the previous page, or null for the first page
+     */
+    public Page<Song> findPage(String cursor, int limit) throws SQLException {
+        List<Song> songs;
+        if (cursor == null) {
+            String sql = "SELECT " + SongRowMapper.LIST + " FROM songs ORDER BY created_at DESC, song_id DESC LIMIT ?";
+            songs = querySongList(sql, limit + 1);
+        } else {
+            PageCursor after = PageCursor.decode(cursor);
+            if (after.getCreatedAt() == null) {
+                String sql = "SELECT " + SongRowMapper.LIST + " FROM songs " +
+                            "WHERE created_at IS NULL AND song_id < ? " +
+                            "ORDER BY song_id DESC LIMIT ?";
+                songs = querySongList(sql, after.getId(), limit + 1);
+            } else {
+                String sql = "SELECT " + SongRowMapper.LIST + " FROM songs " +
+                            "WHERE created_at < ? OR (created_at = ? AND song_id < ?) OR created_at IS NULL " +
+                            "ORDER BY created_at DESC, song_id DESC LIMIT ?";
+                songs = querySongList(sql, after.getCreatedAt(), after.getCreatedAt(), after.getId(), limit + 1);
+            }
+        }
+
+        String next = null;
+        if (songs.size() > limit) {
+            songs = songs.subList(0, limit);
+            Song last = songs.get(limit - 1);
+            next = new PageCursor(last.getCreatedAt(), last.getSongId()).encode();
+        }
+        return new Page<>(songs, next);
+    }
+
     /**
      * Search songs by title
      */
@@ -146,21 +391,21 @@ public class SongDAO extends BaseDAO {
      * Search songs by title
      */
     public List<Song> searchByTitle(String searchQuery, int limit) throws SQLException {
-        String sql = "SELECT * FROM songs WHERE song_title LIKE ? ORDER BY play_count DESC LIMIT ?";
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs WHERE song_title LIKE ? ORDER BY play_count DESC LIMIT ?";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         List<Song> songs = new ArrayList<>();
         
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(sql);
             stmt.setString(1, "%" + searchQuery + "%");
             stmt.setInt(2, limit);
             rs = stmt.executeQuery();
             
             while (rs.next()) {
-                songs.add(mapResultSetToSong(rs));
+                songs.add(SongRowMapper.mapList(rs));
             }
             return songs;
         } finally {
@@ -169,23 +414,27 @@ public class SongDAO extends BaseDAO {
     }
 
     /**
-     * Get top songs by play count
+     * Get top songs by play count. Identical concurrent calls share one query.
      */
     public List<Song> getTopSongs(int limit) throws SQLException {
-        String sql = "SELECT * FROM songs ORDER BY play_count DESC LIMIT ?";
+        return topSongs.load(limit, () -> Collections.unmodifiableList(queryTopSongs(limit)));
+    }
+
+    private List<Song> queryTopSongs(int limit) throws SQLException {
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs ORDER BY play_count DESC LIMIT ?";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         List<Song> songs = new ArrayList<>();
         
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(sql);
             stmt.setInt(1, limit);
             rs = stmt.executeQuery();
             
             while (rs.next()) {
-                songs.add(mapResultSetToSong(rs));
+                songs.add(SongRowMapper.mapList(rs));
             }
             return songs;
         } finally {
@@ -197,20 +446,20 @@ public class SongDAO extends BaseDAO {
      * Get recent releases
      */
     public List<Song> getRecentReleases(int limit) throws SQLException {
-        String sql = "SELECT * FROM songs ORDER BY release_date DESC LIMIT ?";
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs ORDER BY release_date DESC LIMIT ?";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         List<Song> songs = new ArrayList<>();
         
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(sql);
             stmt.setInt(1, limit);
             rs = stmt.executeQuery();
             
             while (rs.next()) {
-                songs.add(mapResultSetToSong(rs));
+                songs.add(SongRowMapper.mapList(rs));
             }
             return songs;
         } finally {
@@ -219,12 +468,50 @@ public class SongDAO extends BaseDAO {
     }
 
     /**
-     * Update song information
+     * Get top songs by play count within a genre
+     */
+    public List<Song> getTopSongsByGenre(String genreName, int limit) throws SQLException {
+        String sql = "SELECT " + SongRowMapper.LIST_QUALIFIED + " FROM songs s " +
+                    "JOIN song_genres sg ON sg.song_id = s.song_id " +
+                    "JOIN genres g ON g.genre_id = sg.genre_id " +
+                    "WHERE g.genre_name = ? ORDER BY s.play_count DESC LIMIT ?";
+        return querySongList(sql, genreName, limit);
+    }
+
+    /**
+     * Get top songs by play count for a language
+     */
+    public List<Song> getTopSongsByLanguage(String language, int limit) throws SQLException {
+        String sql = "SELECT " + SongRowMapper.LIST + " FROM songs WHERE language = ? ORDER BY play_count DESC LIMIT ?";
+        return querySongList(sql, language, limit);
+    }
+
+    /**
+     * Get the names of all genres that have at least one song
+     */
+    public List<String> findGenreNames() throws SQLException {
+        String sql = "SELECT DISTINCT g.genre_name FROM genres g " +
+                    "JOIN song_genres sg ON sg.genre_id = g.genre_id";
+        return queryStringList(sql);
+    }
+
+    /**
+     * Get all distinct song languages
+     */
+    public List<String> findLanguages() throws SQLException {
+        String sql = "SELECT DISTINCT language FROM songs WHERE language IS NOT NULL";
+        return queryStringList(sql);
+    }
+
+    /**
+     * Update song information. Null lyrics leave the stored lyrics unchanged,
+     * since songs read through list queries do not carry them; use
+     * clearLyrics() to remove them.
      */
     public boolean updateSong(Song song) throws SQLException {
         String sql = "UPDATE songs SET song_title = ?, album_id = ?, duration_seconds = ?, " +
                     "audio_file_url = ?, audio_quality = ?, track_number = ?, disc_number = ?, " +
-                    "release_date = ?, lyrics = ?, language = ?, explicit_content = ?, " +
+                    "release_date = ?, lyrics = COALESCE(?, lyrics), language = ?, explicit_content = ?, " +
                     "is_premium_only = ? WHERE song_id = ?";
         
         int rowsAffected = executeUpdate(sql,
@@ -243,13 +530,32 @@ public class SongDAO extends BaseDAO {
             song.getSongId()
         );
         
+        SongCache.get().invalidate(song.getSongId());
+        SongSearchIndex.onSongChanged(song.getSongId());
         return rowsAffected > 0;
     }
 
     /**
-     * Increment play count
+     * Remove a song's lyrics, which updateSong() cannot do
+     */
+    public boolean clearLyrics(Long songId) throws SQLException {
+        String sql = "UPDATE songs SET lyrics = NULL WHERE song_id = ?";
+        int rowsAffected = executeUpdate(sql, songId);
+
+        SongCache.get().invalidate(songId);
+        SongSearchIndex.onSongChanged(songId);
+        return rowsAffected > 0;
+    }
+
+    /**
+     * Increment play count. With write-behind counters enabled the increment is
+     * buffered and flushed in batches, so the return value only means "accepted".
      */
     public boolean incrementPlayCount(Long songId) throws SQLException {
+        if (SongCounterBuffer.isEnabled()) {
+            SongCounterBuffer.getInstance().recordPlay(songId);
+            return true;
+        }
         String sql = "UPDATE songs SET play_count = play_count + 1 WHERE song_id = ?";
         return executeUpdate(sql, songId) > 0;
     }
@@ -258,6 +564,10 @@ public class SongDAO extends BaseDAO {
      * Increment like count
      */
     public boolean incrementLikeCount(Long songId) throws SQLException {
+        if (SongCounterBuffer.isEnabled()) {
+            SongCounterBuffer.getInstance().recordLike(songId);
+            return true;
+        }
         String sql = "UPDATE songs SET like_count = like_count + 1 WHERE song_id = ?";
         return executeUpdate(sql, songId) > 0;
     }
@@ -266,6 +576,10 @@ public class SongDAO extends BaseDAO {
      * Decrement like count
      */
     public boolean decrementLikeCount(Long songId) throws SQLException {
+        if (SongCounterBuffer.isEnabled()) {
+            SongCounterBuffer.getInstance().recordUnlike(songId);
+            return true;
+        }
         String sql = "UPDATE songs SET like_count = like_count - 1 WHERE song_id = ? AND like_count > 0";
         return executeUpdate(sql, songId) > 0;
     }
@@ -275,38 +589,88 @@ public class SongDAO extends BaseDAO {
      */
     public boolean deleteSong(Long songId) throws SQLException {
         String sql = "DELETE FROM songs WHERE song_id = ?";
-        return executeUpdate(sql, songId) > 0;
+        boolean deleted = executeUpdate(sql, songId) > 0;
+        SongCache.get().invalidate(songId);
+        SongSearchIndex.onSongDeleted(songId);
+        return deleted;
     }
 
     /**
-     * Map ResultSet to Song object
+     * Run a query and map every row to a Song
      */
-    private Song mapResultSetToSong(ResultSet rs) throws SQLException {
-        Song song = new Song();
-        song.setSongId(rs.getLong("song_id"));
-        song.setSongTitle(rs.getString("song_title"));
-        song.setAlbumId(rs.getLong("album_id"));
-        song.setArtistId(rs.getLong("artist_id"));
-        song.setDurationSeconds(rs.getInt("duration_seconds"));
-        song.setAudioFileUrl(rs.getString("audio_file_url"));
-        song.setAudioQuality(rs.getString("audio_quality"));
-        song.setTrackNumber(rs.getInt("track_number"));
-        song.setDiscNumber(rs.getInt("disc_number"));
+    private List<Song> querySongList(String sql, Object... params) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<Song> songs = new ArrayList<>();
         
-        Date releaseDate = rs.getDate("release_date");
-        if (releaseDate != null) {
-            song.setReleaseDate(releaseDate.toLocalDate());
+        try {
+            conn = getReadConnection();
+            stmt = conn.prepareStatement(sql);
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                songs.add(SongRowMapper.mapList(rs));
+            }
+            return songs;
+        } finally {
+            closeResources(conn, stmt, rs);
         }
+    }
+
+    /**
+     * Run a query and hand each mapped row to the callback as it is read.
+     * Rows are fetched from the server in chunks of db.streamFetchSize
+     * (requires useCursorFetch=true on the MySQL URL), so memory stays flat.
+     *
+     * @param detail whether sql selects the DETAIL projection rather than LIST
+     */
+    private void streamSongs(String sql, boolean detail, RowCallback<Song> callback, Object... params)
+            throws SQLException, IOException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
         
-        song.setLyrics(rs.getString("lyrics"));
-        song.setLanguage(rs.getString("language"));
-        song.setExplicitContent(rs.getBoolean("explicit_content"));
-        song.setPremiumOnly(rs.getBoolean("is_premium_only"));
-        song.setPlayCount(rs.getLong("play_count"));
-        song.setLikeCount(rs.getLong("like_count"));
-        song.setCreatedAt(rs.getTimestamp("created_at"));
-        song.setUpdatedAt(rs.getTimestamp("updated_at"));
+        try {
+            conn = getReadConnection();
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(DatabaseConfig.getIntProperty("db.streamFetchSize", 500));
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                callback.accept(detail ? SongRowMapper.mapDetail(rs) : SongRowMapper.mapList(rs));
+            }
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * Run a query returning a single string column
+     */
+    private List<String> queryStringList(String sql) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<String> values = new ArrayList<>();
         
-        return song;
+        try {
+            conn = getReadConnection();
+            stmt = conn.prepareStatement(sql);
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+            return values;
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
     }
 }
@@ -0,0 +1,87 @@
+package com.algorythm.dao;
+
+import com.algorythm.model.Song;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Column projections and positional row mapping for the songs table.
+ *
+ * Queries select one of the projections below instead of SELECT *, and rows
+ * are read by column index in projection order, so no per-row name lookups
+ * happen. The list projection leaves out lyrics, which list views never show;
+ * single-song reads use the detail projection, and clients holding a list
+ * entry fetch lyrics on demand from /songs/{id}/lyrics.
+ */
+final class SongRowMapper {
+
+    private static final String[] LIST_COLUMNS = {
+        "song_id", "song_title", "album_id", "artist_id", "duration_seconds",
+        "audio_file_url", "audio_quality", "track_number", "disc_number", "release_date",
+        "language", "explicit_content", "is_premium_only", "play_count", "like_count",
+        "created_at", "updated_at"
+    };
+    private static final int LYRICS_INDEX = LIST_COLUMNS.length + 1;
+
+    /** Columns for list views (no lyrics) */
+    static final String LIST = columns(null, false);
+    /** Columns for list views, qualified with the "s" table alias for joins */
+    static final String LIST_QUALIFIED = columns("s", false);
+    /** Columns for single-song views, including lyrics */
+    static final String DETAIL = columns(null, true);
+
+    private SongRowMapper() {}
+
+    /**
+     * Map the current row of a LIST or LIST_QUALIFIED projection
+     */
+    static Song mapList(ResultSet rs) throws SQLException {
+        Song song = new Song();
+        song.setSongId(rs.getLong(1));
+        song.setSongTitle(rs.getString(2));
+        song.setAlbumId(rs.getLong(3));
+        song.setArtistId(rs.getLong(4));
+        song.setDurationSeconds(rs.getInt(5));
+        song.setAudioFileUrl(rs.getString(6));
+        song.setAudioQuality(rs.getString(7));
+        song.setTrackNumber(rs.getInt(8));
+        song.setDiscNumber(rs.getInt(9));
+        song.setReleaseDate(rs.getObject(10, LocalDate.class));
+        song.setLanguage(rs.getString(11));
+        song.setExplicitContent(rs.getBoolean(12));
+        song.setPremiumOnly(rs.getBoolean(13));
+        song.setPlayCount(rs.getLong(14));
+        song.setLikeCount(rs.getLong(15));
+        song.setCreatedAt(rs.getTimestamp(16));
+        song.setUpdatedAt(rs.getTimestamp(17));
+        return song;
+    }
+
+    /**
+     * Map the current row of a DETAIL projection
+     */
+    static Song mapDetail(ResultSet rs) throws SQLException {
+        Song song = mapList(rs);
+        song.setLyrics(rs.getString(LYRICS_INDEX));
+        return song;
+    }
+
+    private static String columns(String alias, boolean withLyrics) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : LIST_COLUMNS) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            if (alias != null) {
+                sb.append(alias).append('.');
+            }
+            sb.append(column);
+        }
+        if (withLyrics) {
+            sb.append(", ").append(alias != null ? alias + ".lyrics" : "lyrics");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.algorythm.dao;
+
+import java.sql.*;
+import java.util.Map;
+
+/**
+ * Data Access Object for token_revocations, the logouts shared between nodes
+ */
+public class TokenRevocationDAO extends BaseDAO {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO token_revocations (token_id, expires_at) VALUES (?, ?)";
+
+    // Revocations are re-read over a trailing window rather than by id, so a
+    // row whose insert committed out of id order is still picked up
+    private static final String FIND_RECENT_SQL =
+        "SELECT token_id, expires_at FROM token_revocations " +
+        "WHERE revoked_at >= TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP) AND expires_at > CURRENT_TIMESTAMP";
+
+    private static final String FIND_ACTIVE_SQL =
+        "SELECT token_id, expires_at FROM token_revocations WHERE expires_at > CURRENT_TIMESTAMP";
+
+    private static final String DELETE_EXPIRED_SQL =
+        "DELETE FROM token_revocations WHERE expires_at <= CURRENT_TIMESTAMP";
+
+    /**
+     * Record that a token id is revoked until expiresAtMillis
+     */
+    public void insert(String tokenId, long expiresAtMillis) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(INSERT_SQL);
+            stmt.setString(1, tokenId);
+            stmt.setTimestamp(2, new Timestamp(expiresAtMillis));
+            stmt.executeUpdate();
+        } finally {
+            closeResources(conn, stmt);
+        }
+    }
+
+    /**
+     * Unexpired revocations made in the last windowSeconds, into token id -> expiry millis
+     */
+    public void findRecent(int windowSeconds, Map<String, Long> into) throws SQLException {
+        find(FIND_RECENT_SQL, -windowSeconds, into);
+    }
+
+    /**
+     * Every unexpired revocation, into token id -> expiry millis
+     */
+    public void findActive(Map<String, Long> into) throws SQLException {
+        find(FIND_ACTIVE_SQL, null, into);
+    }
+
+    private void find(String sql, Integer offsetSeconds, Map<String, Long> into) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            // Read from the primary; a lagging replica would delay logouts
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            if (offsetSeconds != null) {
+                stmt.setInt(1, offsetSeconds);
+            }
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                into.put(rs.getString("token_id"), rs.getTimestamp("expires_at").getTime());
+            }
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * Remove revocations for tokens that have expired anyway
+     */
+    public int deleteExpired() throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(DELETE_EXPIRED_SQL);
+            return stmt.executeUpdate();
+        } finally {
+            closeResources(conn, stmt);
+        }
+    }
+}
@@ -1,18 +1,30 @@
 package com.algorythm.dao;
 
+import com.algorythm.cache.SingleFlight;
+import com.algorythm.model.Page;
 import com.algorythm.model.User;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 /**
- * Data Access Object for User operations
+ * Data Access Object for User operations.
+ * Lookups of a single user stay on the primary so users see their own
+ * writes; listings and counts may be served by a read replica.
  */
 public class UserDAO extends BaseDAO {
+    // Callers such as UserService.upgradeSubscription modify the user they
+    // get, so waiters receive their own copy
+    private static final SingleFlight<Long, User> byId = new SingleFlight<>("UserDAO.findById", User::new);
 
     /**
-     * Create a new user
+     * Create a new user. Uniqueness of username and email is left to the
+     * table's unique keys; use {@link #duplicateColumn(SQLException)} to tell
+     * which one a failed insert hit.
      */
     public Long createUser(User user) throws SQLException {
         String sql = "INSERT INTO users (username, email, password_hash, full_name, date_of_birth, " +
@@ -34,10 +46,63 @@ public class UserDAO extends BaseDAO {
     }
 
     /**
-     * Find user by ID
+     * The unique column ("email" or "username") an insert or update collided
+     * with, or null if the failure was not a duplicate key
+     */
+    public static String duplicateColumn(SQLException e) {
+        if (!isDuplicateKey(e) || e.getMessage() == null) {
+            return null;
+        }
+        // MySQL: "Duplicate entry '...' for key 'users.email'" (no table prefix before 8.0.19).
+        // Elsewhere the index description names the column, e.g. H2's "ON PUBLIC.USERS(EMAIL ...)".
+        String message = e.getMessage().toLowerCase();
+        String target;
+        int key = message.lastIndexOf("for key '");
+        if (key >= 0) {
+            target = message.substring(key);
+        } else {
+            int start = message.indexOf("users(");
+            if (start < 0) {
+                return null;
+            }
+            int end = message.indexOf(')', start);
+            target = message.substring(start, end >= 0 ? end : message.length());
+        }
+        if (target.contains("email")) {
+            return "email";
+        }
+        if (target.contains("username")) {
+            return "username";
+        }
+        return null;
+    }
+
+    /**
+     * Find user by ID. Like the other finders this does not load the password hash.
+     * Identical concurrent calls share one query.
      */
     public User findById(Long userId) throws SQLException {
-        String sql = "SELECT * FROM users WHERE user_id = ?";
+        return byId.load(userId, () -> queryById(userId));
+    }
+
+    /**
+     * Find user by ID and pass the row to onLoaded, unless invalidate() was
+     * called for the user while it loaded; for callers that cache it
+     */
+    public User findById(Long userId, Consumer<User> onLoaded) throws SQLException {
+        return byId.load(userId, () -> queryById(userId), onLoaded);
+    }
+
+    /**
+     * Keep reads already in flight for the user from being shared or
+     * cached; call after changing the user
+     */
+    public void invalidate(Long userId) {
+        byId.invalidate(userId);
+    }
+
+    private User queryById(Long userId) throws SQLException {
+        String sql = "SELECT " + UserRowMapper.PROFILE + " FROM users WHERE user_id = ?";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
@@ -49,7 +114,7 @@ public class UserDAO extends BaseDAO {
             rs = stmt.executeQuery();
             
             if (rs.next()) {
-                return mapResultSetToUser(rs);
+                return UserRowMapper.mapProfile(rs);
             }
             return null;
         } finally {
@@ -61,7 +126,31 @@ public class UserDAO extends BaseDAO {
      * Find user by email
      */
     public User findByEmail(String email) throws SQLException {
-        String sql = "SELECT * FROM users WHERE email = ?";
+        String sql = "SELECT " + UserRowMapper.PROFILE + " FROM users WHERE email = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, email);
+            rs = stmt.executeQuery();
+            
+            if (rs.next()) {
+                return UserRowMapper.mapProfile(rs);
+            }
+            return null;
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * Find user by email including the password hash, for authentication
+     */
+    public User findCredentialsByEmail(String email) throws SQLException {
+        String sql = "SELECT " + UserRowMapper.CREDENTIALS + " FROM users WHERE email = ?";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
@@ -73,7 +162,7 @@ public class UserDAO extends BaseDAO {
             rs = stmt.executeQuery();
             
             if (rs.next()) {
-                return mapResultSetToUser(rs);
+                return UserRowMapper.mapCredentials(rs);
             }
             return null;
         } finally {
@@ -85,7 +174,7 @@ public class UserDAO extends BaseDAO {
      * Find user by username
      */
     public User findByUsername(String username) throws SQLException {
-        String sql = "SELECT * FROM users WHERE username = ?";
+        String sql = "SELECT " + UserRowMapper.PROFILE + " FROM users WHERE username = ?";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
@@ -97,7 +186,7 @@ public class UserDAO extends BaseDAO {
             rs = stmt.executeQuery();
             
             if (rs.next()) {
-                return mapResultSetToUser(rs);
+                return UserRowMapper.mapProfile(rs);
             }
             return null;
         } finally {
@@ -131,13 +220,49 @@ public class UserDAO extends BaseDAO {
     }
 
     /**
-     * Update last login timestamp
+     * Update last login timestamp. With the write-behind buffer enabled the
+     * update is batched with other logins, so the return value only means "accepted".
      */
     public boolean updateLastLogin(Long userId) throws SQLException {
+        if (LastLoginBuffer.isEnabled()) {
+            LastLoginBuffer.getInstance().recordLogin(userId);
+            return true;
+        }
         String sql = "UPDATE users SET last_login = CURRENT_TIMESTAMP WHERE user_id = ?";
         return executeUpdate(sql, userId) > 0;
     }
 
+    /**
+     * Replace a user's password hash, e.g. after upgrading its format
+     */
+    public boolean updatePasswordHash(Long userId, String passwordHash) throws SQLException {
+        String sql = "UPDATE users SET password_hash = ? WHERE user_id = ?";
+        return executeUpdate(sql, passwordHash, userId) > 0;
+    }
+
+    /**
+     * Set last_login for many users in one batch, in user id order
+     */
+    public void updateLastLogins(Map<Long, Timestamp> lastLogins) throws SQLException {
+        String sql = "UPDATE users SET last_login = GREATEST(COALESCE(last_login, ?), ?) WHERE user_id = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            for (Map.Entry<Long, Timestamp> e : new TreeMap<>(lastLogins).entrySet()) {
+                stmt.setTimestamp(1, e.getValue());
+                stmt.setTimestamp(2, e.getValue());
+                stmt.setLong(3, e.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } finally {
+            closeResources(conn, stmt);
+        }
+    }
+
     /**
      * Delete user
      */
@@ -148,23 +273,26 @@ public class UserDAO extends BaseDAO {
 
     /**
      * Get all users with pagination
+     *
+     * @deprecated OFFSET paging slows down linearly with page depth; use {@link #findPage(String, int)}
      */
+    @Deprecated
     public List<User> findAll(int limit, int offset) throws SQLException {
-        String sql = "SELECT * FROM users ORDER BY created_at DESC LIMIT ? OFFSET ?";
+        String sql = "SELECT " + UserRowMapper.PROFILE + " FROM users ORDER BY created_at DESC LIMIT ? OFFSET ?";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         List<User> users = new ArrayList<>();
         
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(sql);
             stmt.setInt(1, limit);
             stmt.setInt(2, offset);
             rs = stmt.executeQuery();
             
             while (rs.next()) {
-                users.add(mapResultSetToUser(rs));
+                users.add(UserRowMapper.mapProfile(rs));
             }
             return users;
         } finally {
@@ -172,24 +300,79 @@ public class UserDAO extends BaseDAO {
         }
     }
 
+    /**
+     * Get one page of users, newest first, using keyset pagination
+     *
+     * @param cursor cursor from the previous page, or null for the first page
+     */
+    public Page<User> findPage(String cursor, int limit) throws SQLException {
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        String sql;
+        if (after == null) {
+            sql = "SELECT " + UserRowMapper.PROFILE + " FROM users ORDER BY created_at DESC, user_id DESC LIMIT ?";
+        } else if (after.getCreatedAt() == null) {
+            sql = "SELECT " + UserRowMapper.PROFILE + " FROM users WHERE created_at IS NULL AND user_id < ? " +
+                  "ORDER BY user_id DESC LIMIT ?";
+        } else {
+            sql = "SELECT " + UserRowMapper.PROFILE + " FROM users " +
+                  "WHERE created_at < ? OR (created_at = ? AND user_id < ?) OR created_at IS NULL " +
+                  "ORDER BY created_at DESC, user_id DESC LIMIT ?";
+        }
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<User> users = new ArrayList<>();
+        
+        try {
+            conn = getReadConnection();
+            stmt = conn.prepareStatement(sql);
+            if (after == null) {
+                stmt.setInt(1, limit + 1);
+            } else if (after.getCreatedAt() == null) {
+                stmt.setLong(1, after.getId());
+                stmt.setInt(2, limit + 1);
+            } else {
+                stmt.setTimestamp(1, after.getCreatedAt());
+                stmt.setTimestamp(2, after.getCreatedAt());
+                stmt.setLong(3, after.getId());
+                stmt.setInt(4, limit + 1);
+            }
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                users.add(UserRowMapper.mapProfile(rs));
+            }
+        } finally {
+            closeResources(conn, stmt, rs);
+        }
+
+        String next = null;
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            User last = users.get(limit - 1);
+            next = new PageCursor(last.getCreatedAt(), last.getUserId()).encode();
+        }
+        return new Page<>(users, next);
+    }
+
     /**
      * Get users by subscription type
      */
     public List<User> findBySubscriptionType(String subscriptionType) throws SQLException {
-        String sql = "SELECT * FROM users WHERE subscription_type = ? AND is_active = TRUE";
+        String sql = "SELECT " + UserRowMapper.PROFILE + " FROM users WHERE subscription_type = ? AND is_active = TRUE";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         List<User> users = new ArrayList<>();
         
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(sql);
             stmt.setString(1, subscriptionType);
             rs = stmt.executeQuery();
             
             while (rs.next()) {
-                users.add(mapResultSetToUser(rs));
+                users.add(UserRowMapper.mapProfile(rs));
             }
             return users;
         } finally {
@@ -207,7 +390,7 @@ public class UserDAO extends BaseDAO {
         ResultSet rs = null;
         
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(sql);
             rs = stmt.executeQuery();
             
@@ -219,32 +402,4 @@ public class UserDAO extends BaseDAO {
             closeResources(conn, stmt, rs);
         }
     }
-
-    /**
-     * Map ResultSet to User object
-     */
-    private User mapResultSetToUser(ResultSet rs) throws SQLException {
-        User user = new User();
-        user.setUserId(rs.getLong("user_id"));
-        user.setUsername(rs.getString("username"));
-        user.setEmail(rs.getString("email"));
-        user.setPasswordHash(rs.getString("password_hash"));
-        user.setFullName(rs.getString("full_name"));
-        
-        Date dob = rs.getDate("date_of_birth");
-        if (dob != null) {
-            user.setDateOfBirth(dob.toLocalDate());
-        }
-        
-        user.setGender(rs.getString("gender"));
-        user.setProfilePictureUrl(rs.getString("profile_picture_url"));
-        user.setSubscriptionType(rs.getString("subscription_type"));
-        user.setVerified(rs.getBoolean("is_verified"));
-        user.setActive(rs.getBoolean("is_active"));
-        user.setCreatedAt(rs.getTimestamp("created_at"));
-        user.setUpdatedAt(rs.getTimestamp("updated_at"));
-        user.setLastLogin(rs.getTimestamp("last_login"));
-        
-        return user;
-    }
 }
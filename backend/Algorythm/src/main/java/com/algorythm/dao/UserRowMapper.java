@@ -0,0 +1,60 @@
+package com.algorythm.dao;
+
+import com.algorythm.model.User;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Column projections and positional row mapping for the users table.
+ *
+ * The profile projection never reads password_hash; only the credentials
+ * projection used on the login path does.
+ */
+final class UserRowMapper {
+
+    private static final String[] PROFILE_COLUMNS = {
+        "user_id", "username", "email", "full_name", "date_of_birth", "gender",
+        "profile_picture_url", "subscription_type", "is_verified", "is_active",
+        "created_at", "updated_at", "last_login"
+    };
+    private static final int PASSWORD_HASH_INDEX = PROFILE_COLUMNS.length + 1;
+
+    /** Columns for profile reads and listings (no password hash) */
+    static final String PROFILE = String.join(", ", PROFILE_COLUMNS);
+    /** Profile columns plus password_hash, for authentication only */
+    static final String CREDENTIALS = PROFILE + ", password_hash";
+
+    private UserRowMapper() {}
+
+    /**
+     * Map the current row of a PROFILE projection
+     */
+    static User mapProfile(ResultSet rs) throws SQLException {
+        User user = new User();
+        user.setUserId(rs.getLong(1));
+        user.setUsername(rs.getString(2));
+        user.setEmail(rs.getString(3));
+        user.setFullName(rs.getString(4));
+        user.setDateOfBirth(rs.getObject(5, LocalDate.class));
+        user.setGender(rs.getString(6));
+        user.setProfilePictureUrl(rs.getString(7));
+        user.setSubscriptionType(rs.getString(8));
+        user.setVerified(rs.getBoolean(9));
+        user.setActive(rs.getBoolean(10));
+        user.setCreatedAt(rs.getTimestamp(11));
+        user.setUpdatedAt(rs.getTimestamp(12));
+        user.setLastLogin(rs.getTimestamp(13));
+        return user;
+    }
+
+    /**
+     * Map the current row of a CREDENTIALS projection
+     */
+    static User mapCredentials(ResultSet rs) throws SQLException {
+        User user = mapProfile(rs);
+        user.setPasswordHash(rs.getString(PASSWORD_HASH_INDEX));
+        return user;
+    }
+}
@@ -0,0 +1,120 @@
+package com.algorythm.filter;
+
+import com.algorythm.auth.AuthToken;
+import com.algorythm.auth.TokenService;
+import com.algorythm.model.UserProfile;
+import com.algorythm.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Authenticates requests carrying an "Authorization: Bearer" token.
+ *
+ * A valid token's claims are copied into request attributes under the same
+ * names the session used, so servlets read the user the same way in every
+ * auth.mode through getUserId and getSubscriptionType. An invalid or revoked
+ * token leaves the request anonymous; endpoints that need a user answer 401
+ * as they do without one. A token past half its lifetime is replaced by a
+ * fresh one in the X-Auth-Token response header, carrying the user's
+ * current subscription; a user found deactivated or deleted at that point
+ * is treated like an invalid token.
+ */
+public class AuthFilter implements Filter {
+    private static final Logger logger = LoggerFactory.getLogger(AuthFilter.class);
+
+    public static final String USER_ID = "userId";
+    public static final String USERNAME = "username";
+    public static final String SUBSCRIPTION_TYPE = "subscriptionType";
+    public static final String TOKEN = "authToken";
+    public static final String REFRESH_HEADER = "X-Auth-Token";
+
+    private static final String BEARER = "Bearer ";
+
+    private TokenService tokenService;
+    private UserService userService;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        if (TokenService.isEnabled()) {
+            tokenService = TokenService.getInstance();
+            userService = new UserService();
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        String header = httpRequest.getHeader("Authorization");
+        if (tokenService != null && header != null && header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            AuthToken token = tokenService.verify(header.substring(BEARER.length()).trim());
+            String username = token != null ? token.getUsername() : null;
+            String subscriptionType = token != null ? token.getSubscriptionType() : null;
+            if (token != null && tokenService.shouldRefresh(token)) {
+                try {
+                    UserProfile profile = userService.getProfile(token.getUserId());
+                    if (profile == null || !profile.isActive()) {
+                        token = null;
+                    } else {
+                        username = profile.getUsername();
+                        subscriptionType = profile.getSubscriptionType();
+                        httpResponse.setHeader(REFRESH_HEADER, tokenService.refresh(token, username, subscriptionType));
+                    }
+                } catch (SQLException e) {
+                    // The token is still valid; try again on the next request
+                    logger.warn("Could not load user {} to refresh token", token.getUserId(), e);
+                }
+            }
+            if (token != null) {
+                httpRequest.setAttribute(TOKEN, token);
+                httpRequest.setAttribute(USER_ID, token.getUserId());
+                httpRequest.setAttribute(USERNAME, username);
+                httpRequest.setAttribute(SUBSCRIPTION_TYPE, subscriptionType);
+            } else {
+                httpResponse.setHeader("WWW-Authenticate", "Bearer error=\"invalid_token\"");
+            }
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * The authenticated user's id from the token, else from the session, or null
+     */
+    public static Long getUserId(HttpServletRequest request) {
+        return (Long) getAttribute(request, USER_ID);
+    }
+
+    /**
+     * The authenticated user's subscription type, or null
+     */
+    public static String getSubscriptionType(HttpServletRequest request) {
+        return (String) getAttribute(request, SUBSCRIPTION_TYPE);
+    }
+
+    private static Object getAttribute(HttpServletRequest request, String name) {
+        if (request.getAttribute(TOKEN) != null) {
+            return request.getAttribute(name);
+        }
+        if (!TokenService.sessionsEnabled()) {
+            return null;
+        }
+        HttpSession session = request.getSession(false);
+        return session != null ? session.getAttribute(name) : null;
+    }
+
+    @Override
+    public void destroy() {
+        // Token service shutdown is registered with DatabaseConfig
+    }
+}
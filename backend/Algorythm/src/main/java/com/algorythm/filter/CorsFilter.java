@@ -25,8 +25,9 @@ public class CorsFilter implements Filter {
         // Allow requests from frontend
         httpResponse.setHeader("Access-Control-Allow-Origin", "http://localhost:3000");
         httpResponse.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        httpResponse.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        httpResponse.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, Range");
         httpResponse.setHeader("Access-Control-Allow-Credentials", "true");
+        httpResponse.setHeader("Access-Control-Expose-Headers", "X-Next-Cursor, Content-Range, Accept-Ranges, Content-Length, ETag, X-Auth-Token");
         httpResponse.setHeader("Access-Control-Max-Age", "3600");
 
         // Handle preflight requests
@@ -0,0 +1,273 @@
+package com.algorythm.filter;
+
+import com.algorythm.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gzip compression, strong ETags and conditional GETs for API responses.
+ *
+ * Responses are buffered (up to http.buffer.maxBytes) so the filter can see
+ * the whole body: GET responses with status 200 get an ETag, either the one
+ * the servlet already set from the entity's version or a hash of the body,
+ * and a matching If-None-Match is answered 304 with no body. Bodies of at
+ * least http.gzip.minBytes with a textual content type are gzipped for
+ * clients that accept it; the gzip variant's ETag gets a "-gzip" suffix.
+ * Larger bodies (the catalog export) are streamed through gzip without an
+ * ETag. GET responses also get Cache-Control from
+ * http.cacheControl.{first path segment}, or http.cacheControl.default,
+ * unless the servlet set its own.
+ *
+ * Paths under http.passthrough (audio, which has its own ETag and ranges,
+ * and metrics) are not touched. Async requests are finished by
+ * AsyncRequestExecutor through finish() before it completes them.
+ */
+public class GzipEtagFilter implements Filter {
+    private static final Logger logger = LoggerFactory.getLogger(GzipEtagFilter.class);
+    private static final String GZIP_SUFFIX = "-gzip";
+
+    private static final LongAdder compressed = new LongAdder();
+    private static final LongAdder notModified = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+
+    private boolean gzipEnabled;
+    private boolean etagEnabled;
+    private int gzipLevel;
+    private int gzipMinBytes;
+    private int maxBufferBytes;
+    private String defaultCacheControl;
+    private final List<String> passthrough = new ArrayList<>();
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        gzipEnabled = DatabaseConfig.getBooleanProperty("http.gzip.enabled", true);
+        etagEnabled = DatabaseConfig.getBooleanProperty("http.etag.enabled", true);
+        gzipLevel = DatabaseConfig.getIntProperty("http.gzip.level", 6);
+        gzipMinBytes = DatabaseConfig.getIntProperty("http.gzip.minBytes", 1024);
+        maxBufferBytes = DatabaseConfig.getIntProperty("http.buffer.maxBytes", 1024 * 1024);
+        defaultCacheControl = DatabaseConfig.getProperty("http.cacheControl.default", "private, no-cache");
+        for (String prefix : DatabaseConfig.getProperty("http.passthrough", "/audio/,/metrics").split(",")) {
+            if (!prefix.trim().isEmpty()) {
+                passthrough.add(prefix.trim());
+            }
+        }
+        logger.info("GzipEtagFilter initialized (gzip={}, level={}, minBytes={}, etag={})",
+            gzipEnabled, gzipLevel, gzipMinBytes, etagEnabled);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        String path = pathOf(httpRequest);
+        String method = httpRequest.getMethod();
+        // HEAD bodies are dropped before they reach us, so there is nothing to hash or compress
+        if ((!gzipEnabled && !etagEnabled) || "HEAD".equals(method) || "OPTIONS".equals(method)
+                || isPassthrough(path)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean get = "GET".equals(method);
+        GzipEtagResponse wrapped = new GzipEtagResponse(httpRequest, httpResponse, this,
+            gzipEnabled && acceptsGzip(httpRequest.getHeader("Accept-Encoding")),
+            etagEnabled && get,
+            get ? cacheControlFor(path) : null);
+        chain.doFilter(request, wrapped);
+        if (!request.isAsyncStarted()) {
+            wrapped.finish();
+        }
+    }
+
+    /**
+     * Send out a response buffered by this filter. Called by code that
+     * completes async requests, since the container only flushes its own
+     * buffer on complete(); does nothing for responses this filter did not wrap.
+     */
+    public static void finish(ServletResponse response) throws IOException {
+        while (response instanceof ServletResponseWrapper) {
+            if (response instanceof GzipEtagResponse) {
+                ((GzipEtagResponse) response).finish();
+                return;
+            }
+            response = ((ServletResponseWrapper) response).getResponse();
+        }
+    }
+
+    /**
+     * Set the ETag for a representation the servlet has not serialized yet
+     * and answer 304 if the client already holds it, so the servlet can skip
+     * building the body. The tag must change whenever the body would.
+     *
+     * @return true if the response is now a 304 and nothing should be written
+     */
+    public static boolean checkNotModified(HttpServletRequest request, HttpServletResponse response, String etag) {
+        if (!DatabaseConfig.getBooleanProperty("http.etag.enabled", true)) {
+            return false;
+        }
+        response.setHeader("ETag", etag);
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            recordNotModified();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * If-None-Match uses weak comparison, so W/ prefixes and the gzip suffix
+     * are ignored: both encodings of one body share a version.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String target = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate) || opaque(candidate).equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        String tag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        if (tag.endsWith(GZIP_SUFFIX + "\"")) {
+            tag = tag.substring(0, tag.length() - GZIP_SUFFIX.length() - 1) + "\"";
+        }
+        return tag;
+    }
+
+    /**
+     * The gzip variant of an ETag
+     */
+    static String gzipTag(String etag) {
+        if (etag.endsWith(GZIP_SUFFIX + "\"") || !etag.endsWith("\"")) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + GZIP_SUFFIX + "\"";
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!"gzip".equalsIgnoreCase(name) && !"*".equals(name)) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=") && isZero(param.substring(2))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isZero(String q) {
+        try {
+            return Double.parseDouble(q.trim()) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Content types worth compressing; audio and images already are
+     */
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.startsWith("application/json")
+            || type.startsWith("application/javascript") || type.startsWith("application/xml");
+    }
+
+    private String cacheControlFor(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        String segment = path.substring(start, end < 0 ? path.length() : end);
+        if (segment.isEmpty()) {
+            return defaultCacheControl;
+        }
+        return DatabaseConfig.getProperty("http.cacheControl." + segment, defaultCacheControl);
+    }
+
+    private boolean isPassthrough(String path) {
+        for (String prefix : passthrough) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        return pathInfo != null ? request.getServletPath() + pathInfo : request.getServletPath();
+    }
+
+    int getGzipLevel() {
+        return gzipLevel;
+    }
+
+    int getGzipMinBytes() {
+        return gzipMinBytes;
+    }
+
+    int getMaxBufferBytes() {
+        return maxBufferBytes;
+    }
+
+    static void recordCompressed(long in, long out) {
+        compressed.increment();
+        bytesIn.add(in);
+        bytesOut.add(out);
+    }
+
+    static void recordNotModified() {
+        notModified.increment();
+    }
+
+    // Metrics
+
+    public static long getCompressedCount() {
+        return compressed.sum();
+    }
+
+    public static long getNotModifiedCount() {
+        return notModified.sum();
+    }
+
+    public static long getCompressedBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public static long getCompressedBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to release
+    }
+}
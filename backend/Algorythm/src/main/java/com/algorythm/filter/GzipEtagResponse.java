@@ -0,0 +1,325 @@
+package com.algorythm.filter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response wrapper for GzipEtagFilter.
+ *
+ * The body is held in memory until finish() decides on the ETag, a 304 and
+ * the encoding. Once it outgrows the filter's buffer limit, or the servlet
+ * flushes, the wrapper switches to streaming: what is buffered goes out
+ * (gzipped if worthwhile) followed by every further write, and no ETag is
+ * added.
+ */
+final class GzipEtagResponse extends HttpServletResponseWrapper {
+    // Bytes of the SHA-256 digest kept in a content ETag
+    private static final int ETAG_BYTES = 16;
+
+    private final HttpServletRequest request;
+    private final GzipEtagFilter filter;
+    private final boolean acceptsGzip;
+    private final boolean conditional;
+    private final String cacheControl;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private ServletOutputStream stream;
+    private PrintWriter writer;
+    private long contentLength = -1;
+    // Set once the response is streaming: the container's stream, or gzip over it
+    private OutputStream target;
+    private GZIPOutputStream gzip;
+    private boolean finished;
+
+    GzipEtagResponse(HttpServletRequest request, HttpServletResponse response, GzipEtagFilter filter,
+                     boolean acceptsGzip, boolean conditional, String cacheControl) {
+        super(response);
+        this.request = request;
+        this.filter = filter;
+        this.acceptsGzip = acceptsGzip;
+        this.conditional = conditional;
+        this.cacheControl = cacheControl;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (stream == null) {
+            stream = new Stream();
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            stream = new Stream();
+            writer = new PrintWriter(new OutputStreamWriter(stream, Charset.forName(getCharacterEncoding())));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        contentLength = len;
+    }
+
+    // The container writes error pages and redirects itself; leave them alone
+
+    @Override
+    public synchronized void sendError(int sc) throws IOException {
+        finished = true;
+        super.sendError(sc);
+    }
+
+    @Override
+    public synchronized void sendError(int sc, String msg) throws IOException {
+        finished = true;
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public synchronized void sendRedirect(String location) throws IOException {
+        finished = true;
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public synchronized void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (!finished) {
+            startStreaming();
+            target.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return target != null || super.isCommitted();
+    }
+
+    @Override
+    public void reset() {
+        if (target != null) {
+            throw new IllegalStateException("Response already committed");
+        }
+        super.reset();
+        buffer.reset();
+        stream = null;
+        writer = null;
+        contentLength = -1;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (target != null) {
+            throw new IllegalStateException("Response already committed");
+        }
+        super.resetBuffer();
+        buffer.reset();
+    }
+
+    /**
+     * Write out the response; later calls do nothing
+     */
+    synchronized void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+        finished = true;
+        if (target != null) {
+            if (gzip != null) {
+                gzip.finish();
+            }
+            target.flush();
+            return;
+        }
+
+        int status = getStatus();
+        if (status == SC_OK || status == SC_NOT_MODIFIED) {
+            applyCacheControl();
+        }
+        if (status == SC_NOT_MODIFIED) {
+            // The servlet matched If-None-Match itself and wrote nothing
+            return;
+        }
+
+        byte[] body = buffer.toByteArray();
+        boolean compress = shouldCompress(body.length);
+        if (conditional && status == SC_OK) {
+            String etag = getHeader("ETag");
+            if (etag == null) {
+                etag = contentTag(body);
+            }
+            if (compress) {
+                etag = GzipEtagFilter.gzipTag(etag);
+            }
+            setHeader("ETag", etag);
+            if (compress) {
+                setHeader("Vary", "Accept-Encoding");
+            }
+            if (GzipEtagFilter.matches(request.getHeader("If-None-Match"), etag)) {
+                GzipEtagFilter.recordNotModified();
+                setStatus(SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        if (compress) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream zip = newGzip(out)) {
+                zip.write(body);
+            }
+            GzipEtagFilter.recordCompressed(body.length, out.size());
+            markCompressed();
+            super.setContentLength(out.size());
+            out.writeTo(super.getOutputStream());
+        } else {
+            super.setContentLength(body.length);
+            if (body.length > 0) {
+                super.getOutputStream().write(body);
+            }
+        }
+    }
+
+    private synchronized void startStreaming() throws IOException {
+        if (target != null) {
+            return;
+        }
+        if (getStatus() == SC_OK) {
+            applyCacheControl();
+        }
+        OutputStream out = super.getOutputStream();
+        // Only compress when the body is already known to be worth it
+        if (shouldCompress(Math.max(buffer.size(), contentLength))) {
+            markCompressed();
+            gzip = newGzip(out);
+            target = gzip;
+        } else {
+            if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            }
+            target = out;
+        }
+        buffer.writeTo(target);
+        buffer.reset();
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        if (finished && target == null) {
+            throw new IOException("Response already finished");
+        }
+        if (target != null) {
+            target.write(b, off, len);
+            return;
+        }
+        buffer.write(b, off, len);
+        if (buffer.size() > filter.getMaxBufferBytes()) {
+            startStreaming();
+        }
+    }
+
+    private boolean shouldCompress(long length) {
+        return acceptsGzip && length >= filter.getGzipMinBytes()
+            && getHeader("Content-Encoding") == null
+            && GzipEtagFilter.isCompressible(getContentType());
+    }
+
+    private void markCompressed() {
+        setHeader("Content-Encoding", "gzip");
+        setHeader("Vary", "Accept-Encoding");
+    }
+
+    private void applyCacheControl() {
+        if (cacheControl != null && getHeader("Cache-Control") == null) {
+            setHeader("Cache-Control", cacheControl);
+        }
+    }
+
+    private GZIPOutputStream newGzip(OutputStream out) throws IOException {
+        int level = filter.getGzipLevel();
+        return new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    private static String contentTag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            byte[] tag = new byte[ETAG_BYTES];
+            System.arraycopy(digest, 0, tag, 0, ETAG_BYTES);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(tag) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private final class Stream extends ServletOutputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            GzipEtagResponse.this.write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            GzipEtagResponse.this.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Only an explicit flushBuffer() gives up the buffer
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new IllegalStateException("Non-blocking writes are not supported on filtered responses");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.algorythm.listener;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.recommend.RecommendationEngine;
+import com.algorythm.search.SongSearchIndex;
+import com.algorythm.service.ChartService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Application lifecycle listener. Makes sure buffered writes are flushed and
+ * the connection pool is closed when the webapp is undeployed.
+ */
+@WebListener
+public class AppContextListener implements ServletContextListener {
+    private static final Logger logger = LoggerFactory.getLogger(AppContextListener.class);
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        logger.info("AlgoRythm application starting");
+        if (SongSearchIndex.isEnabled()) {
+            // Builds in the background; SQL search is used until it is ready
+            SongSearchIndex.getInstance();
+        }
+        // Builds in the background; charts are read from the database until it is ready
+        ChartService.getInstance();
+        if (RecommendationEngine.isEnabled()) {
+            RecommendationEngine.getInstance();
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        logger.info("AlgoRythm application stopping");
+        DatabaseConfig.closeDataSource();
+    }
+}
@@ -0,0 +1,154 @@
+package com.algorythm.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * JDBC proxies that time statement execution and count returned rows.
+ *
+ * Wrapping at the connection keeps every DAO's hand-written JDBC blocks
+ * unchanged: statements prepared on an instrumented connection report to
+ * QueryMetrics under the calling DAO method, and result sets count rows
+ * as they are read and report the total when closed.
+ */
+final class InstrumentedJdbc {
+
+    private InstrumentedJdbc() {}
+
+    static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(InstrumentedJdbc.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("unwrap") || name.equals("isWrapperFor")) {
+                return InstrumentedJdbc.invoke(target, method, args);
+            }
+            Object result = InstrumentedJdbc.invoke(target, method, args);
+            if (result instanceof Statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                    : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(InstrumentedJdbc.class.getClassLoader(),
+                    new Class<?>[] {type}, new StatementHandler((Statement) result, sql, proxy));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private final Object connection;
+        private final String label;
+
+        StatementHandler(Statement target, String sql, Object connection) {
+            this.target = target;
+            this.sql = sql;
+            this.connection = connection;
+            this.label = QueryMetrics.labelFor(sql);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection")) {
+                return connection;
+            }
+            if (!name.startsWith("execute")) {
+                return InstrumentedJdbc.invoke(target, method, args);
+            }
+
+            // Plain Statement passes its SQL to execute*
+            String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = InstrumentedJdbc.invoke(target, method, args);
+            } catch (Throwable t) {
+                QueryMetrics.recordExecution(label, executed, System.nanoTime() - start, true);
+                throw t;
+            }
+            QueryMetrics.recordExecution(label, executed, System.nanoTime() - start, false);
+
+            if (result instanceof ResultSet) {
+                return Proxy.newProxyInstance(InstrumentedJdbc.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class}, new ResultSetHandler((ResultSet) result, label, proxy));
+            }
+            if (result instanceof Integer || result instanceof Long) {
+                QueryMetrics.recordRows(label, ((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                long total = 0;
+                for (int count : (int[]) result) {
+                    total += Math.max(count, 0);
+                }
+                QueryMetrics.recordRows(label, total);
+            } else if (result instanceof long[]) {
+                long total = 0;
+                for (long count : (long[]) result) {
+                    total += Math.max(count, 0);
+                }
+                QueryMetrics.recordRows(label, total);
+            }
+            return result;
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final String label;
+        private final Object statement;
+        private long rows;
+        private boolean reported;
+
+        ResultSetHandler(ResultSet target, String label, Object statement) {
+            this.target = target;
+            this.label = label;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("next")) {
+                Object hasRow = InstrumentedJdbc.invoke(target, method, args);
+                if (Boolean.TRUE.equals(hasRow)) {
+                    rows++;
+                }
+                return hasRow;
+            }
+            if (name.equals("getStatement")) {
+                return statement;
+            }
+            if (name.equals("close") && !reported) {
+                reported = true;
+                QueryMetrics.recordRows(label, rows);
+            }
+            return InstrumentedJdbc.invoke(target, method, args);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.algorythm.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram (microseconds) with call, error and row counters for one
+ * statement or pool operation.
+ */
+public class LatencyStats {
+    private final ConcurrentHistogram histogram = new ConcurrentHistogram(2);
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        histogram.recordValue(micros);
+        totalMicros.add(micros);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public void recordRows(long count) {
+        rows.add(count);
+    }
+
+    /**
+     * Consistent copy of the histogram for reporting
+     */
+    public Histogram snapshot() {
+        return histogram.copy();
+    }
+
+    public long getTotalMicros() {
+        return totalMicros.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getRowCount() {
+        return rows.sum();
+    }
+}
@@ -0,0 +1,265 @@
+package com.algorythm.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Process-wide registry of JDBC statement and connection pool timings.
+ *
+ * Statements are keyed by the DAO method that was called from outside its
+ * class (for example "SongDAO.findByArtist"), so SQL prepared in a shared
+ * private helper such as querySongList is counted under each public method
+ * that used it. The label is found by walking the stack; it is cached by
+ * SQL string only when the entry method prepared the statement itself,
+ * since a helper's SQL may be shared by several entry methods. Runs of
+ * IN-list or multi-row placeholders are collapsed before the lookup so
+ * each list length does not take its own cache entry. Executions slower
+ * than metrics.slowQueryMs are logged to the com.algorythm.slowquery
+ * logger.
+ */
+public final class QueryMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(QueryMetrics.class);
+    private static final Logger slowLog = LoggerFactory.getLogger("com.algorythm.slowquery");
+
+    // Bounds the SQL -> label cache; SQL past this point is labelled by
+    // walking the stack each time
+    private static final int MAX_CACHED_SQL = 2000;
+    // "?, ?, ?" and "(?, ?), (?, ?)" alike
+    private static final Pattern PLACEHOLDER_RUN = Pattern.compile("\\?(?:[\\s,()]+\\?)+");
+    private static final int MAX_LOGGED_SQL_LENGTH = 500;
+
+    private static volatile boolean enabled = true;
+    private static volatile long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(250);
+    private static volatile long slowAcquireNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final Map<String, String> labelsBySql = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyStats> statements = new ConcurrentHashMap<>();
+    private static final LatencyStats connectionAcquire = new LatencyStats();
+    private static final LatencyStats connectionUsage = new LatencyStats();
+    private static final LongAdder connectionTimeouts = new LongAdder();
+    private static final LongAdder slowQueries = new LongAdder();
+    private static final Map<String, PoolCounters> pools = new ConcurrentHashMap<>();
+
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+
+    private QueryMetrics() {}
+
+    /**
+     * Cumulative connection acquire counters for one pool; readers take deltas
+     */
+    public static final class PoolCounters {
+        private final LongAdder acquires = new LongAdder();
+        private final LongAdder acquireNanos = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        public long getAcquireCount() {
+            return acquires.sum();
+        }
+
+        public long getAcquireNanos() {
+            return acquireNanos.sum();
+        }
+
+        public long getTimeoutCount() {
+            return timeouts.sum();
+        }
+    }
+
+    /**
+     * Apply settings from db.properties; called once while the pool is created
+     */
+    public static void configure(boolean metricsEnabled, long slowQueryMillis, long slowAcquireMillis) {
+        enabled = metricsEnabled;
+        slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        slowAcquireNanos = TimeUnit.MILLISECONDS.toNanos(slowAcquireMillis);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Wrap a pooled connection so statements prepared on it are timed
+     */
+    public static Connection instrument(Connection connection) {
+        return enabled ? InstrumentedJdbc.wrap(connection) : connection;
+    }
+
+    /**
+     * Hikari hook that feeds connection acquire/usage times and timeouts into this registry
+     */
+    public static MetricsTrackerFactory trackerFactory() {
+        return (poolName, poolStats) -> new IMetricsTracker() {
+            private final PoolCounters counters = pools.computeIfAbsent(poolName, p -> new PoolCounters());
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                connectionAcquire.recordNanos(elapsedAcquiredNanos);
+                counters.acquires.increment();
+                counters.acquireNanos.add(elapsedAcquiredNanos);
+                if (elapsedAcquiredNanos >= slowAcquireNanos) {
+                    slowLog.warn("Waited {} ms for a connection from {}",
+                        TimeUnit.NANOSECONDS.toMillis(elapsedAcquiredNanos), poolName);
+                }
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                connectionUsage.recordNanos(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                connectionTimeouts.increment();
+                counters.timeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * Label for a statement: the outermost method of the first application
+     * class on the stack outside the JDBC plumbing
+     */
+    static String labelFor(String sql) {
+        String key = sql != null ? normalize(sql) : null;
+        if (key != null) {
+            String label = labelsBySql.get(key);
+            if (label != null) {
+                return label;
+            }
+        }
+        String[] caller = stackWalker.walk(QueryMetrics::entryFrame);
+        if (caller == null) {
+            return "other";
+        }
+        String label = caller[0] + "." + caller[1];
+        // Only when the entry method prepared the statement itself
+        if (key != null && caller[2] != null && labelsBySql.size() < MAX_CACHED_SQL) {
+            labelsBySql.putIfAbsent(key, label);
+        }
+        return label;
+    }
+
+    /**
+     * Simple class name and method of the entry frame, and non-null as the
+     * third element when that frame is also the innermost one of its class
+     */
+    private static String[] entryFrame(Stream<StackWalker.StackFrame> frames) {
+        Iterator<StackWalker.StackFrame> it = frames.iterator();
+        String owner = null;
+        String method = null;
+        int depth = 0;
+        while (it.hasNext()) {
+            StackWalker.StackFrame frame = it.next();
+            String cls = frame.getClassName();
+            if (owner == null) {
+                if (isPlumbing(cls)) {
+                    continue;
+                }
+                owner = topLevel(cls);
+            } else if (!topLevel(cls).equals(owner)) {
+                break;
+            }
+            method = frame.getMethodName();
+            depth++;
+        }
+        if (owner == null) {
+            return null;
+        }
+        if (method.startsWith("lambda$")) {
+            int end = method.indexOf('$', 7);
+            method = end > 7 ? method.substring(7, end) : method;
+        }
+        return new String[] {owner.substring(owner.lastIndexOf('.') + 1), method, depth == 1 ? "" : null};
+    }
+
+    private static boolean isPlumbing(String cls) {
+        return !cls.startsWith("com.algorythm.")
+            || cls.startsWith("com.algorythm.metrics.")
+            || cls.equals("com.algorythm.dao.BaseDAO")
+            || cls.equals("com.algorythm.config.DatabaseConfig");
+    }
+
+    private static String topLevel(String cls) {
+        int nested = cls.indexOf('$');
+        return nested > 0 ? cls.substring(0, nested) : cls;
+    }
+
+    /**
+     * SQL with each run of placeholders collapsed to a single one
+     */
+    static String normalize(String sql) {
+        int first = sql.indexOf('?');
+        if (first < 0 || sql.indexOf('?', first + 1) < 0) {
+            return sql;
+        }
+        return PLACEHOLDER_RUN.matcher(sql).replaceAll("?");
+    }
+
+    static void recordExecution(String label, String sql, long nanos, boolean failed) {
+        LatencyStats stats = statements.computeIfAbsent(label, l -> new LatencyStats());
+        stats.recordNanos(nanos);
+        if (failed) {
+            stats.recordError();
+        }
+        if (nanos >= slowQueryNanos) {
+            slowQueries.increment();
+            slowLog.warn("Slow query {} took {} ms: {}", label, TimeUnit.NANOSECONDS.toMillis(nanos), abbreviate(sql));
+        }
+    }
+
+    static void recordRows(String label, long rows) {
+        statements.computeIfAbsent(label, l -> new LatencyStats()).recordRows(rows);
+    }
+
+    private static String abbreviate(String sql) {
+        if (sql == null) {
+            return "(batch)";
+        }
+        String flat = sql.replaceAll("\\s+", " ").trim();
+        return flat.length() > MAX_LOGGED_SQL_LENGTH ? flat.substring(0, MAX_LOGGED_SQL_LENGTH) + "..." : flat;
+    }
+
+    /**
+     * Per-statement stats sorted by label
+     */
+    public static Map<String, LatencyStats> getStatementStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(statements));
+    }
+
+    public static LatencyStats getConnectionAcquireStats() {
+        return connectionAcquire;
+    }
+
+    public static LatencyStats getConnectionUsageStats() {
+        return connectionUsage;
+    }
+
+    public static long getConnectionTimeoutCount() {
+        return connectionTimeouts.sum();
+    }
+
+    /**
+     * Acquire counters for the named Hikari pool, or null if it has none yet
+     */
+    public static PoolCounters getPoolCounters(String poolName) {
+        return pools.get(poolName);
+    }
+
+    public static long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+}
@@ -0,0 +1,56 @@
+package com.algorythm.model;
+
+import java.time.LocalDate;
+
+/**
+ * Per-artist, per-day aggregate for daily_artist_stats. totalPlays is a
+ * delta to be added to the stored row; uniqueListeners is the current day
+ * estimate.
+ */
+public class DailyArtistStats {
+    private Long artistId;
+    private LocalDate statDate;
+    private int totalPlays;
+    private int uniqueListeners;
+
+    // Constructors
+    public DailyArtistStats() {}
+
+    public DailyArtistStats(Long artistId, LocalDate statDate) {
+        this.artistId = artistId;
+        this.statDate = statDate;
+    }
+
+    // Getters and Setters
+    public Long getArtistId() {
+        return artistId;
+    }
+
+    public void setArtistId(Long artistId) {
+        this.artistId = artistId;
+    }
+
+    public LocalDate getStatDate() {
+        return statDate;
+    }
+
+    public void setStatDate(LocalDate statDate) {
+        this.statDate = statDate;
+    }
+
+    public int getTotalPlays() {
+        return totalPlays;
+    }
+
+    public void setTotalPlays(int totalPlays) {
+        this.totalPlays = totalPlays;
+    }
+
+    public int getUniqueListeners() {
+        return uniqueListeners;
+    }
+
+    public void setUniqueListeners(int uniqueListeners) {
+        this.uniqueListeners = uniqueListeners;
+    }
+}
@@ -0,0 +1,82 @@
+package com.algorythm.model;
+
+import java.time.LocalDate;
+
+/**
+ * Per-song, per-day aggregate for daily_song_stats. Counts are deltas to be
+ * added to the stored row; uniqueListeners is the current day estimate.
+ */
+public class DailySongStats {
+    private Long songId;
+    private LocalDate statDate;
+    private int playCount;
+    private int uniqueListeners;
+    private int skipCount;
+    private Double completionRate;
+    private Double avgCompletionPercentage;
+
+    // Constructors
+    public DailySongStats() {}
+
+    public DailySongStats(Long songId, LocalDate statDate) {
+        this.songId = songId;
+        this.statDate = statDate;
+    }
+
+    // Getters and Setters
+    public Long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(Long songId) {
+        this.songId = songId;
+    }
+
+    public LocalDate getStatDate() {
+        return statDate;
+    }
+
+    public void setStatDate(LocalDate statDate) {
+        this.statDate = statDate;
+    }
+
+    public int getPlayCount() {
+        return playCount;
+    }
+
+    public void setPlayCount(int playCount) {
+        this.playCount = playCount;
+    }
+
+    public int getUniqueListeners() {
+        return uniqueListeners;
+    }
+
+    public void setUniqueListeners(int uniqueListeners) {
+        this.uniqueListeners = uniqueListeners;
+    }
+
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    public void setSkipCount(int skipCount) {
+        this.skipCount = skipCount;
+    }
+
+    public Double getCompletionRate() {
+        return completionRate;
+    }
+
+    public void setCompletionRate(Double completionRate) {
+        this.completionRate = completionRate;
+    }
+
+    public Double getAvgCompletionPercentage() {
+        return avgCompletionPercentage;
+    }
+
+    public void setAvgCompletionPercentage(Double avgCompletionPercentage) {
+        this.avgCompletionPercentage = avgCompletionPercentage;
+    }
+}
@@ -0,0 +1,76 @@
+package com.algorythm.model;
+
+import java.sql.Timestamp;
+
+/**
+ * A single play reported by a client, destined for listening_history
+ */
+public class ListeningEvent {
+    private Long userId;
+    private Long songId;
+    private Timestamp playedAt;
+    private int durationPlayedSeconds;
+    private Double completionPercentage;
+
+    // Constructors
+    public ListeningEvent() {}
+
+    public ListeningEvent(Long userId, Long songId, Timestamp playedAt, int durationPlayedSeconds,
+                          Double completionPercentage) {
+        this.userId = userId;
+        this.songId = songId;
+        this.playedAt = playedAt;
+        this.durationPlayedSeconds = durationPlayedSeconds;
+        this.completionPercentage = completionPercentage;
+    }
+
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(Long songId) {
+        this.songId = songId;
+    }
+
+    public Timestamp getPlayedAt() {
+        return playedAt;
+    }
+
+    public void setPlayedAt(Timestamp playedAt) {
+        this.playedAt = playedAt;
+    }
+
+    public int getDurationPlayedSeconds() {
+        return durationPlayedSeconds;
+    }
+
+    public void setDurationPlayedSeconds(int durationPlayedSeconds) {
+        this.durationPlayedSeconds = durationPlayedSeconds;
+    }
+
+    public Double getCompletionPercentage() {
+        return completionPercentage;
+    }
+
+    public void setCompletionPercentage(Double completionPercentage) {
+        this.completionPercentage = completionPercentage;
+    }
+
+    @Override
+    public String toString() {
+        return "ListeningEvent{" +
+                "userId=" + userId +
+                ", songId=" + songId +
+                ", playedAt=" + playedAt +
+                '}';
+    }
+}
@@ -0,0 +1,41 @@
+package com.algorythm.model;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing
+ */
+public class Page<T> {
+    private List<T> items;
+    private String next;
+
+    public Page() {}
+
+    public Page(List<T> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    /**
+     * Opaque cursor for the following page, or null on the last page
+     */
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
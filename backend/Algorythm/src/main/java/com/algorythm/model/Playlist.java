@@ -0,0 +1,128 @@
+package com.algorythm.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Playlist entity representing playlists table
+ */
+public class Playlist {
+    private Long playlistId;
+    private Long userId;
+    private String playlistName;
+    private String description;
+    private String coverImageUrl;
+    private boolean isPublic;
+    private int totalSongs;
+    private long totalDurationSeconds;
+    private long followerCount;
+    private Timestamp createdAt;
+    private Timestamp updatedAt;
+
+    // Constructors
+    public Playlist() {}
+
+    public Playlist(Long userId, String playlistName, String description, boolean isPublic) {
+        this.userId = userId;
+        this.playlistName = playlistName;
+        this.description = description;
+        this.isPublic = isPublic;
+    }
+
+    // Getters and Setters
+    public Long getPlaylistId() {
+        return playlistId;
+    }
+
+    public void setPlaylistId(Long playlistId) {
+        this.playlistId = playlistId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getPlaylistName() {
+        return playlistName;
+    }
+
+    public void setPlaylistName(String playlistName) {
+        this.playlistName = playlistName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getCoverImageUrl() {
+        return coverImageUrl;
+    }
+
+    public void setCoverImageUrl(String coverImageUrl) {
+        this.coverImageUrl = coverImageUrl;
+    }
+
+    public boolean isPublic() {
+        return isPublic;
+    }
+
+    public void setPublic(boolean isPublic) {
+        this.isPublic = isPublic;
+    }
+
+    public int getTotalSongs() {
+        return totalSongs;
+    }
+
+    public void setTotalSongs(int totalSongs) {
+        this.totalSongs = totalSongs;
+    }
+
+    public long getTotalDurationSeconds() {
+        return totalDurationSeconds;
+    }
+
+    public void setTotalDurationSeconds(long totalDurationSeconds) {
+        this.totalDurationSeconds = totalDurationSeconds;
+    }
+
+    public long getFollowerCount() {
+        return followerCount;
+    }
+
+    public void setFollowerCount(long followerCount) {
+        this.followerCount = followerCount;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Playlist{" +
+                "playlistId=" + playlistId +
+                ", playlistName='" + playlistName + '\'' +
+                ", totalSongs=" + totalSongs +
+                '}';
+    }
+}
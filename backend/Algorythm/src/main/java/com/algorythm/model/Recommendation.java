@@ -0,0 +1,86 @@
+package com.algorythm.model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Recommendation model class (recommendations table)
+ */
+public class Recommendation {
+    public static final String SOURCE_COLLABORATIVE = "Collaborative";
+
+    private Long recommendationId;
+    private Long userId;
+    private Long songId;
+    private String recommendationSource;
+    private BigDecimal relevanceScore;
+    private Timestamp generatedAt;
+    private Boolean wasPlayed;
+
+    // Constructors
+    public Recommendation() {}
+
+    public Recommendation(Long userId, Long songId, String recommendationSource, BigDecimal relevanceScore) {
+        this.userId = userId;
+        this.songId = songId;
+        this.recommendationSource = recommendationSource;
+        this.relevanceScore = relevanceScore;
+    }
+
+    // Getters and Setters
+    public Long getRecommendationId() {
+        return recommendationId;
+    }
+
+    public void setRecommendationId(Long recommendationId) {
+        this.recommendationId = recommendationId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(Long songId) {
+        this.songId = songId;
+    }
+
+    public String getRecommendationSource() {
+        return recommendationSource;
+    }
+
+    public void setRecommendationSource(String recommendationSource) {
+        this.recommendationSource = recommendationSource;
+    }
+
+    public BigDecimal getRelevanceScore() {
+        return relevanceScore;
+    }
+
+    public void setRelevanceScore(BigDecimal relevanceScore) {
+        this.relevanceScore = relevanceScore;
+    }
+
+    public Timestamp getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public void setGeneratedAt(Timestamp generatedAt) {
+        this.generatedAt = generatedAt;
+    }
+
+    public Boolean getWasPlayed() {
+        return wasPlayed;
+    }
+
+    public void setWasPlayed(Boolean wasPlayed) {
+        this.wasPlayed = wasPlayed;
+    }
+}
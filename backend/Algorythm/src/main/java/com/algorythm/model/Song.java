@@ -36,6 +36,27 @@ public class Song {
         this.audioFileUrl = audioFileUrl;
     }
 
+    public Song(Song other) {
+        this.songId = other.songId;
+        this.songTitle = other.songTitle;
+        this.albumId = other.albumId;
+        this.artistId = other.artistId;
+        this.durationSeconds = other.durationSeconds;
+        this.audioFileUrl = other.audioFileUrl;
+        this.audioQuality = other.audioQuality;
+        this.trackNumber = other.trackNumber;
+        this.discNumber = other.discNumber;
+        this.releaseDate = other.releaseDate;
+        this.lyrics = other.lyrics;
+        this.language = other.language;
+        this.explicitContent = other.explicitContent;
+        this.isPremiumOnly = other.isPremiumOnly;
+        this.playCount = other.playCount;
+        this.likeCount = other.likeCount;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     // Getters and Setters
     public Long getSongId() {
         return songId;
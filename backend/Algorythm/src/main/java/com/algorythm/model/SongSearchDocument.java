@@ -0,0 +1,40 @@
+package com.algorythm.model;
+
+/**
+ * Searchable text of a song (title plus artist and album names)
+ */
+public class SongSearchDocument {
+    private final long songId;
+    private final String songTitle;
+    private final String artistName;
+    private final String albumTitle;
+    private final long playCount;
+
+    public SongSearchDocument(long songId, String songTitle, String artistName, String albumTitle, long playCount) {
+        this.songId = songId;
+        this.songTitle = songTitle;
+        this.artistName = artistName;
+        this.albumTitle = albumTitle;
+        this.playCount = playCount;
+    }
+
+    public long getSongId() {
+        return songId;
+    }
+
+    public String getSongTitle() {
+        return songTitle;
+    }
+
+    public String getArtistName() {
+        return artistName;
+    }
+
+    public String getAlbumTitle() {
+        return albumTitle;
+    }
+
+    public long getPlayCount() {
+        return playCount;
+    }
+}
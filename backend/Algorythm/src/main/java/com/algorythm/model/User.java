@@ -31,6 +31,26 @@ public class User {
         this.passwordHash = passwordHash;
     }
 
+    /**
+     * Shallow copy, for handing one loaded user to several callers
+     */
+    public User(User other) {
+        this.userId = other.userId;
+        this.username = other.username;
+        this.email = other.email;
+        this.passwordHash = other.passwordHash;
+        this.fullName = other.fullName;
+        this.dateOfBirth = other.dateOfBirth;
+        this.gender = other.gender;
+        this.profilePictureUrl = other.profilePictureUrl;
+        this.subscriptionType = other.subscriptionType;
+        this.isVerified = other.isVerified;
+        this.isActive = other.isActive;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.lastLogin = other.lastLogin;
+    }
+
     // Getters and Setters
     public Long getUserId() {
         return userId;
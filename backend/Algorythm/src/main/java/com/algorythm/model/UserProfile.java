@@ -0,0 +1,60 @@
+package com.algorythm.model;
+
+/**
+ * Immutable snapshot of the user fields shown on the profile and used for
+ * access checks. It never carries credentials, so it can be cached and
+ * shared between requests.
+ */
+public final class UserProfile {
+    private final Long userId;
+    private final String username;
+    private final String email;
+    private final String fullName;
+    private final String profilePictureUrl;
+    private final String subscriptionType;
+    private final boolean isVerified;
+    private final boolean isActive;
+
+    public UserProfile(User user) {
+        this.userId = user.getUserId();
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.fullName = user.getFullName();
+        this.profilePictureUrl = user.getProfilePictureUrl();
+        this.subscriptionType = user.getSubscriptionType();
+        this.isVerified = user.isVerified();
+        this.isActive = user.isActive();
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getProfilePictureUrl() {
+        return profilePictureUrl;
+    }
+
+    public String getSubscriptionType() {
+        return subscriptionType;
+    }
+
+    public boolean isVerified() {
+        return isVerified;
+    }
+
+    public boolean isActive() {
+        return isActive;
+    }
+}
@@ -0,0 +1,300 @@
+package com.algorythm.recommend;
+
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sparse item-item co-occurrence counts built from (user, song) interactions.
+ *
+ * Each user's distinct songs are kept in a Roaring bitmap. When a user
+ * interacts with a song for the first time, the count for that song is
+ * incremented against every song already in the user's set, so new plays
+ * only cost work proportional to the user's history instead of a rebuild.
+ * Users past maxItemsPerUser still have their songs recorded (so they are
+ * never recommended back) but stop adding pairs; a handful of heavy users
+ * would otherwise dominate both the counts and the running time.
+ *
+ * Similarity between two songs is the cosine over binary user vectors,
+ * co(i, j) / sqrt(users(i) * users(j)).
+ *
+ * Mutations happen on one thread; the parallel phases only read.
+ */
+final class CooccurrenceModel {
+    private static final int FORMAT_VERSION = 1;
+    private static final int TASK_GRAIN = 256;
+
+    /**
+     * Top-K neighbours of one song, highest similarity first
+     */
+    static final class Neighbors {
+        final long[] ids;
+        final float[] scores;
+
+        Neighbors(long[] ids, float[] scores) {
+            this.ids = ids;
+            this.scores = scores;
+        }
+    }
+
+    private final int maxItemsPerUser;
+    private final LongObjectHashMap<Roaring64Bitmap> userItems;
+    private final LongIntHashMap itemUsers;
+    private final LongObjectHashMap<LongIntHashMap> cooccurrence;
+    private final LongObjectHashMap<Neighbors> neighbors = new LongObjectHashMap<>();
+
+    private final Roaring64Bitmap dirtyUsers = new Roaring64Bitmap();
+    private final Roaring64Bitmap dirtyItems = new Roaring64Bitmap();
+
+    private long historyWatermark;
+    private long likeWatermark;
+    private long builtAtMillis;
+
+    CooccurrenceModel(int maxItemsPerUser) {
+        this(maxItemsPerUser, new LongObjectHashMap<>(), new LongIntHashMap(), new LongObjectHashMap<>());
+        this.builtAtMillis = System.currentTimeMillis();
+    }
+
+    private CooccurrenceModel(int maxItemsPerUser, LongObjectHashMap<Roaring64Bitmap> userItems,
+                              LongIntHashMap itemUsers, LongObjectHashMap<LongIntHashMap> cooccurrence) {
+        this.maxItemsPerUser = maxItemsPerUser;
+        this.userItems = userItems;
+        this.itemUsers = itemUsers;
+        this.cooccurrence = cooccurrence;
+    }
+
+    /**
+     * Record that a user interacted with a song
+     */
+    void add(long userId, long songId) {
+        Roaring64Bitmap items = userItems.computeIfAbsent(userId, id -> new Roaring64Bitmap());
+        if (items.contains(songId)) {
+            return;
+        }
+        if (items.getLongCardinality() < maxItemsPerUser) {
+            LongIntHashMap row = row(songId);
+            items.forEach(other -> {
+                row.addTo(other, 1);
+                row(other).addTo(songId, 1);
+                dirtyItems.addLong(other);
+            });
+            itemUsers.addTo(songId, 1);
+            dirtyItems.addLong(songId);
+        }
+        items.addLong(songId);
+        dirtyUsers.addLong(userId);
+    }
+
+    private LongIntHashMap row(long songId) {
+        return cooccurrence.computeIfAbsent(songId, id -> new LongIntHashMap());
+    }
+
+    /**
+     * Recompute the neighbour lists of every song touched since the last
+     * call, or of all songs if allItems is set
+     */
+    void computeNeighbors(ForkJoinPool pool, int k, int minCooccurrence, boolean allItems) {
+        long[] items = allItems ? cooccurrence.keys() : dirtyItems.toArray();
+        Neighbors[] results = new Neighbors[items.length];
+        pool.invoke(new NeighborTask(items, results, 0, items.length, k, minCooccurrence));
+        for (int i = 0; i < items.length; i++) {
+            neighbors.put(items[i], results[i]);
+        }
+        dirtyItems.clear();
+    }
+
+    private final class NeighborTask extends RecursiveAction {
+        private final long[] items;
+        private final Neighbors[] results;
+        private final int from;
+        private final int to;
+        private final int k;
+        private final int minCooccurrence;
+
+        NeighborTask(long[] items, Neighbors[] results, int from, int to, int k, int minCooccurrence) {
+            this.items = items;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.minCooccurrence = minCooccurrence;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TASK_GRAIN) {
+                TopK top = new TopK(k);
+                for (int i = from; i < to; i++) {
+                    results[i] = topNeighbors(items[i], top);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new NeighborTask(items, results, from, mid, k, minCooccurrence),
+                      new NeighborTask(items, results, mid, to, k, minCooccurrence));
+        }
+
+        private Neighbors topNeighbors(long item, TopK top) {
+            LongIntHashMap row = cooccurrence.get(item);
+            int users = itemUsers.get(item);
+            if (row == null || users == 0) {
+                return null;
+            }
+            for (int slot = 0; slot < row.capacity(); slot++) {
+                long other = row.keyAt(slot);
+                int count = row.valueAt(slot);
+                if (other != 0 && count >= minCooccurrence) {
+                    top.offer(other, (float) (count / Math.sqrt((double) users * itemUsers.get(other))));
+                }
+            }
+            if (top.size() == 0) {
+                return null;
+            }
+            long[] ids = new long[top.size()];
+            float[] scores = new float[top.size()];
+            top.drainTo(ids, scores);
+            return new Neighbors(ids, scores);
+        }
+    }
+
+    /**
+     * Score songs for a user by summing the similarity of each neighbour of
+     * each song the user already has
+     *
+     * @return number of entries written to ids/scores, highest score first
+     */
+    int recommend(long userId, long[] ids, float[] scores) {
+        Roaring64Bitmap items = userItems.get(userId);
+        if (items == null) {
+            return 0;
+        }
+        LongFloatHashMap candidates = new LongFloatHashMap(256);
+        items.forEach(item -> {
+            Neighbors n = neighbors.get(item);
+            if (n != null) {
+                for (int i = 0; i < n.ids.length; i++) {
+                    if (!items.contains(n.ids[i])) {
+                        candidates.addTo(n.ids[i], n.scores[i]);
+                    }
+                }
+            }
+        });
+
+        TopK top = new TopK(ids.length);
+        for (int slot = 0; slot < candidates.capacity(); slot++) {
+            long id = candidates.keyAt(slot);
+            if (id != 0) {
+                top.offer(id, candidates.valueAt(slot));
+            }
+        }
+        int count = top.size();
+        top.drainTo(ids, scores);
+        return count;
+    }
+
+    /**
+     * Users with new interactions since the last clearDirtyUsers()
+     */
+    long[] getDirtyUsers() {
+        return dirtyUsers.toArray();
+    }
+
+    void clearDirtyUsers() {
+        dirtyUsers.clear();
+    }
+
+    long[] getAllUsers() {
+        return userItems.keys();
+    }
+
+    int getUserCount() {
+        return userItems.size();
+    }
+
+    int getItemCount() {
+        return cooccurrence.size();
+    }
+
+    long getHistoryWatermark() {
+        return historyWatermark;
+    }
+
+    long getLikeWatermark() {
+        return likeWatermark;
+    }
+
+    void setWatermarks(long historyWatermark, long likeWatermark) {
+        this.historyWatermark = historyWatermark;
+        this.likeWatermark = likeWatermark;
+    }
+
+    long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    /**
+     * Write counts and watermarks. Neighbour lists are derived data and are
+     * recomputed after loading.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(maxItemsPerUser);
+        out.writeLong(builtAtMillis);
+        out.writeLong(historyWatermark);
+        out.writeLong(likeWatermark);
+
+        long[] users = userItems.keys();
+        out.writeInt(users.length);
+        for (long user : users) {
+            out.writeLong(user);
+            userItems.get(user).serialize(out);
+        }
+        itemUsers.writeTo(out);
+        long[] items = cooccurrence.keys();
+        out.writeInt(items.length);
+        for (long item : items) {
+            out.writeLong(item);
+            cooccurrence.get(item).writeTo(out);
+        }
+    }
+
+    /**
+     * Read a model written by writeTo
+     *
+     * @return the model, or null if it was written with different settings
+     *         and has to be rebuilt
+     */
+    static CooccurrenceModel readFrom(DataInput in, int maxItemsPerUser) throws IOException {
+        if (in.readInt() != FORMAT_VERSION || in.readInt() != maxItemsPerUser) {
+            return null;
+        }
+        long builtAt = in.readLong();
+        long historyWatermark = in.readLong();
+        long likeWatermark = in.readLong();
+
+        int userCount = in.readInt();
+        LongObjectHashMap<Roaring64Bitmap> userItems = new LongObjectHashMap<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            long user = in.readLong();
+            Roaring64Bitmap items = new Roaring64Bitmap();
+            items.deserialize(in);
+            userItems.put(user, items);
+        }
+        LongIntHashMap itemUsers = LongIntHashMap.readFrom(in);
+        int itemCount = in.readInt();
+        LongObjectHashMap<LongIntHashMap> cooccurrence = new LongObjectHashMap<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            long item = in.readLong();
+            cooccurrence.put(item, LongIntHashMap.readFrom(in));
+        }
+
+        CooccurrenceModel model = new CooccurrenceModel(maxItemsPerUser, userItems, itemUsers, cooccurrence);
+        model.builtAtMillis = builtAt;
+        model.setWatermarks(historyWatermark, likeWatermark);
+        return model;
+    }
+}
@@ -0,0 +1,143 @@
+package com.algorythm.recommend;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Open-addressing hash map from long to int without boxing.
+ *
+ * Key 0 marks an empty slot, so keys must be non-zero (database ids are).
+ * Not thread-safe.
+ */
+final class LongIntHashMap {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+
+    LongIntHashMap() {
+        this(8);
+    }
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Value for key, or 0 if absent
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == 0) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Add delta to the value for key, inserting it with value delta if absent
+     *
+     * @return the new value
+     */
+    int addTo(long key, int delta) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i] += delta;
+            }
+            if (k == 0) {
+                keys[i] = key;
+                values[i] = delta;
+                if (++size > resizeAt) {
+                    rehash(keys.length << 1);
+                }
+                return delta;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Number of slots; iterate with keyAt/valueAt, skipping keys equal to 0
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key != 0) {
+                int i = slot(key, mask);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        // fmix64 finalizer spreads sequential ids across the table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                out.writeLong(keys[i]);
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    static LongIntHashMap readFrom(DataInput in) throws IOException {
+        int size = in.readInt();
+        LongIntHashMap map = new LongIntHashMap(size);
+        for (int i = 0; i < size; i++) {
+            long key = in.readLong();
+            map.addTo(key, in.readInt());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,320 @@
+package com.algorythm.recommend;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.dao.RecommendationDAO;
+import com.algorythm.model.Recommendation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nightly item-based collaborative filtering job that fills the
+ * recommendations table with 'Collaborative' rows.
+ *
+ * Each run streams only the plays and likes added since the previous run
+ * (tracked by history_id / like_id watermarks) into the co-occurrence
+ * model. An id is allocated when a row is inserted but only visible once it
+ * commits, so a run can pass a lower id that commits later; each run
+ * therefore reads the last recommend.rescanIds ids below the watermark
+ * again, which is harmless since the model ignores pairs it already has.
+ * It then recomputes the neighbours of the songs those interactions touched
+ * on a fork-join pool, and rewrites recommendations for the users who had
+ * new activity. The model is saved to recommend.stateFile after every run
+ * so a restart does not force a rebuild.
+ *
+ * Unlikes and deleted rows are not subtracted incrementally, and songs
+ * whose own rows did not change keep their neighbour scores; the model is
+ * rebuilt from scratch every recommend.fullRebuildDays instead.
+ */
+public class RecommendationEngine {
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationEngine.class);
+    private static volatile RecommendationEngine instance;
+
+    private final RecommendationDAO recommendationDAO = new RecommendationDAO();
+    private final Path stateFile;
+    private final int neighborCount;
+    private final int recommendationsPerUser;
+    private final int minCooccurrence;
+    private final int minCompletionPercent;
+    private final int maxItemsPerUser;
+    private final int parallelism;
+    private final int writeBatchUsers;
+    private final long fullRebuildMillis;
+    private final long rescanIds;
+    private final ScheduledExecutorService scheduler;
+
+    // Only touched from the scheduler thread
+    private CooccurrenceModel model;
+    private boolean neighborsStale;
+
+    private volatile long lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile int lastUsersUpdated;
+
+    RecommendationEngine(Path stateFile, int neighborCount, int recommendationsPerUser, int minCooccurrence,
+                         int minCompletionPercent, int maxItemsPerUser, int parallelism, int writeBatchUsers,
+                         long fullRebuildDays, long rescanIds) {
+        this.stateFile = stateFile;
+        this.neighborCount = neighborCount;
+        this.recommendationsPerUser = recommendationsPerUser;
+        this.minCooccurrence = minCooccurrence;
+        this.minCompletionPercent = minCompletionPercent;
+        this.maxItemsPerUser = maxItemsPerUser;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.writeBatchUsers = writeBatchUsers;
+        this.fullRebuildMillis = TimeUnit.DAYS.toMillis(fullRebuildDays);
+        this.rescanIds = rescanIds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recommendation-engine");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Whether the nightly job is enabled in db.properties
+     */
+    public static boolean isEnabled() {
+        return DatabaseConfig.getBooleanProperty("recommend.enabled", true);
+    }
+
+    /**
+     * Get the shared engine, scheduling the nightly run on first use
+     */
+    public static RecommendationEngine getInstance() {
+        if (instance == null) {
+            synchronized (RecommendationEngine.class) {
+                if (instance == null) {
+                    RecommendationEngine engine = new RecommendationEngine(
+                        Paths.get(DatabaseConfig.getProperty("recommend.stateFile", "state/recommendations.model")),
+                        DatabaseConfig.getIntProperty("recommend.neighbors", 50),
+                        DatabaseConfig.getIntProperty("recommend.perUser", 50),
+                        DatabaseConfig.getIntProperty("recommend.minCooccurrence", 2),
+                        DatabaseConfig.getIntProperty("recommend.minCompletionPercent", 50),
+                        DatabaseConfig.getIntProperty("recommend.maxItemsPerUser", 1000),
+                        DatabaseConfig.getIntProperty("recommend.parallelism", 0),
+                        DatabaseConfig.getIntProperty("recommend.writeBatchUsers", 200),
+                        DatabaseConfig.getLongProperty("recommend.fullRebuildDays", 7),
+                        DatabaseConfig.getLongProperty("recommend.rescanIds", 100000));
+                    int hour = DatabaseConfig.getIntProperty("recommend.runAtHourUtc", 3);
+                    engine.scheduler.scheduleAtFixedRate(engine::runQuietly, delayUntil(hour),
+                        TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+                    DatabaseConfig.registerShutdownHook(engine::shutdown);
+                    instance = engine;
+                    logger.info("Recommendation engine scheduled daily at {}:00 UTC", hour);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static long delayUntil(int hourUtc) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        ZonedDateTime next = now.withHour(hourUtc).withMinute(0).withSecond(0).withNano(0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        return next.toInstant().toEpochMilli() - now.toInstant().toEpochMilli();
+    }
+
+    /**
+     * Queue a run outside the nightly schedule
+     */
+    public Future<?> runNow() {
+        return scheduler.submit(this::runQuietly);
+    }
+
+    private void runQuietly() {
+        try {
+            run();
+        } catch (SQLException | IOException e) {
+            logger.error("Recommendation run failed, will retry on the next run", e);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error in recommendation run", e);
+        }
+    }
+
+    void run() throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        if (model == null) {
+            model = loadState();
+            neighborsStale = model != null;
+        }
+        boolean full = model == null || start - model.getBuiltAtMillis() > fullRebuildMillis;
+        if (full) {
+            model = new CooccurrenceModel(maxItemsPerUser);
+            neighborsStale = false;
+        }
+
+        long historyTo = recommendationDAO.getMaxHistoryId();
+        long likeTo = recommendationDAO.getMaxLikeId();
+        recommendationDAO.streamPlays(Math.max(0, model.getHistoryWatermark() - rescanIds), historyTo,
+            minCompletionPercent, model::add);
+        recommendationDAO.streamLikes(Math.max(0, model.getLikeWatermark() - rescanIds), likeTo, model::add);
+        model.setWatermarks(historyTo, likeTo);
+        long ingested = System.currentTimeMillis();
+
+        int usersUpdated;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            model.computeNeighbors(pool, neighborCount, minCooccurrence, neighborsStale);
+            neighborsStale = false;
+            long[] users = full ? model.getAllUsers() : model.getDirtyUsers();
+            usersUpdated = writeRecommendations(pool, users);
+        } finally {
+            pool.shutdown();
+        }
+        model.clearDirtyUsers();
+        saveState(model);
+
+        lastRunAt = start;
+        lastRunMillis = System.currentTimeMillis() - start;
+        lastUsersUpdated = usersUpdated;
+        logger.info("Recommendation run ({}) finished in {}ms: {} users, {} songs in model, {} users updated, ingest {}ms",
+            full ? "full" : "incremental", lastRunMillis, model.getUserCount(), model.getItemCount(),
+            usersUpdated, ingested - start);
+    }
+
+    /**
+     * Score users in chunks on the pool and replace their rows one batch at
+     * a time, so only one chunk of results is held in memory
+     */
+    private int writeRecommendations(ForkJoinPool pool, long[] users) throws SQLException {
+        Arrays.sort(users);
+        int chunkSize = writeBatchUsers * parallelism * 4;
+        for (int from = 0; from < users.length; from += chunkSize) {
+            int to = Math.min(from + chunkSize, users.length);
+            @SuppressWarnings("unchecked")
+            List<Recommendation>[] results = new List[to - from];
+            pool.invoke(new ScoreTask(users, results, from, from, to));
+
+            for (int batch = from; batch < to; batch += writeBatchUsers) {
+                int batchEnd = Math.min(batch + writeBatchUsers, to);
+                List<Long> userIds = new ArrayList<>(batchEnd - batch);
+                List<Recommendation> rows = new ArrayList<>((batchEnd - batch) * recommendationsPerUser);
+                for (int i = batch; i < batchEnd; i++) {
+                    userIds.add(users[i]);
+                    rows.addAll(results[i - from]);
+                }
+                recommendationDAO.replaceRecommendations(Recommendation.SOURCE_COLLABORATIVE, userIds, rows);
+            }
+        }
+        return users.length;
+    }
+
+    private final class ScoreTask extends RecursiveAction {
+        private static final int GRAIN = 64;
+
+        private final long[] users;
+        private final List<Recommendation>[] results;
+        private final int offset;
+        private final int from;
+        private final int to;
+
+        ScoreTask(long[] users, List<Recommendation>[] results, int offset, int from, int to) {
+            this.users = users;
+            this.results = results;
+            this.offset = offset;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                long[] ids = new long[recommendationsPerUser];
+                float[] scores = new float[recommendationsPerUser];
+                for (int i = from; i < to; i++) {
+                    results[i - offset] = score(users[i], ids, scores);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScoreTask(users, results, offset, from, mid),
+                      new ScoreTask(users, results, offset, mid, to));
+        }
+    }
+
+    private List<Recommendation> score(long userId, long[] ids, float[] scores) {
+        int count = model.recommend(userId, ids, scores);
+        List<Recommendation> recommendations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Scaled so each user's best match is 100
+            BigDecimal relevance = BigDecimal.valueOf(100.0 * scores[i] / scores[0]).setScale(2, RoundingMode.HALF_UP);
+            recommendations.add(new Recommendation(userId, ids[i], Recommendation.SOURCE_COLLABORATIVE, relevance));
+        }
+        return recommendations;
+    }
+
+    private CooccurrenceModel loadState() {
+        if (!Files.exists(stateFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile), 1 << 16))) {
+            CooccurrenceModel loaded = CooccurrenceModel.readFrom(in, maxItemsPerUser);
+            if (loaded == null) {
+                logger.info("Recommendation state {} was built with other settings, rebuilding", stateFile);
+            }
+            return loaded;
+        } catch (IOException e) {
+            logger.warn("Could not read recommendation state {}, rebuilding", stateFile, e);
+            return null;
+        }
+    }
+
+    private void saveState(CooccurrenceModel state) throws IOException {
+        if (stateFile.getParent() != null) {
+            Files.createDirectories(stateFile.getParent());
+        }
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            state.writeTo(out);
+        }
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Cancel the schedule; a run in progress is abandoned and redone from
+     * the last saved state on the next start
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Metrics
+
+    public long getLastRunAt() {
+        return lastRunAt;
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    public int getLastUsersUpdated() {
+        return lastUsersUpdated;
+    }
+}
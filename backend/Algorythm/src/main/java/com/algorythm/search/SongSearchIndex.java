@@ -0,0 +1,190 @@
+package com.algorythm.search;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.dao.SearchDAO;
+import com.algorythm.dao.SongCounterBuffer;
+import com.algorythm.model.SongSearchDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Embedded song search engine backed by an in-memory trigram index.
+ *
+ * The index is built in the background at startup and kept current by
+ * SongDAO on create/update/delete. Until the first build completes,
+ * isReady() is false and callers should fall back to SQL search.
+ */
+public class SongSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SongSearchIndex.class);
+    private static volatile SongSearchIndex instance;
+
+    private final SearchDAO searchDAO = new SearchDAO();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService updater;
+    private final double minSimilarity;
+    private volatile TrigramIndex index = new TrigramIndex();
+    private volatile boolean ready;
+
+    private SongSearchIndex(double minSimilarity) {
+        this.minSimilarity = minSimilarity;
+        this.updater = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "search-index-updater");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Whether the in-memory search index is enabled in db.properties
+     */
+    public static boolean isEnabled() {
+        return DatabaseConfig.getBooleanProperty("search.index.enabled", true);
+    }
+
+    /**
+     * Get the shared index, scheduling the initial build on first use
+     */
+    public static SongSearchIndex getInstance() {
+        if (instance == null) {
+            synchronized (SongSearchIndex.class) {
+                if (instance == null) {
+                    SongSearchIndex searchIndex = new SongSearchIndex(
+                        Double.parseDouble(DatabaseConfig.getProperty("search.minSimilarity", "0.5")));
+                    searchIndex.updater.execute(searchIndex::rebuildQuietly);
+                    if (SongCounterBuffer.isEnabled()) {
+                        SongCounterBuffer.getInstance().addFlushListener((plays, likes) -> searchIndex.applyPlayDeltas(plays));
+                    }
+                    DatabaseConfig.registerShutdownHook(searchIndex.updater::shutdownNow);
+                    instance = searchIndex;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Re-index a created or updated song. No-op until the index is in use.
+     */
+    public static void onSongChanged(Long songId) {
+        SongSearchIndex searchIndex = instance;
+        if (searchIndex != null) {
+            searchIndex.updater.execute(() -> searchIndex.reindex(songId));
+        }
+    }
+
+    /**
+     * Remove a deleted song. No-op until the index is in use.
+     */
+    public static void onSongDeleted(Long songId) {
+        SongSearchIndex searchIndex = instance;
+        if (searchIndex != null) {
+            searchIndex.updater.execute(() -> searchIndex.remove(songId));
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Search titles, artist and album names; returns song ids best first
+     */
+    public List<Long> search(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            return index.search(query, limit, minSimilarity);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Build a fresh index from the database and swap it in
+     */
+    public void rebuild() throws SQLException {
+        long start = System.currentTimeMillis();
+        List<SongSearchDocument> documents = searchDAO.findAllDocuments();
+        TrigramIndex fresh = new TrigramIndex();
+        for (SongSearchDocument document : documents) {
+            fresh.add(document);
+        }
+
+        lock.writeLock().lock();
+        try {
+            index = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        logger.info("Search index built with {} songs in {}ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (SQLException e) {
+            logger.error("Failed to build search index, falling back to SQL search", e);
+        }
+    }
+
+    private void reindex(Long songId) {
+        try {
+            SongSearchDocument document = searchDAO.findDocument(songId);
+            lock.writeLock().lock();
+            try {
+                if (document != null) {
+                    index.add(document);
+                } else {
+                    index.remove(songId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compactIfNeeded();
+        } catch (SQLException e) {
+            logger.error("Failed to re-index song {}", songId, e);
+        }
+    }
+
+    private void remove(Long songId) {
+        lock.writeLock().lock();
+        try {
+            index.remove(songId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    private void applyPlayDeltas(Map<Long, Long> playDeltas) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, Long> delta : playDeltas.entrySet()) {
+                index.addPlays(delta.getKey(), delta.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replaced and deleted documents leave dead postings behind; rebuild
+    // once they make up a quarter of the index.
+    private void compactIfNeeded() {
+        TrigramIndex current = index;
+        if (current.deletedCount() > 1000 && current.deletedCount() > current.size() / 4) {
+            rebuildQuietly();
+        }
+    }
+}
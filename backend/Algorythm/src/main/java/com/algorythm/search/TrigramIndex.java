@@ -0,0 +1,238 @@
+package com.algorythm.search;
+
+import com.algorythm.model.SongSearchDocument;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Trigram inverted index over song titles, artist and album names.
+ *
+ * Every document gets a dense int id; posting lists are sorted int arrays
+ * keyed by a packed trigram. Matching counts shared trigrams per document,
+ * which tolerates typos (a single wrong letter only costs a few trigrams),
+ * and ranks by similarity plus a small popularity boost from play_count.
+ * Not thread-safe; SongSearchIndex guards it with a read/write lock.
+ */
+class TrigramIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private long[] songIds = new long[1024];
+    private long[] playCounts = new long[1024];
+    private String[] titles = new String[1024];
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> docBySong = new HashMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private int docCount;
+    private long maxPlayCount = 1;
+
+    private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[0]);
+
+    /**
+     * Add or replace a document
+     */
+    void add(SongSearchDocument document) {
+        remove(document.getSongId());
+
+        int doc = docCount++;
+        if (doc == songIds.length) {
+            int newLength = songIds.length * 2;
+            songIds = Arrays.copyOf(songIds, newLength);
+            playCounts = Arrays.copyOf(playCounts, newLength);
+            titles = Arrays.copyOf(titles, newLength);
+        }
+
+        String title = normalize(document.getSongTitle());
+        songIds[doc] = document.getSongId();
+        playCounts[doc] = document.getPlayCount();
+        titles[doc] = title;
+        maxPlayCount = Math.max(maxPlayCount, document.getPlayCount());
+        docBySong.put(document.getSongId(), doc);
+
+        String text = title + " " + normalize(document.getArtistName()) + " " + normalize(document.getAlbumTitle());
+        for (long gram : trigrams(text, false)) {
+            postings.computeIfAbsent(gram, g -> new IntList()).add(doc);
+        }
+    }
+
+    /**
+     * Remove a document; its postings are dropped on the next compaction
+     */
+    void remove(long songId) {
+        Integer doc = docBySong.remove(songId);
+        if (doc != null) {
+            deleted.set(doc);
+            titles[doc] = null;
+        }
+    }
+
+    void addPlays(long songId, long delta) {
+        Integer doc = docBySong.get(songId);
+        if (doc != null) {
+            playCounts[doc] += delta;
+            maxPlayCount = Math.max(maxPlayCount, playCounts[doc]);
+        }
+    }
+
+    int size() {
+        return docBySong.size();
+    }
+
+    int deletedCount() {
+        return deleted.cardinality();
+    }
+
+    /**
+     * Find the best matching song ids, best first
+     */
+    List<Long> search(String query, int limit, double minSimilarity) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        long[] grams = trigrams(normalized, true);
+        if (grams.length == 0) {
+            return new ArrayList<>();
+        }
+
+        int[] counts = scratch.get();
+        if (counts.length < docCount) {
+            counts = new int[songIds.length];
+            scratch.set(counts);
+        }
+        IntList touched = new IntList();
+        for (long gram : grams) {
+            IntList posting = postings.get(gram);
+            if (posting == null) {
+                continue;
+            }
+            for (int i = 0; i < posting.size; i++) {
+                int doc = posting.values[i];
+                if (counts[doc]++ == 0) {
+                    touched.add(doc);
+                }
+            }
+        }
+
+        double logMax = Math.log1p(maxPlayCount);
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Math.min(limit, touched.size) + 1);
+        for (int i = 0; i < touched.size; i++) {
+            int doc = touched.values[i];
+            int matches = counts[doc];
+            counts[doc] = 0;
+            if (deleted.get(doc)) {
+                continue;
+            }
+            double similarity = (double) matches / grams.length;
+            if (similarity < minSimilarity) {
+                continue;
+            }
+            double score = similarity;
+            if (titles[doc].startsWith(normalized)) {
+                score += 0.3;
+            } else if (titles[doc].contains(normalized)) {
+                score += 0.2;
+            }
+            score += 0.15 * (Math.log1p(Math.max(0, playCounts[doc])) / logMax);
+
+            best.offer(new Candidate(songIds[doc], score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        Long[] ids = new Long[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().songId;
+        }
+        return new ArrayList<>(Arrays.asList(ids));
+    }
+
+    /**
+     * Lowercase, strip accents and punctuation, collapse whitespace
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String stripped = DIACRITICS.matcher(decomposed).replaceAll("");
+        return NON_ALNUM.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Distinct padded trigrams of normalized text. In prefix mode the last
+     * token is not end-padded so partially typed words still match.
+     */
+    static long[] trigrams(String normalized, boolean prefixMode) {
+        Set<Long> grams = new LinkedHashSet<>();
+        String[] tokens = normalized.split(" ");
+        for (int t = 0; t < tokens.length; t++) {
+            String token = tokens[t];
+            if (token.isEmpty()) {
+                continue;
+            }
+            boolean openEnded = prefixMode && t == tokens.length - 1;
+            String padded = " " + token + (openEnded ? "" : " ");
+            if (!prefixMode) {
+                // Lets one-letter prefix queries match
+                grams.add(pack(' ', token.charAt(0), '\0'));
+            }
+            if (padded.length() < 3) {
+                grams.add(pack(padded.charAt(0), padded.charAt(1), '\0'));
+                continue;
+            }
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(pack(padded.charAt(i), padded.charAt(i + 1), padded.charAt(i + 2)));
+            }
+        }
+        long[] result = new long[grams.size()];
+        int i = 0;
+        for (Long gram : grams) {
+            result[i++] = gram;
+        }
+        return result;
+    }
+
+    private static long pack(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final long songId;
+        final double score;
+
+        Candidate(long songId, double score) {
+            this.songId = songId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(score, other.score);
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
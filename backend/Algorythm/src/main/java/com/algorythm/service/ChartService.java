@@ -0,0 +1,182 @@
+package com.algorythm.service;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.dao.SongCounterBuffer;
+import com.algorythm.dao.SongDAO;
+import com.algorythm.model.Song;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service serving precomputed song charts from memory.
+ *
+ * Charts (global, per genre and per language top songs, plus recent releases)
+ * are rebuilt from the database every charts.rebuildIntervalSeconds and kept
+ * current in between from the play-count deltas committed by
+ * SongCounterBuffer, so dashboard requests never sort the songs table.
+ * The first build runs in the background; until it finishes isReady() is
+ * false and callers should query the database instead.
+ */
+public class ChartService {
+    private static final Logger logger = LoggerFactory.getLogger(ChartService.class);
+    private static volatile ChartService instance;
+
+    private final SongDAO songDAO;
+    private final int chartSize;
+    private final int candidateSize;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile TopNChart global;
+    private volatile Map<String, TopNChart> byGenre = Collections.emptyMap();
+    private volatile Map<String, TopNChart> byLanguage = Collections.emptyMap();
+    private volatile List<Song> recentReleases = Collections.emptyList();
+    private volatile boolean ready;
+
+    ChartService(SongDAO songDAO, int chartSize, int candidateSize) {
+        this.songDAO = songDAO;
+        this.chartSize = chartSize;
+        this.candidateSize = candidateSize;
+        this.global = new TopNChart(candidateSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chart-rebuilder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Get the shared chart service, starting the chart builds on first use
+     */
+    public static ChartService getInstance() {
+        if (instance == null) {
+            synchronized (ChartService.class) {
+                if (instance == null) {
+                    int chartSize = DatabaseConfig.getIntProperty("charts.size", 100);
+                    int candidateFactor = DatabaseConfig.getIntProperty("charts.candidateFactor", 2);
+                    long interval = DatabaseConfig.getLongProperty("charts.rebuildIntervalSeconds", 600);
+
+                    ChartService service = new ChartService(new SongDAO(), chartSize, chartSize * candidateFactor);
+                    service.scheduler.scheduleWithFixedDelay(service::rebuildQuietly, 0, interval, TimeUnit.SECONDS);
+                    if (SongCounterBuffer.isEnabled()) {
+                        SongCounterBuffer.getInstance().addFlushListener((plays, likes) -> service.applyPlayDeltas(plays));
+                    }
+                    DatabaseConfig.registerShutdownHook(service.scheduler::shutdownNow);
+                    instance = service;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Rebuild every chart from the database
+     */
+    public void rebuild() throws SQLException {
+        long start = System.currentTimeMillis();
+
+        TopNChart newGlobal = new TopNChart(candidateSize);
+        newGlobal.load(songDAO.getTopSongs(candidateSize));
+
+        Map<String, TopNChart> genres = new ConcurrentHashMap<>();
+        for (String genre : songDAO.findGenreNames()) {
+            TopNChart chart = new TopNChart(candidateSize);
+            chart.load(songDAO.getTopSongsByGenre(genre, candidateSize));
+            genres.put(normalize(genre), chart);
+        }
+
+        Map<String, TopNChart> languages = new ConcurrentHashMap<>();
+        for (String language : songDAO.findLanguages()) {
+            TopNChart chart = new TopNChart(candidateSize);
+            chart.load(songDAO.getTopSongsByLanguage(language, candidateSize));
+            languages.put(normalize(language), chart);
+        }
+
+        List<Song> recent = Collections.unmodifiableList(songDAO.getRecentReleases(chartSize));
+
+        global = newGlobal;
+        byGenre = genres;
+        byLanguage = languages;
+        recentReleases = recent;
+        ready = true;
+        logger.info("Charts rebuilt in {}ms ({} genres, {} languages)",
+            System.currentTimeMillis() - start, genres.size(), languages.size());
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (SQLException e) {
+            logger.error("Failed to rebuild charts, serving previous snapshot", e);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error rebuilding charts", e);
+        }
+    }
+
+    /**
+     * Whether the charts have been built at least once
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Apply committed play-count deltas to every chart that tracks the song
+     */
+    void applyPlayDeltas(Map<Long, Long> playDeltas) {
+        global.applyDeltas(playDeltas);
+        for (TopNChart chart : byGenre.values()) {
+            chart.applyDeltas(playDeltas);
+        }
+        for (TopNChart chart : byLanguage.values()) {
+            chart.applyDeltas(playDeltas);
+        }
+    }
+
+    /**
+     * Get the global top songs
+     */
+    public List<Song> getTopSongs(int limit) {
+        return global.top(clamp(limit));
+    }
+
+    /**
+     * Get the top songs for a genre, or an empty list for an unknown genre
+     */
+    public List<Song> getTopSongsByGenre(String genre, int limit) {
+        TopNChart chart = byGenre.get(normalize(genre));
+        return chart != null ? chart.top(clamp(limit)) : Collections.emptyList();
+    }
+
+    /**
+     * Get the top songs for a language, or an empty list for an unknown language
+     */
+    public List<Song> getTopSongsByLanguage(String language, int limit) {
+        TopNChart chart = byLanguage.get(normalize(language));
+        return chart != null ? chart.top(clamp(limit)) : Collections.emptyList();
+    }
+
+    /**
+     * Get the most recent releases
+     */
+    public List<Song> getRecentReleases(int limit) {
+        List<Song> recent = recentReleases;
+        return recent.subList(0, Math.min(clamp(limit), recent.size()));
+    }
+
+    private int clamp(int limit) {
+        return Math.max(1, Math.min(limit, chartSize));
+    }
+
+    private static String normalize(String key) {
+        return key.trim().toLowerCase();
+    }
+}
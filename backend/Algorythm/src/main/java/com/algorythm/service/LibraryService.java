@@ -0,0 +1,234 @@
+package com.algorythm.service;
+
+import com.algorythm.cache.SegmentedLruCache;
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.dao.LibraryDAO;
+import com.algorythm.dao.SongDAO;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A user's liked songs and followed artists, held in memory as one
+ * compressed bitmap of ids per user.
+ *
+ * Bitmaps are loaded from the database on first use and kept in a
+ * segmented LRU cache (library.cache.*). Changes go to the database first
+ * and then to the cached bitmap, under a per-user lock shared with loading,
+ * so a load can never overwrite a newer change. Song like counters are only
+ * touched when a like row was really inserted or deleted.
+ */
+public class LibraryService {
+    private static final Logger logger = LoggerFactory.getLogger(LibraryService.class);
+    private static final int LOCK_STRIPES = 256;
+    private static volatile LibraryService instance;
+
+    private final LibraryDAO libraryDAO;
+    private final SongDAO songDAO;
+    private final UserBitmaps likedSongs;
+    private final UserBitmaps followedArtists;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    /**
+     * Loads one user's ids from the database
+     */
+    private interface Loader {
+        void load(Long userId, LibraryDAO.IdConsumer consumer) throws SQLException;
+    }
+
+    /**
+     * Lazily loaded bitmap per user. Bitmaps are not thread-safe, so every
+     * access synchronizes on the bitmap itself.
+     */
+    private final class UserBitmaps {
+        private final SegmentedLruCache<Long, Roaring64Bitmap> cache;
+        private final Loader loader;
+
+        UserBitmaps(SegmentedLruCache<Long, Roaring64Bitmap> cache, Loader loader) {
+            this.cache = cache;
+            this.loader = loader;
+        }
+
+        Roaring64Bitmap get(Long userId) throws SQLException {
+            Roaring64Bitmap bitmap = cache.get(userId);
+            if (bitmap != null) {
+                return bitmap;
+            }
+            synchronized (lockFor(userId)) {
+                bitmap = cache.get(userId);
+                if (bitmap == null) {
+                    Roaring64Bitmap loaded = new Roaring64Bitmap();
+                    loader.load(userId, loaded::addLong);
+                    loaded.runOptimize();
+                    cache.put(userId, loaded);
+                    bitmap = loaded;
+                }
+            }
+            return bitmap;
+        }
+
+        /**
+         * Apply a committed change to the cached bitmap, if the user has one.
+         * Callers hold the user's lock.
+         */
+        void update(Long userId, long id, boolean present) {
+            Roaring64Bitmap bitmap = cache.get(userId);
+            if (bitmap != null) {
+                synchronized (bitmap) {
+                    if (present) {
+                        bitmap.addLong(id);
+                    } else {
+                        bitmap.removeLong(id);
+                    }
+                }
+            }
+        }
+
+        boolean contains(Long userId, long id) throws SQLException {
+            Roaring64Bitmap bitmap = get(userId);
+            synchronized (bitmap) {
+                return bitmap.contains(id);
+            }
+        }
+
+        List<Long> filter(Long userId, Collection<Long> ids) throws SQLException {
+            Roaring64Bitmap bitmap = get(userId);
+            List<Long> matches = new ArrayList<>();
+            synchronized (bitmap) {
+                for (Long id : ids) {
+                    if (id != null && bitmap.contains(id)) {
+                        matches.add(id);
+                    }
+                }
+            }
+            return matches;
+        }
+
+        long[] all(Long userId) throws SQLException {
+            Roaring64Bitmap bitmap = get(userId);
+            synchronized (bitmap) {
+                return bitmap.toArray();
+            }
+        }
+    }
+
+    LibraryService(int maxUsers, long ttlMillis) {
+        this.libraryDAO = new LibraryDAO();
+        this.songDAO = new SongDAO();
+        this.likedSongs = new UserBitmaps(new SegmentedLruCache<>(maxUsers, ttlMillis), libraryDAO::loadLikedSongIds);
+        this.followedArtists = new UserBitmaps(new SegmentedLruCache<>(maxUsers, ttlMillis), libraryDAO::loadFollowedArtistIds);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Get the shared service, configured from db.properties on first use
+     */
+    public static LibraryService getInstance() {
+        if (instance == null) {
+            synchronized (LibraryService.class) {
+                if (instance == null) {
+                    int maxUsers = DatabaseConfig.getIntProperty("library.cache.maxUsers", 50000);
+                    long ttlSeconds = DatabaseConfig.getLongProperty("library.cache.ttlSeconds", 1800);
+                    instance = new LibraryService(maxUsers, ttlSeconds * 1000);
+                    logger.info("Library bitmap cache initialized (maxUsers={}, ttl={}s)", maxUsers, ttlSeconds);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Like a song. Liking an already liked song is a no-op.
+     *
+     * @return false if the song does not exist
+     */
+    public boolean likeSong(Long userId, Long songId) throws SQLException {
+        synchronized (lockFor(userId)) {
+            if (libraryDAO.insertLike(userId, songId)) {
+                likedSongs.update(userId, songId, true);
+                songDAO.incrementLikeCount(songId);
+                return true;
+            }
+            // Nothing inserted: either liked before or no such song
+            return likedSongs.contains(userId, songId);
+        }
+    }
+
+    /**
+     * Remove a like. Unliking a song that is not liked is a no-op.
+     */
+    public void unlikeSong(Long userId, Long songId) throws SQLException {
+        synchronized (lockFor(userId)) {
+            if (libraryDAO.deleteLike(userId, songId)) {
+                likedSongs.update(userId, songId, false);
+                songDAO.decrementLikeCount(songId);
+            }
+        }
+    }
+
+    /**
+     * Follow an artist. Following an already followed artist is a no-op.
+     *
+     * @return false if the artist does not exist
+     */
+    public boolean followArtist(Long userId, Long artistId) throws SQLException {
+        synchronized (lockFor(userId)) {
+            if (libraryDAO.insertFollow(userId, artistId)) {
+                followedArtists.update(userId, artistId, true);
+                return true;
+            }
+            return followedArtists.contains(userId, artistId);
+        }
+    }
+
+    /**
+     * Unfollow an artist. Unfollowing an artist that is not followed is a no-op.
+     */
+    public void unfollowArtist(Long userId, Long artistId) throws SQLException {
+        synchronized (lockFor(userId)) {
+            if (libraryDAO.deleteFollow(userId, artistId)) {
+                followedArtists.update(userId, artistId, false);
+            }
+        }
+    }
+
+    public boolean isSongLiked(Long userId, Long songId) throws SQLException {
+        return likedSongs.contains(userId, songId);
+    }
+
+    /**
+     * The subset of songIds the user liked, in the given order
+     */
+    public List<Long> filterLikedSongs(Long userId, Collection<Long> songIds) throws SQLException {
+        return likedSongs.filter(userId, songIds);
+    }
+
+    /**
+     * All song ids the user liked, ascending
+     */
+    public long[] getLikedSongIds(Long userId) throws SQLException {
+        return likedSongs.all(userId);
+    }
+
+    public boolean isArtistFollowed(Long userId, Long artistId) throws SQLException {
+        return followedArtists.contains(userId, artistId);
+    }
+
+    /**
+     * All artist ids the user follows, ascending
+     */
+    public long[] getFollowedArtistIds(Long userId) throws SQLException {
+        return followedArtists.all(userId);
+    }
+
+    private Object lockFor(Long userId) {
+        return locks[(int) ((userId ^ (userId >>> 32)) & (LOCK_STRIPES - 1))];
+    }
+}
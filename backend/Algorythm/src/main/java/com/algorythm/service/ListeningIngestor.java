@@ -0,0 +1,359 @@
+package com.algorythm.service;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.dao.ListeningHistoryDAO;
+import com.algorythm.dao.SongDAO;
+import com.algorythm.model.ListeningEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous ingestion pipeline for play events.
+ *
+ * Request threads append the event to a local spool, enqueue it into a
+ * bounded lock-free queue and return; when the queue is full, offer()
+ * fails and the caller should shed load. An event is on disk (with
+ * ingest.spool.fsync, forced through group commit) before offer() returns,
+ * so an accepted play survives a crash and is replayed on the next start.
+ * A single writer thread drains the queue in batches, writes them to
+ * listening_history with multi-row INSERTs and releases them from the
+ * spool. While the database is unavailable the writer retries the current
+ * batch and stops draining, so the queue fills and clients get
+ * backpressure instead of the process growing without bound.
+ *
+ * Rows the database refuses outright (a deleted song or user, a value a
+ * CHECK rejects) would fail every retry, so a batch failing that way is
+ * split until the offending rows are isolated; those are appended to
+ * ingest.deadLetterFile and the rest of the batch is written.
+ */
+public class ListeningIngestor {
+    private static final Logger logger = LoggerFactory.getLogger(ListeningIngestor.class);
+
+    /**
+     * Receives events after they have been committed to listening_history
+     */
+    public interface Listener {
+        void onPersisted(List<ListeningEvent> events);
+
+        /**
+         * Called after the writer has stopped, before the pool is closed
+         */
+        default void onStopped() {}
+    }
+
+    private static final long MAX_BACKOFF_MS = 5000;
+    private static volatile ListeningIngestor instance;
+
+    private final ConcurrentLinkedQueue<ListeningSpool.Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final ListeningHistoryDAO historyDAO = new ListeningHistoryDAO();
+    private final SongDAO songDAO = new SongDAO();
+    private final ListeningSpool spool;
+    private final boolean fsync;
+    private final Path deadLetterFile;
+    private final Thread writer;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    ListeningIngestor(int capacity, int batchSize, long lingerMs, ListeningSpool spool, boolean fsync,
+                      Path deadLetterFile) {
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.spool = spool;
+        this.fsync = fsync;
+        this.deadLetterFile = deadLetterFile;
+        this.writer = new Thread(this::runWriter, "listening-history-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Get the shared ingestor, starting its writer thread on first use
+     */
+    public static ListeningIngestor getInstance() {
+        if (instance == null) {
+            synchronized (ListeningIngestor.class) {
+                if (instance == null) {
+                    String spoolFile = DatabaseConfig.getProperty("ingest.spoolFile", "spool/listening-history.spool");
+                    ListeningSpool spool;
+                    try {
+                        spool = new ListeningSpool(Paths.get(spoolFile),
+                            DatabaseConfig.getIntProperty("ingest.spool.segmentEvents", 50000));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Cannot open listening spool " + spoolFile, e);
+                    }
+                    ListeningIngestor ingestor = new ListeningIngestor(
+                        DatabaseConfig.getIntProperty("ingest.queueCapacity", 100000),
+                        DatabaseConfig.getIntProperty("ingest.batchSize", 500),
+                        DatabaseConfig.getLongProperty("ingest.lingerMs", 50),
+                        spool,
+                        DatabaseConfig.getBooleanProperty("ingest.spool.fsync", true),
+                        Paths.get(DatabaseConfig.getProperty("ingest.deadLetterFile", "spool/listening-history.dead")));
+                    ingestor.writer.start();
+                    DatabaseConfig.registerShutdownHook(ingestor::shutdown);
+                    instance = ingestor;
+                    logger.info("Listening history ingestor started (capacity={}, batchSize={})",
+                        ingestor.capacity, ingestor.batchSize);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * The shared ingestor if it has been started, without starting it
+     */
+    public static ListeningIngestor getStartedInstance() {
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Spool an event and queue it for asynchronous persistence
+     *
+     * @return false if the queue is full, the ingestor is shutting down or
+     *         the event could not be spooled
+     */
+    public boolean offer(ListeningEvent event) {
+        if (!running) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        int size;
+        do {
+            size = queued.get();
+            if (size >= capacity) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        } while (!queued.compareAndSet(size, size + 1));
+
+        ListeningSpool.Entry entry;
+        try {
+            entry = spool.append(event);
+        } catch (IOException e) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            logger.error("Failed to spool listening event {}", event, e);
+            return false;
+        }
+        queue.offer(entry);
+        if (fsync) {
+            try {
+                spool.sync(entry.sequence);
+            } catch (IOException e) {
+                // Already queued, so it still reaches the database unless the process dies first
+                logger.error("Failed to sync listening spool", e);
+            }
+        }
+        accepted.incrementAndGet();
+        if (size + 1 >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<ListeningSpool.Entry> pending = recoverSpool();
+        long backoffMs = 100;
+
+        while (running || !pending.isEmpty() || queued.get() > 0) {
+            if (pending.isEmpty()) {
+                if (running && queued.get() < batchSize) {
+                    LockSupport.parkNanos(this, lingerNanos);
+                }
+                pending = drain(running ? batchSize : Integer.MAX_VALUE);
+                if (pending.isEmpty()) {
+                    continue;
+                }
+            }
+
+            try {
+                persist(pending);
+                backoffMs = 100;
+            } catch (SQLException e) {
+                failedBatches.incrementAndGet();
+                logger.error("Failed to write {} listening events, retrying in {}ms", pending.size(), backoffMs, e);
+                if (!running) {
+                    logger.warn("Leaving {} listening events in spool for next start", pending.size());
+                    break;
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(backoffMs));
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Write a batch, removing events from it and releasing them from the
+     * spool as they are committed or dead-lettered, so a retry after a
+     * transient failure only covers the rest. A batch the database refuses
+     * is halved until the refused row is found.
+     */
+    private void persist(List<ListeningSpool.Entry> pending) throws SQLException {
+        int size = pending.size();
+        while (!pending.isEmpty()) {
+            List<ListeningSpool.Entry> part = pending.subList(0, size);
+            List<ListeningEvent> events = new ArrayList<>(part.size());
+            for (ListeningSpool.Entry entry : part) {
+                events.add(entry.event);
+            }
+            try {
+                historyDAO.insertBatch(events);
+            } catch (SQLException e) {
+                if (!ListeningHistoryDAO.isRejectedRow(e)) {
+                    throw e;
+                }
+                if (size > 1) {
+                    size /= 2;
+                    continue;
+                }
+                deadLetter(events.get(0), e);
+                spool.done(part);
+                part.clear();
+                size = pending.size();
+                continue;
+            }
+            spool.done(part);
+            part.clear();
+            persisted.addAndGet(events.size());
+            afterPersist(events);
+            size = pending.size();
+        }
+    }
+
+    private void deadLetter(ListeningEvent event, SQLException cause) {
+        deadLettered.incrementAndGet();
+        logger.warn("Dropping listening event the database refuses: {} ({})", event, cause.getMessage());
+        try {
+            ListeningSpool.appendTo(deadLetterFile, Collections.singletonList(event));
+        } catch (IOException e) {
+            logger.error("Failed to write dead-lettered listening event {}", event, e);
+        }
+    }
+
+    private List<ListeningSpool.Entry> drain(int max) {
+        List<ListeningSpool.Entry> batch = new ArrayList<>(Math.min(max, batchSize));
+        ListeningSpool.Entry entry;
+        while (batch.size() < max && (entry = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(entry);
+        }
+        return batch;
+    }
+
+    private List<ListeningSpool.Entry> recoverSpool() {
+        try {
+            List<ListeningSpool.Entry> recovered = spool.recover();
+            if (!recovered.isEmpty()) {
+                logger.info("Replaying {} listening events from spool", recovered.size());
+            }
+            return recovered;
+        } catch (IOException e) {
+            logger.error("Failed to read listening spool", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Fan committed events out to play counters and listeners
+     */
+    private void afterPersist(List<ListeningEvent> events) {
+        for (ListeningEvent event : events) {
+            try {
+                songDAO.incrementPlayCount(event.getSongId());
+            } catch (SQLException e) {
+                logger.error("Failed to count play for song {}", event.getSongId(), e);
+            }
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onPersisted(events);
+            } catch (RuntimeException e) {
+                logger.error("Listening event listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Stop accepting events, drain what is queued and close the spool
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            spool.close();
+        } catch (IOException e) {
+            logger.error("Error closing listening spool", e);
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onStopped();
+            } catch (RuntimeException e) {
+                logger.error("Listening event listener failed to stop", e);
+            }
+        }
+        logger.info("Listening history ingestor stopped (persisted={}, rejected={})", persisted.get(), rejected.get());
+    }
+
+    // Metrics
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getPersistedCount() {
+        return persisted.get();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatches.get();
+    }
+
+    public long getDeadLetteredCount() {
+        return deadLettered.get();
+    }
+
+    public int getSpoolSegmentCount() {
+        return spool.getSegmentCount();
+    }
+}
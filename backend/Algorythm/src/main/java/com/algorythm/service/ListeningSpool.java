@@ -0,0 +1,318 @@
+package com.algorythm.service;
+
+import com.algorythm.model.ListeningEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only local spool of listening events that have been accepted but
+ * not yet committed to the database.
+ *
+ * Every event is appended when it is accepted, before the client is told
+ * so. The spool is a series of numbered segment files next to the
+ * configured path (listening-history.spool.1, .2, ...). The active segment
+ * is sealed after segmentEvents events, and a sealed segment is deleted
+ * once every event in it has been committed or dead-lettered. When all of
+ * the active segment is done it is truncated instead, so an idle spool
+ * stays empty. sync() forces appends to disk with group commit: a single
+ * force covers every append before it, so concurrent requests share the
+ * cost.
+ *
+ * One tab-separated line per event. Lines written by older versions carry
+ * two more fields, which are ignored, and a file at the configured path
+ * itself (the old single-file spool) is replayed like a segment.
+ */
+class ListeningSpool {
+    private static final Logger logger = LoggerFactory.getLogger(ListeningSpool.class);
+
+    /**
+     * An accepted event and the segment that holds it
+     */
+    static final class Entry {
+        final ListeningEvent event;
+        final Segment segment;
+        final long sequence;
+
+        Entry(ListeningEvent event, Segment segment, long sequence) {
+            this.event = event;
+            this.segment = segment;
+            this.sequence = sequence;
+        }
+    }
+
+    static final class Segment {
+        final Path path;
+        // Null for segments recovered from a previous run
+        final FileChannel channel;
+        // Guarded by the spool; final once the segment is sealed
+        int appended;
+        // Only touched by the writer thread
+        int done;
+        // Set with the spool locked
+        volatile boolean sealed;
+        boolean deleted;
+
+        Segment(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private final Path path;
+    private final int segmentEvents;
+    private final Object syncLock = new Object();
+    private final List<Segment> recovered = new ArrayList<>();
+    private final AtomicInteger openSegments = new AtomicInteger();
+    private volatile Segment active;
+    private long nextSegment;
+    private volatile long written;
+    private volatile long synced;
+
+    ListeningSpool(Path path, int segmentEvents) throws IOException {
+        this.path = path;
+        this.segmentEvents = segmentEvents;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        if (Files.exists(path)) {
+            segments.put(0L, path);
+        }
+        Path dir = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("\\d{1,18}")) {
+                    segments.put(Long.parseLong(suffix), file);
+                }
+            }
+        }
+        for (Path file : segments.values()) {
+            Segment segment = new Segment(file, null);
+            segment.sealed = true;
+            recovered.add(segment);
+        }
+        nextSegment = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        active = openSegment();
+    }
+
+    /**
+     * Read back everything left over from a previous run. Segments that held
+     * nothing readable are deleted right away.
+     */
+    List<Entry> recover() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (Segment segment : recovered) {
+            try (BufferedReader reader = Files.newBufferedReader(segment.path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    ListeningEvent event = parse(line);
+                    if (event != null) {
+                        segment.appended++;
+                        entries.add(new Entry(event, segment, 0));
+                    }
+                }
+            }
+            openSegments.incrementAndGet();
+            if (segment.appended == 0) {
+                synchronized (this) {
+                    delete(segment);
+                }
+            }
+        }
+        recovered.clear();
+        return entries;
+    }
+
+    /**
+     * Append one event to the active segment. The line is written to the
+     * file but not necessarily on disk until sync() returns.
+     */
+    Entry append(ListeningEvent event) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap(format(event).getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            Segment segment = active;
+            if (segment.appended >= segmentEvents) {
+                segment = roll();
+            }
+            while (line.hasRemaining()) {
+                segment.channel.write(line);
+            }
+            segment.appended++;
+            long sequence = written + 1;
+            written = sequence;
+            return new Entry(event, segment, sequence);
+        }
+    }
+
+    /**
+     * Force appends up to sequence to disk. Callers that find a concurrent
+     * force already covered them return without one of their own.
+     */
+    void sync(long sequence) throws IOException {
+        if (synced >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= sequence) {
+                return;
+            }
+            // Anything appended before this read is in this segment, or in
+            // an older one that roll() forced when sealing it
+            long target = written;
+            active.channel.force(false);
+            synced = target;
+        }
+    }
+
+    /**
+     * Mark events as committed (or dead-lettered). Called by the writer only.
+     */
+    void done(List<Entry> entries) {
+        Segment last = null;
+        for (Entry entry : entries) {
+            if (last != null && entry.segment != last) {
+                release(last);
+            }
+            last = entry.segment;
+            last.done++;
+        }
+        if (last != null) {
+            release(last);
+        }
+    }
+
+    /**
+     * Once everything in a segment is in the database, delete it if sealed
+     * or empty it if active, so a restart does not replay it
+     */
+    private void release(Segment segment) {
+        synchronized (this) {
+            if (segment.deleted || segment.appended == 0 || segment.done != segment.appended) {
+                return;
+            }
+            if (segment.sealed) {
+                delete(segment);
+                return;
+            }
+            try {
+                segment.channel.truncate(0);
+            } catch (IOException e) {
+                logger.error("Failed to truncate listening spool {}; events may be replayed", segment.path, e);
+                return;
+            }
+            segment.appended = 0;
+            segment.done = 0;
+        }
+        try {
+            segment.channel.force(false);
+        } catch (IOException e) {
+            logger.error("Failed to sync listening spool {}", segment.path, e);
+        }
+    }
+
+    /**
+     * Seal the active segment and start the next; called with the spool locked
+     */
+    private Segment roll() throws IOException {
+        Segment sealed = active;
+        sealed.channel.force(false);
+        active = openSegment();
+        sealed.sealed = true;
+        return active;
+    }
+
+    private Segment openSegment() throws IOException {
+        Path file = path.resolveSibling(path.getFileName() + "." + nextSegment++);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        openSegments.incrementAndGet();
+        return new Segment(file, channel);
+    }
+
+    /**
+     * Called with the spool locked
+     */
+    private void delete(Segment segment) {
+        segment.deleted = true;
+        try {
+            if (segment.channel != null) {
+                segment.channel.close();
+            }
+            Files.deleteIfExists(segment.path);
+            openSegments.decrementAndGet();
+        } catch (IOException e) {
+            logger.error("Failed to delete listening spool segment {}; events may be replayed", segment.path, e);
+        }
+    }
+
+    /**
+     * Append events to a plain file and force them to disk, for the
+     * dead-letter log
+     */
+    static void appendTo(Path file, List<ListeningEvent> events) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        StringBuilder sb = new StringBuilder(events.size() * 48);
+        for (ListeningEvent event : events) {
+            sb.append(format(event));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    int getSegmentCount() {
+        return openSegments.get();
+    }
+
+    void close() throws IOException {
+        active.channel.close();
+    }
+
+    private static String format(ListeningEvent event) {
+        return event.getUserId() + "\t" + event.getSongId() + "\t" + event.getPlayedAt().getTime() + "\t"
+            + event.getDurationPlayedSeconds() + "\t"
+            + (event.getCompletionPercentage() != null ? event.getCompletionPercentage() : "") + "\n";
+    }
+
+    private static ListeningEvent parse(String line) {
+        String[] f = line.split("\t", -1);
+        if (f.length != 5 && f.length != 7) {
+            // Torn write from a crash mid-append
+            return null;
+        }
+        try {
+            return new ListeningEvent(
+                Long.parseLong(f[0]),
+                Long.parseLong(f[1]),
+                new Timestamp(Long.parseLong(f[2])),
+                Integer.parseInt(f[3]),
+                f[4].isEmpty() ? null : Double.parseDouble(f[4]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
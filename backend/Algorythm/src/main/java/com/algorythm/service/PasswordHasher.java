@@ -0,0 +1,180 @@
+package com.algorythm.service;
+
+import com.algorythm.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes.
+ *
+ * Hashes are stored as pbkdf2-sha256$iterations$salt$hash so the cost can
+ * be raised without invalidating existing passwords. Values without that
+ * prefix are the original unsalted SHA-256 hashes; they still verify, and
+ * needsRehash reports them (and any hash below the current cost) so login
+ * can replace them.
+ *
+ * auth.pbkdf2.iterations fixes the cost. At 0 it is calibrated at startup
+ * so one hash takes about auth.pbkdf2.targetMs on this host, never going
+ * below auth.pbkdf2.minIterations. Nodes that calibrate differently still
+ * verify each other's hashes, since the cost is read from the stored value.
+ */
+public final class PasswordHasher {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    // Calibrated costs are rounded down to a multiple of this
+    private static final int ITERATION_STEP = 10000;
+
+    private static volatile PasswordHasher instance;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    // Verified against when the email is unknown, so the response time does not reveal it
+    private final String dummyHash;
+
+    PasswordHasher(int iterations) {
+        this.iterations = iterations;
+        this.dummyHash = hash("unknown-user-dummy-password");
+    }
+
+    /**
+     * Get the shared hasher, calibrating its cost on first use if configured to
+     */
+    public static PasswordHasher getInstance() {
+        if (instance == null) {
+            synchronized (PasswordHasher.class) {
+                if (instance == null) {
+                    int iterations = DatabaseConfig.getIntProperty("auth.pbkdf2.iterations", 0);
+                    int minIterations = DatabaseConfig.getIntProperty("auth.pbkdf2.minIterations", 210000);
+                    if (iterations <= 0) {
+                        long targetMs = DatabaseConfig.getLongProperty("auth.pbkdf2.targetMs", 100);
+                        iterations = Math.max(minIterations, calibrate(targetMs));
+                        logger.info("PBKDF2 calibrated to {} iterations for ~{} ms per hash", iterations, targetMs);
+                    } else {
+                        logger.info("PBKDF2 using {} iterations", iterations);
+                    }
+                    instance = new PasswordHasher(iterations);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Iterations that take about targetMs on this host
+     */
+    static int calibrate(long targetMs) {
+        int probe = ITERATION_STEP * 2;
+        byte[] salt = new byte[SALT_BYTES];
+        char[] password = "calibration".toCharArray();
+        // Warm up the JIT first, then keep the fastest run to discount scheduling noise
+        for (int i = 0; i < 5; i++) {
+            derive(password, salt, probe);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            derive(password, salt, probe);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long iterations = targetMs * 1_000_000L * probe / Math.max(1, best);
+        return (int) Math.min(Integer.MAX_VALUE - ITERATION_STEP,
+            Math.max(ITERATION_STEP, iterations / ITERATION_STEP * ITERATION_STEP));
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$"
+            + encoder.encodeToString(derive(password.toCharArray(), salt, iterations));
+    }
+
+    /**
+     * Check a password against a stored hash of either format, in constant time
+     */
+    public boolean verify(String password, String stored) {
+        if (stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(legacyHash(password).getBytes(StandardCharsets.US_ASCII),
+                stored.getBytes(StandardCharsets.US_ASCII));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] expected = decoder.decode(parts[3]);
+            byte[] actual = derive(password.toCharArray(), decoder.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Malformed password hash");
+            return false;
+        }
+    }
+
+    /**
+     * Spend the same time as a real verification, for logins with an unknown email
+     */
+    public void verifyDummy(String password) {
+        verify(password, dummyHash);
+    }
+
+    /**
+     * Whether a stored hash is legacy or cheaper than the current cost
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " unavailable", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * The original unsalted SHA-256 format, kept to verify old hashes
+     */
+    static String legacyHash(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(password.getBytes());
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("Error hashing password", e);
+            throw new RuntimeException("Password hashing failed", e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.algorythm.service;
+
+import com.algorythm.dao.PlaylistDAO;
+import com.algorythm.dao.RowCallback;
+import com.algorythm.model.Playlist;
+import com.algorythm.model.Song;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Service layer for playlist business logic. Only the owner may change a
+ * playlist; private playlists are invisible to everyone else, so lookups
+ * by other users behave as if the playlist did not exist.
+ */
+public class PlaylistService {
+    private static final Logger logger = LoggerFactory.getLogger(PlaylistService.class);
+    static final int MAX_NAME_LENGTH = 200;
+    static final int MAX_SONGS_PER_ADD = 10000;
+    private final PlaylistDAO playlistDAO;
+
+    public PlaylistService() {
+        this.playlistDAO = new PlaylistDAO();
+    }
+
+    /**
+     * Create a playlist owned by userId
+     */
+    public Playlist createPlaylist(Long userId, String name, String description, boolean isPublic)
+            throws SQLException {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Playlist name is required");
+        }
+        if (name.trim().length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Playlist name is too long");
+        }
+
+        Playlist playlist = new Playlist(userId, name.trim(), description, isPublic);
+        playlist.setPlaylistId(playlistDAO.createPlaylist(playlist));
+        logger.info("Playlist {} created by user {}", playlist.getPlaylistId(), userId);
+        return playlistDAO.findById(playlist.getPlaylistId());
+    }
+
+    /**
+     * Get a playlist if viewerId may see it
+     */
+    public Playlist getPlaylist(Long playlistId, Long viewerId) throws SQLException {
+        Playlist playlist = playlistDAO.findById(playlistId);
+        return playlist != null && canView(playlist, viewerId) ? playlist : null;
+    }
+
+    /**
+     * Get all playlists owned by a user
+     */
+    public List<Playlist> getUserPlaylists(Long userId) throws SQLException {
+        return playlistDAO.findByUser(userId);
+    }
+
+    /**
+     * Stream a playlist's songs in order if viewerId may see it
+     *
+     * @return false if the playlist is not found or not visible
+     */
+    public boolean streamSongs(Long playlistId, Long viewerId, RowCallback<Song> callback)
+            throws SQLException, IOException {
+        if (getPlaylist(playlistId, viewerId) == null) {
+            return false;
+        }
+        playlistDAO.streamSongs(playlistId, callback);
+        return true;
+    }
+
+    /**
+     * Append songs to a playlist owned by userId
+     *
+     * @return number of songs added, or -1 if the playlist is not found or not owned
+     */
+    public int addSongs(Long playlistId, Long userId, List<Long> songIds) throws SQLException {
+        if (songIds == null || songIds.isEmpty()) {
+            throw new IllegalArgumentException("No songs given");
+        }
+        if (songIds.size() > MAX_SONGS_PER_ADD) {
+            throw new IllegalArgumentException("At most " + MAX_SONGS_PER_ADD + " songs can be added at once");
+        }
+        if (!isOwner(playlistId, userId)) {
+            return -1;
+        }
+        int added = playlistDAO.addSongs(playlistId, userId, songIds);
+        logger.debug("Added {} of {} songs to playlist {}", added, songIds.size(), playlistId);
+        return added;
+    }
+
+    /**
+     * Remove a song from a playlist owned by userId
+     */
+    public boolean removeSong(Long playlistId, Long userId, Long songId) throws SQLException {
+        return isOwner(playlistId, userId) && playlistDAO.removeSong(playlistId, songId);
+    }
+
+    /**
+     * Move a song to directly after afterSongId (null for the top) in a playlist owned by userId
+     */
+    public boolean moveSong(Long playlistId, Long userId, Long songId, Long afterSongId) throws SQLException {
+        return isOwner(playlistId, userId) && playlistDAO.moveSong(playlistId, songId, afterSongId);
+    }
+
+    /**
+     * Delete a playlist owned by userId
+     */
+    public boolean deletePlaylist(Long playlistId, Long userId) throws SQLException {
+        if (!isOwner(playlistId, userId)) {
+            return false;
+        }
+        boolean deleted = playlistDAO.deletePlaylist(playlistId);
+        if (deleted) {
+            logger.info("Playlist {} deleted by user {}", playlistId, userId);
+        }
+        return deleted;
+    }
+
+    private boolean isOwner(Long playlistId, Long userId) throws SQLException {
+        Playlist playlist = playlistDAO.findById(playlistId);
+        return playlist != null && playlist.getUserId().equals(userId);
+    }
+
+    private static boolean canView(Playlist playlist, Long viewerId) {
+        return playlist.isPublic() || playlist.getUserId().equals(viewerId);
+    }
+}
@@ -0,0 +1,115 @@
+package com.algorythm.service;
+
+import com.algorythm.model.Song;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A materialized play-count ranking.
+ *
+ * The chart tracks more candidates than it serves so that songs just below
+ * the cut can climb in from incremental play-count deltas without a rebuild.
+ * Writers are serialized and work on a private sorted set; after each load
+ * or batch of deltas they publish an immutable snapshot of the ranking,
+ * which readers use without locking. Songs in the chart are private copies
+ * that are never modified once published.
+ */
+class TopNChart {
+    private static final Comparator<Entry> RANKING = Comparator
+        .comparingLong((Entry e) -> e.playCount).reversed()
+        .thenComparingLong(e -> e.songId);
+
+    private final int capacity;
+    private final TreeSet<Entry> ranking = new TreeSet<>(RANKING);
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private volatile List<Song> snapshot = Collections.emptyList();
+
+    private static final class Entry {
+        final long songId;
+        final long playCount;
+        final Song song;
+
+        Entry(Song song, long playCount) {
+            this.songId = song.getSongId();
+            this.playCount = playCount;
+            this.song = new Song(song);
+            this.song.setPlayCount(playCount);
+        }
+    }
+
+    TopNChart(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Replace the chart contents with a freshly queried candidate list
+     */
+    synchronized void load(List<Song> songs) {
+        ranking.clear();
+        entries.clear();
+        for (Song song : songs) {
+            Entry entry = new Entry(song, song.getPlayCount());
+            ranking.add(entry);
+            entries.put(entry.songId, entry);
+        }
+        trim();
+        publish();
+    }
+
+    /**
+     * Apply a batch of committed play-count deltas. Songs that are not
+     * tracked are ignored; they are picked up on the next rebuild.
+     */
+    synchronized void applyDeltas(Map<Long, Long> deltas) {
+        boolean changed = false;
+        for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+            Entry old = entries.get(delta.getKey());
+            if (old == null) {
+                continue;
+            }
+            Entry updated = new Entry(old.song, old.playCount + delta.getValue());
+            ranking.remove(old);
+            ranking.add(updated);
+            entries.put(updated.songId, updated);
+            changed = true;
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    /**
+     * Get the first n songs of the chart
+     */
+    List<Song> top(int n) {
+        List<Song> songs = snapshot;
+        return songs.subList(0, Math.min(n, songs.size()));
+    }
+
+    int size() {
+        return snapshot.size();
+    }
+
+    private void trim() {
+        while (ranking.size() > capacity) {
+            Entry last = ranking.pollLast();
+            if (last != null) {
+                entries.remove(last.songId);
+            }
+        }
+    }
+
+    private void publish() {
+        List<Song> songs = new ArrayList<>(ranking.size());
+        for (Entry entry : ranking) {
+            songs.add(entry.song);
+        }
+        snapshot = Collections.unmodifiableList(songs);
+    }
+}
@@ -1,14 +1,15 @@
 package com.algorythm.service;
 
+import com.algorythm.auth.TokenService;
+import com.algorythm.cache.UserProfileCache;
 import com.algorythm.dao.UserDAO;
+import com.algorythm.model.Page;
 import com.algorythm.model.User;
+import com.algorythm.model.UserProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
-import java.util.Base64;
 import java.util.List;
 
 /**
@@ -17,25 +18,19 @@ import java.util.List;
 public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
     private final UserDAO userDAO;
+    private final PasswordHasher passwordHasher;
 
     public UserService() {
         this.userDAO = new UserDAO();
+        this.passwordHasher = PasswordHasher.getInstance();
     }
 
     /**
      * Register a new user
      */
     public Long registerUser(String username, String email, String password) throws SQLException {
-        // Check if user already exists
-        if (userDAO.findByEmail(email) != null) {
-            throw new IllegalArgumentException("Email already registered");
-        }
-        
-        if (userDAO.findByUsername(username) != null) {
-            throw new IllegalArgumentException("Username already taken");
-        }
-
-        // Create new user
+        // A single INSERT; the unique keys on email and username reject
+        // duplicates atomically, without lookups that could race
         User user = new User();
         user.setUsername(username);
         user.setEmail(email);
@@ -44,7 +39,19 @@ public class UserService {
         user.setVerified(false);
         user.setActive(true);
 
-        Long userId = userDAO.createUser(user);
+        Long userId;
+        try {
+            userId = userDAO.createUser(user);
+        } catch (SQLException e) {
+            String column = UserDAO.duplicateColumn(e);
+            if ("email".equals(column)) {
+                throw new IllegalArgumentException("Email already registered");
+            }
+            if ("username".equals(column)) {
+                throw new IllegalArgumentException("Username already taken");
+            }
+            throw e;
+        }
         logger.info("New user registered: {}", username);
         return userId;
     }
@@ -53,14 +60,14 @@ public class UserService {
      * Authenticate user
      */
     public User authenticateUser(String email, String password) throws SQLException {
-        User user = userDAO.findByEmail(email);
+        User user = userDAO.findCredentialsByEmail(email);
         
         if (user == null) {
+            passwordHasher.verifyDummy(password);
             throw new IllegalArgumentException("Invalid email or password");
         }
 
-        String hashedPassword = hashPassword(password);
-        if (!hashedPassword.equals(user.getPasswordHash())) {
+        if (!passwordHasher.verify(password, user.getPasswordHash())) {
             throw new IllegalArgumentException("Invalid email or password");
         }
 
@@ -68,7 +75,20 @@ public class UserService {
             throw new IllegalArgumentException("Account is deactivated");
         }
 
-        // Update last login
+        // Upgrade legacy and under-cost hashes while the password is at hand
+        if (passwordHasher.needsRehash(user.getPasswordHash())) {
+            userDAO.updatePasswordHash(user.getUserId(), passwordHasher.hash(password));
+            logger.info("Password hash upgraded for user {}", user.getUserId());
+        }
+
+        // The hash is not needed past this point
+        user.setPasswordHash(null);
+        // The dashboard fetches the profile right after login
+        if (UserProfileCache.isEnabled()) {
+            UserProfileCache.get().put(user.getUserId(), new UserProfile(user));
+        }
+
+        // Buffered and written in batches with other logins
         userDAO.updateLastLogin(user.getUserId());
         logger.info("User authenticated: {}", email);
         
@@ -82,11 +102,35 @@ public class UserService {
         return userDAO.findById(userId);
     }
 
+    /**
+     * Get a user's profile snapshot, from the cache when possible
+     *
+     * @return the profile, or null if the user does not exist
+     */
+    public UserProfile getProfile(Long userId) throws SQLException {
+        boolean cacheEnabled = UserProfileCache.isEnabled();
+        UserProfile profile = cacheEnabled ? UserProfileCache.get().get(userId) : null;
+        if (profile != null) {
+            return profile;
+        }
+        // Not cached if the user changes while this loads
+        User user = userDAO.findById(userId, loaded -> {
+            if (cacheEnabled && loaded != null) {
+                UserProfileCache.get().put(userId, new UserProfile(loaded));
+            }
+        });
+        return user != null ? new UserProfile(user) : null;
+    }
+
     /**
      * Update user profile
      */
     public boolean updateUserProfile(User user) throws SQLException {
         boolean success = userDAO.updateUser(user);
+        invalidateProfile(user.getUserId());
+        if (success && !user.isActive()) {
+            revokeTokens(user.getUserId());
+        }
         if (success) {
             logger.info("User profile updated: {}", user.getUserId());
         }
@@ -104,6 +148,7 @@ public class UserService {
 
         user.setSubscriptionType(subscriptionType);
         boolean success = userDAO.updateUser(user);
+        invalidateProfile(userId);
         
         if (success) {
             logger.info("User {} upgraded to {} subscription", userId, subscriptionType);
@@ -114,12 +159,24 @@ public class UserService {
 
     /**
      * Get all users with pagination
+     *
+     * @deprecated use {@link #getAllUsers(String, int)}, which does not slow down on deep pages
      */
+    @Deprecated
     public List<User> getAllUsers(int page, int pageSize) throws SQLException {
         int offset = (page - 1) * pageSize;
         return userDAO.findAll(pageSize, offset);
     }
 
+    /**
+     * Get all users with cursor pagination
+     *
+     * @param cursor the next cursor of the previous page, or null for the first page
+     */
+    public Page<User> getAllUsers(String cursor, int pageSize) throws SQLException {
+        return userDAO.findPage(cursor, pageSize);
+    }
+
     /**
      * Get users by subscription type
      */
@@ -132,7 +189,9 @@ public class UserService {
      */
     public boolean deleteUser(Long userId) throws SQLException {
         boolean success = userDAO.deleteUser(userId);
+        invalidateProfile(userId);
         if (success) {
+            revokeTokens(userId);
             logger.info("User deleted: {}", userId);
         }
         return success;
@@ -145,17 +204,27 @@ public class UserService {
         return userDAO.countUsers();
     }
 
+    private void invalidateProfile(Long userId) {
+        userDAO.invalidate(userId);
+        if (UserProfileCache.isEnabled()) {
+            UserProfileCache.get().invalidate(userId);
+        }
+    }
+
     /**
-     * Hash password using SHA-256
+     * Log the user out everywhere, so a deactivated or deleted account's
+     * tokens stop working before they expire
      */
-    private String hashPassword(String password) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes());
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("Error hashing password", e);
-            throw new RuntimeException("Password hashing failed", e);
+    private void revokeTokens(Long userId) throws SQLException {
+        if (TokenService.isEnabled()) {
+            TokenService.getInstance().revokeUser(userId);
         }
     }
+
+    /**
+     * Hash password with the current PBKDF2 cost
+     */
+    String hashPassword(String password) {
+        return passwordHasher.hash(password);
+    }
 }
@@ -0,0 +1,300 @@
+package com.algorythm.servlet;
+
+import com.algorythm.dao.SongDAO;
+import com.algorythm.filter.AuthFilter;
+import com.algorythm.model.ListeningEvent;
+import com.algorythm.service.LibraryService;
+import com.algorythm.service.ListeningIngestor;
+import com.algorythm.stats.DailyStatsAggregator;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Servlet for handling user activity (plays, likes, follows)
+ */
+@WebServlet(urlPatterns = {"/activity/*"})
+public class ActivityServlet extends HttpServlet {
+    private static final Logger logger = LoggerFactory.getLogger(ActivityServlet.class);
+    private static final int MAX_LIKE_LOOKUP_IDS = 1000;
+    private ListeningIngestor ingestor;
+    private SongDAO songDAO;
+    private LibraryService library;
+    private Gson gson;
+
+    /**
+     * JSON body of POST /activity/listen
+     */
+    private static class ListenRequest {
+        Long songId;
+        Integer durationPlayed;
+        Double completionPercentage;
+    }
+
+    /**
+     * JSON body of POST /activity/like and /activity/follow
+     */
+    private static class EntityRequest {
+        String entityType;
+        Long entityId;
+    }
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        ingestor = ListeningIngestor.getInstance();
+        songDAO = new SongDAO();
+        library = LibraryService.getInstance();
+        if (DailyStatsAggregator.isEnabled()) {
+            DailyStatsAggregator.getInstance();
+        }
+        gson = JsonSupport.newGson();
+        logger.info("ActivityServlet initialized");
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        String pathInfo = request.getPathInfo();
+        Long userId = AuthFilter.getUserId(request);
+        if (userId == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.getWriter().write("{\"error\": \"Not authenticated\"}");
+            return;
+        }
+
+        try {
+            if ("/listen".equals(pathInfo)) {
+                recordListen(userId, request, response);
+            } else if ("/like".equals(pathInfo)) {
+                EntityRequest body = parseEntity(request, "Song", response);
+                if (body != null) {
+                    writeState(library.likeSong(userId, body.entityId), "liked", "Song not found", response);
+                }
+            } else if ("/follow".equals(pathInfo)) {
+                EntityRequest body = parseEntity(request, "Artist", response);
+                if (body != null) {
+                    writeState(library.followArtist(userId, body.entityId), "following", "Artist not found", response);
+                }
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (JsonParseException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"error\": \"Invalid request body\"}");
+        } catch (SQLException e) {
+            databaseError(e, response);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        String pathInfo = request.getPathInfo();
+        Long userId = AuthFilter.getUserId(request);
+        if (userId == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.getWriter().write("{\"error\": \"Not authenticated\"}");
+            return;
+        }
+
+        try {
+            if ("/likes".equals(pathInfo)) {
+                String ids = request.getParameter("ids");
+                if (ids != null) {
+                    // Which of these songs are liked, e.g. for one page of a song list
+                    List<Long> songIds = parseIds(ids);
+                    if (songIds.size() > MAX_LIKE_LOOKUP_IDS) {
+                        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        response.getWriter().write("{\"error\": \"Too many ids\"}");
+                        return;
+                    }
+                    List<Long> liked = library.filterLikedSongs(userId, songIds);
+                    writeEntities("Song", liked.stream().mapToLong(Long::longValue).toArray(), response);
+                } else {
+                    writeEntities("Song", library.getLikedSongIds(userId), response);
+                }
+            } else if ("/follows".equals(pathInfo)) {
+                writeEntities("Artist", library.getFollowedArtistIds(userId), response);
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"error\": \"Invalid ID format\"}");
+        } catch (SQLException e) {
+            databaseError(e, response);
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        String pathInfo = request.getPathInfo();
+        Long userId = AuthFilter.getUserId(request);
+        if (userId == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.getWriter().write("{\"error\": \"Not authenticated\"}");
+            return;
+        }
+
+        try {
+            if (pathInfo != null && pathInfo.matches("/like/Song/\\d+")) {
+                library.unlikeSong(userId, Long.parseLong(pathInfo.substring("/like/Song/".length())));
+                response.getWriter().write("{\"liked\": false}");
+            } else if (pathInfo != null && pathInfo.matches("/follow/Artist/\\d+")) {
+                library.unfollowArtist(userId, Long.parseLong(pathInfo.substring("/follow/Artist/".length())));
+                response.getWriter().write("{\"following\": false}");
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"error\": \"Invalid ID format\"}");
+        } catch (SQLException e) {
+            databaseError(e, response);
+        }
+    }
+
+    /**
+     * Parse a like/follow body, answering 400 unless it names an entity of the expected type
+     */
+    private EntityRequest parseEntity(HttpServletRequest request, String expectedType, HttpServletResponse response)
+            throws IOException {
+        EntityRequest body = gson.fromJson(request.getReader(), EntityRequest.class);
+        if (body == null || body.entityId == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"error\": \"Missing entityId\"}");
+            return null;
+        }
+        if (body.entityType != null && !expectedType.equalsIgnoreCase(body.entityType)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"error\": \"Unsupported entityType\"}");
+            return null;
+        }
+        return body;
+    }
+
+    /**
+     * Answer {"field": true} after a like/follow, or 404 if its target does not exist
+     */
+    private void writeState(boolean applied, String field, String notFoundMessage, HttpServletResponse response)
+            throws IOException {
+        if (applied) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.getWriter().write("{\"" + field + "\": true}");
+        } else {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("{\"error\": \"" + notFoundMessage + "\"}");
+        }
+    }
+
+    /**
+     * Write ids as [{"entityType": ..., "entityId": ...}], the shape the frontend reads
+     */
+    private void writeEntities(String entityType, long[] ids, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        JsonWriter writer = new JsonWriter(response.getWriter());
+        writer.beginArray();
+        for (long id : ids) {
+            writer.beginObject();
+            writer.name("entityType").value(entityType);
+            writer.name("entityId").value(id);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    private static List<Long> parseIds(String ids) {
+        List<Long> parsed = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            if (!id.trim().isEmpty()) {
+                parsed.add(Long.parseLong(id.trim()));
+            }
+        }
+        return parsed;
+    }
+
+    private void databaseError(SQLException e, HttpServletResponse response) throws IOException {
+        logger.error("Database error", e);
+        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        response.getWriter().write("{\"error\": \"Database error occurred\"}");
+    }
+
+    /**
+     * Queue a play for asynchronous persistence and return immediately
+     */
+    private void recordListen(Long userId, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        ListenRequest body = gson.fromJson(request.getReader(), ListenRequest.class);
+        if (body == null || body.songId == null || body.durationPlayed == null || body.durationPlayed < 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"error\": \"Missing songId or durationPlayed\"}");
+            return;
+        }
+        Double completion = body.completionPercentage;
+        if (completion != null && !(completion >= 0 && completion <= 100)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"error\": \"completionPercentage must be between 0 and 100\"}");
+            return;
+        }
+        if (!songExists(body.songId)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("{\"error\": \"Song not found\"}");
+            return;
+        }
+
+        ListeningEvent event = new ListeningEvent(userId, body.songId, new Timestamp(System.currentTimeMillis()),
+            body.durationPlayed, body.completionPercentage);
+
+        if (!ingestor.offer(event)) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            response.getWriter().write("{\"error\": \"Too many requests, try again shortly\"}");
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.getWriter().write("{\"message\": \"Play recorded\"}");
+    }
+
+    /**
+     * Check the song before queueing the play, so unknown ids never reach
+     * the batch insert. Played songs are almost always in the song cache;
+     * if the lookup itself fails the play is accepted and the writer
+     * dead-letters it should the insert refuse it.
+     */
+    private boolean songExists(Long songId) {
+        if (songId <= 0) {
+            return false;
+        }
+        try {
+            return songDAO.findById(songId) != null;
+        } catch (SQLException e) {
+            logger.warn("Could not check song {} for a play, accepting it", songId, e);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package com.algorythm.servlet;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.filter.GzipEtagFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs database-bound servlet work off the container threads.
+ *
+ * Requests are put in async mode and handed to a fixed pool sized to the
+ * connection pool (async.threads, default hikari.maximumPoolSize) with a
+ * bounded queue (async.queueCapacity). When the queue is full the request
+ * is answered 503 immediately instead of tying up a Tomcat thread, so
+ * cheap endpoints that stay on the container thread keep responding while
+ * the database is slow.
+ *
+ * Each endpoint has a deadline (async.timeoutMs.{endpoint}, falling back to
+ * async.timeoutMs). A request still queued at its deadline is dropped. A
+ * running GET is interrupted and answered 503, and its own response is
+ * discarded; handlers write to a BufferedResponse so the two can never
+ * interleave on the wire. Any other running request (a registration, a
+ * login, a write) is left to finish, since the client could not tell
+ * from a 503 whether its change was made.
+ *
+ * With async.virtualThreads on a Java 21 runtime every request gets its own
+ * virtual thread instead, and a semaphore with the same number of permits
+ * stands in for the fixed pool as the bulkhead in front of the connection
+ * pool. Requests waiting for a permit are parked virtual threads rather
+ * than queued Runnables, so the admission limit (permits plus
+ * async.queueCapacity) and deadlines behave as in pool mode. On older
+ * runtimes the setting is ignored with a warning. Connector/J 8.x holds a
+ * monitor around its socket reads, which pins a virtual thread to its
+ * carrier for the whole query (monitors stop pinning in JDK 24, and the
+ * driver moved to locks in 9.0). At most async.threads requests are past
+ * the semaphore at once, so startup warns when that exceeds the carrier
+ * count (jdk.virtualThreadScheduler.parallelism, default the core count),
+ * since pinned queries could then stall every other virtual thread.
+ *
+ * Login and registration run on a second, separate instance from
+ * getAuthInstance(): password hashing is CPU-bound, so it gets its own
+ * small pool (auth.hash.threads, default half the cores) and queue
+ * (auth.hash.queueCapacity). A login storm then queues or is shed there
+ * while the other cores stay free for everything else. That instance also
+ * caps requests per client address (auth.hash.maxPerClient), answering 429
+ * beyond it, so one client cannot fill the queue.
+ */
+final class AsyncRequestExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRequestExecutor.class);
+    private static volatile AsyncRequestExecutor instance;
+    private static volatile AsyncRequestExecutor authInstance;
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int TIMED_OUT = 3;
+
+    // Not defined in the Servlet 4.0 HttpServletResponse
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Servlet logic run on a worker thread
+     */
+    @FunctionalInterface
+    interface Handler {
+        void handle(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException;
+    }
+
+    private final String name;
+    private final boolean enabled;
+    // Deadline in ms by endpoint; 0 = none
+    private final ToLongFunction<String> timeouts;
+    private final ExecutorService executor;
+    // Exactly one of pool / bulkhead is set, depending on the thread mode
+    private final ThreadPoolExecutor pool;
+    private final Semaphore bulkhead;
+    private final int permits;
+    private final int maxAdmitted;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final ScheduledExecutorService timer;
+    // Admitted requests per client address; 0 = no limit
+    private final int maxPerClient;
+    private final ConcurrentHashMap<String, AtomicInteger> perClient = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param perTaskExecutor a thread-per-task executor (virtual threads)
+     *                        behind a semaphore of threads permits, or null
+     *                        for a fixed pool of threads
+     */
+    AsyncRequestExecutor(String name, boolean enabled, int threads, int queueCapacity,
+                         ToLongFunction<String> timeouts, ExecutorService perTaskExecutor, int maxPerClient) {
+        this.name = name;
+        this.enabled = enabled;
+        this.timeouts = timeouts;
+        this.permits = threads;
+        this.maxAdmitted = threads + queueCapacity;
+        this.maxPerClient = maxPerClient;
+        if (perTaskExecutor != null) {
+            this.executor = perTaskExecutor;
+            this.pool = null;
+            this.bulkhead = new Semaphore(threads, true);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, name + "-worker-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+            this.executor = pool;
+            this.bulkhead = null;
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-deadlines");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Get the shared executor, configured from db.properties on first use
+     */
+    static AsyncRequestExecutor getInstance() {
+        if (instance == null) {
+            synchronized (AsyncRequestExecutor.class) {
+                if (instance == null) {
+                    int threads = DatabaseConfig.getIntProperty("async.threads", 0);
+                    if (threads <= 0) {
+                        threads = DatabaseConfig.getIntProperty("hikari.maximumPoolSize", 10);
+                    }
+                    ExecutorService virtual = null;
+                    if (DatabaseConfig.getBooleanProperty("async.virtualThreads", false)) {
+                        virtual = newVirtualThreadExecutor("request-vworker-");
+                        if (virtual == null) {
+                            logger.warn("async.virtualThreads needs a Java 21 runtime (running {}), using platform threads",
+                                System.getProperty("java.version"));
+                        } else {
+                            warnIfPinningCanStall(threads);
+                        }
+                    }
+                    AsyncRequestExecutor requestExecutor = new AsyncRequestExecutor("request",
+                        DatabaseConfig.getBooleanProperty("async.enabled", true),
+                        threads,
+                        DatabaseConfig.getIntProperty("async.queueCapacity", 100),
+                        endpointTimeouts(),
+                        virtual,
+                        0);
+                    DatabaseConfig.registerShutdownHook(requestExecutor::shutdown);
+                    instance = requestExecutor;
+                    logger.info("Async request executor started (enabled={}, {}={})",
+                        requestExecutor.enabled, requestExecutor.isVirtual() ? "permits" : "threads", threads);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the executor for password hashing endpoints, configured from
+     * db.properties on first use
+     */
+    static AsyncRequestExecutor getAuthInstance() {
+        if (authInstance == null) {
+            synchronized (AsyncRequestExecutor.class) {
+                if (authInstance == null) {
+                    int threads = DatabaseConfig.getIntProperty("auth.hash.threads", 0);
+                    if (threads <= 0) {
+                        threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+                    }
+                    // Hashing is CPU-bound, so virtual threads would not add capacity
+                    AsyncRequestExecutor requestExecutor = new AsyncRequestExecutor("auth",
+                        DatabaseConfig.getBooleanProperty("async.enabled", true),
+                        threads,
+                        DatabaseConfig.getIntProperty("auth.hash.queueCapacity", 32),
+                        endpointTimeouts(),
+                        null,
+                        DatabaseConfig.getIntProperty("auth.hash.maxPerClient", 2));
+                    DatabaseConfig.registerShutdownHook(requestExecutor::shutdown);
+                    authInstance = requestExecutor;
+                    logger.info("Auth request executor started (enabled={}, threads={}, maxPerClient={})",
+                        requestExecutor.enabled, threads, requestExecutor.maxPerClient);
+                }
+            }
+        }
+        return authInstance;
+    }
+
+    /**
+     * async.timeoutMs.{endpoint}, falling back to async.timeoutMs
+     */
+    private static ToLongFunction<String> endpointTimeouts() {
+        long defaultTimeoutMs = DatabaseConfig.getLongProperty("async.timeoutMs", 5000);
+        return endpoint -> DatabaseConfig.getLongProperty("async.timeoutMs." + endpoint, defaultTimeoutMs);
+    }
+
+    /**
+     * Warn when more queries can run at once than there are carrier threads
+     * for them to pin
+     */
+    private static void warnIfPinningCanStall(int permits) {
+        int carriers = Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+            Runtime.getRuntime().availableProcessors());
+        if (permits > carriers) {
+            logger.warn("{} concurrent queries can pin all {} virtual thread carriers; "
+                + "set -Djdk.virtualThreadScheduler.parallelism={} or lower async.threads",
+                permits, carriers, permits);
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    boolean isVirtual() {
+        return bulkhead != null;
+    }
+
+    /**
+     * Thread-per-task executor on virtual threads, or null when the runtime
+     * has none. Looked up reflectively so the webapp still builds for Java 11.
+     */
+    static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // Preview API on JDK 19/20 without --enable-preview
+            logger.debug("Virtual threads unavailable", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Run handler on a worker with a buffered response and the endpoint's
+     * deadline, or inline if async mode is off
+     */
+    void execute(String endpoint, HttpServletRequest request, HttpServletResponse response, Handler handler)
+            throws ServletException, IOException {
+        submit(endpoint, request, response, handler, true);
+    }
+
+    /**
+     * Run handler on a worker writing straight to the response, for large
+     * streamed bodies. Streams have no deadline: once bytes are on the wire
+     * there is no clean way to replace them with an error.
+     */
+    void stream(String endpoint, HttpServletRequest request, HttpServletResponse response, Handler handler)
+            throws ServletException, IOException {
+        submit(endpoint, request, response, handler, false);
+    }
+
+    private void submit(String endpoint, HttpServletRequest request, HttpServletResponse response,
+                        Handler handler, boolean buffered) throws ServletException, IOException {
+        if (!enabled || !request.isAsyncSupported()) {
+            handler.handle(request, response);
+            return;
+        }
+
+        String client = maxPerClient > 0 ? request.getRemoteAddr() : null;
+        if (client != null && !admitClient(client)) {
+            throttled.increment();
+            logger.warn("Too many concurrent {} requests from {}", endpoint, client);
+            response.setHeader("Retry-After", "1");
+            writeError(response, SC_TOO_MANY_REQUESTS, "Too many requests, try again shortly");
+            return;
+        }
+
+        AsyncContext context = request.startAsync();
+        // Deadlines are enforced here; the container must not complete the
+        // request behind a worker's back
+        context.setTimeout(0);
+        Task task = new Task(endpoint, context, request, response, handler, buffered, client);
+        try {
+            dispatch(task);
+        } catch (RejectedExecutionException e) {
+            task.releaseClient();
+            rejected.increment();
+            logger.warn("{} queue full, shedding {}", name, endpoint);
+            writeUnavailable(response, "Server busy, please retry");
+            complete(context, response);
+            return;
+        }
+
+        long timeoutMs = buffered ? timeouts.applyAsLong(endpoint) : 0;
+        if (timeoutMs > 0) {
+            task.deadline = timer.schedule(task::expire, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean admitClient(String client) {
+        AtomicInteger count = perClient.computeIfAbsent(client, c -> new AtomicInteger());
+        if (count.incrementAndGet() > maxPerClient) {
+            releaseClient(client);
+            return false;
+        }
+        return true;
+    }
+
+    private void releaseClient(String client) {
+        // Drop the entry once idle so the map only holds active clients
+        perClient.computeIfPresent(client, (c, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    private void dispatch(Task task) {
+        if (bulkhead == null) {
+            pool.execute(task);
+            return;
+        }
+        if (admitted.incrementAndGet() > maxAdmitted) {
+            admitted.decrementAndGet();
+            throw new RejectedExecutionException("Admission limit reached");
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            admitted.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final String endpoint;
+        private final AsyncContext context;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final Handler handler;
+        private final boolean buffered;
+        // Safe to abandon once running: the request changes nothing
+        private final boolean readOnly;
+        private final String client;
+        private final AtomicBoolean clientReleased = new AtomicBoolean();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private Thread worker;
+        volatile ScheduledFuture<?> deadline;
+
+        Task(String endpoint, AsyncContext context, HttpServletRequest request, HttpServletResponse response,
+             Handler handler, boolean buffered, String client) {
+            this.endpoint = endpoint;
+            this.context = context;
+            this.request = request;
+            this.response = response;
+            this.handler = handler;
+            this.buffered = buffered;
+            this.readOnly = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+            this.client = client;
+        }
+
+        /**
+         * Free the client's slot once, whichever way the task ends
+         */
+        void releaseClient() {
+            if (client != null && clientReleased.compareAndSet(false, true)) {
+                AsyncRequestExecutor.this.releaseClient(client);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (bulkhead == null) {
+                process();
+                return;
+            }
+            try {
+                synchronized (this) {
+                    worker = Thread.currentThread();
+                }
+                try {
+                    bulkhead.acquire();
+                } catch (InterruptedException e) {
+                    // Expired while waiting for a permit and already answered
+                    return;
+                }
+                try {
+                    process();
+                } finally {
+                    bulkhead.release();
+                }
+            } finally {
+                admitted.decrementAndGet();
+            }
+        }
+
+        private void process() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                // Expired in the queue and already answered
+                return;
+            }
+            synchronized (this) {
+                worker = Thread.currentThread();
+            }
+
+            BufferedResponse target = buffered ? new BufferedResponse(response) : null;
+            Exception failure = null;
+            boolean finished;
+            try {
+                handler.handle(request, target != null ? target : response);
+            } catch (ServletException | IOException | RuntimeException e) {
+                failure = e;
+            } finally {
+                synchronized (this) {
+                    worker = null;
+                    // Clear an interrupt from expire() so it can't leak into the next task
+                    Thread.interrupted();
+                    // Taken under the lock so a timeout response is fully
+                    // written before this thread completes the request
+                    finished = state.compareAndSet(RUNNING, DONE);
+                }
+            }
+
+            try {
+                if (finished) {
+                    ScheduledFuture<?> d = deadline;
+                    if (d != null) {
+                        d.cancel(false);
+                    }
+                    if (failure != null) {
+                        logger.error("Error handling {}", endpoint, failure);
+                        if (!response.isCommitted()) {
+                            response.reset();
+                            writeError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal server error");
+                        }
+                    } else if (target != null) {
+                        target.commitTo(response);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Could not write response for {}", endpoint, e);
+            } finally {
+                releaseClient();
+                completed.increment();
+                complete(context, response);
+            }
+        }
+
+        void expire() {
+            try {
+                if (state.compareAndSet(QUEUED, TIMED_OUT)) {
+                    timedOut.increment();
+                    releaseClient();
+                    if (pool != null) {
+                        pool.remove(this);
+                    } else {
+                        interruptWorker();
+                    }
+                    writeUnavailable(response, "Request timed out");
+                    complete(context, response);
+                } else if (readOnly) {
+                    synchronized (this) {
+                        if (!state.compareAndSet(RUNNING, TIMED_OUT)) {
+                            return;
+                        }
+                        timedOut.increment();
+                        // The worker still owns the request and completes it when it returns
+                        writeUnavailable(response, "Request timed out");
+                        response.flushBuffer();
+                        interruptWorker();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Could not write timeout response for {}", endpoint, e);
+            }
+        }
+
+        private synchronized void interruptWorker() {
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Complete an async request, first sending out anything a response
+     * filter is still holding back
+     */
+    private static void complete(AsyncContext context, HttpServletResponse response) {
+        try {
+            GzipEtagFilter.finish(response);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not finish response", e);
+        } finally {
+            context.complete();
+        }
+    }
+
+    private static void writeUnavailable(HttpServletResponse response, String message) throws IOException {
+        response.setHeader("Retry-After", "1");
+        writeError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, message);
+    }
+
+    private static void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        String body = JsonSupport.error(message);
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(body.getBytes(StandardCharsets.UTF_8).length);
+        response.getWriter().write(body);
+    }
+
+    /**
+     * Stop accepting work and give running requests a moment to finish
+     */
+    void shutdown() {
+        timer.shutdownNow();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Metrics
+
+    int getQueueDepth() {
+        return pool != null ? pool.getQueue().size() : Math.max(0, admitted.get() - getActiveCount());
+    }
+
+    int getActiveCount() {
+        return pool != null ? pool.getActiveCount() : permits - bulkhead.availablePermits();
+    }
+
+    long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Requests answered 429 for exceeding the per-client limit
+     */
+    long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    long getCompletedCount() {
+        return completed.sum();
+    }
+}
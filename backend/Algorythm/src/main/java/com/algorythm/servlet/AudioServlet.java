@@ -0,0 +1,354 @@
+package com.algorythm.servlet;
+
+import com.algorythm.audio.AudioStore;
+import com.algorythm.audio.AudioStore.AudioFile;
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.dao.SongDAO;
+import com.algorythm.filter.AuthFilter;
+import com.algorythm.model.Song;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+
+/**
+ * Streams song audio with HTTP Range support.
+ *
+ * GET/HEAD /audio/{songId}. Premium-only songs require a Premium, Family or
+ * Student subscription on the session or token. Ranges inside the cached intro are
+ * written straight from the heap; other ranges go out through Tomcat's
+ * sendfile when the connector supports it (FileChannel.transferTo, no copy
+ * through the JVM) and otherwise through non-blocking async writes from
+ * memory-mapped segments, so slow clients never hold a request thread.
+ */
+@WebServlet(urlPatterns = {"/audio/*"}, asyncSupported = true)
+public class AudioServlet extends HttpServlet {
+    private static final Logger logger = LoggerFactory.getLogger(AudioServlet.class);
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private SongDAO songDAO;
+    private AudioStore audioStore;
+    private boolean sendfileEnabled;
+    private long asyncTimeoutMs;
+
+    /**
+     * A resolved request: the file plus the byte range [start, end) to send
+     */
+    private static final class Transfer {
+        final AudioFile file;
+        final long start;
+        final long end;
+
+        Transfer(AudioFile file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        songDAO = new SongDAO();
+        audioStore = AudioStore.getInstance();
+        sendfileEnabled = DatabaseConfig.getBooleanProperty("audio.sendfile", true);
+        asyncTimeoutMs = DatabaseConfig.getLongProperty("audio.asyncTimeoutMs", 600000);
+        logger.info("AudioServlet initialized");
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        prepare(request, response);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        Transfer transfer = prepare(request, response);
+        if (transfer == null || transfer.start == transfer.end) {
+            return;
+        }
+
+        byte[] intro = audioStore.startsInIntro(transfer.start) ? audioStore.intro(transfer.file) : null;
+        if (intro != null && transfer.end <= intro.length) {
+            startAsync(request, response, transfer, intro);
+        } else if (sendfileEnabled && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, transfer.file.getPath().toString());
+            request.setAttribute(SENDFILE_START, transfer.start);
+            request.setAttribute(SENDFILE_END, transfer.end);
+        } else {
+            startAsync(request, response, transfer, intro);
+        }
+    }
+
+    /**
+     * Check access, resolve the file and range, and write the status and
+     * headers
+     *
+     * @return the transfer, or null if an error response was written
+     */
+    private Transfer prepare(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Long songId = parseSongId(request.getPathInfo());
+        if (songId == null) {
+            error(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid song ID");
+            return null;
+        }
+
+        Song song;
+        try {
+            song = songDAO.findById(songId);
+        } catch (SQLException e) {
+            logger.error("Database error", e);
+            error(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error occurred");
+            return null;
+        }
+        if (song == null) {
+            error(response, HttpServletResponse.SC_NOT_FOUND, "Song not found");
+            return null;
+        }
+
+        if (song.isPremiumOnly()) {
+            if (AuthFilter.getUserId(request) == null) {
+                error(response, HttpServletResponse.SC_UNAUTHORIZED, "Not authenticated");
+                return null;
+            }
+            if (!isPaidSubscription(AuthFilter.getSubscriptionType(request))) {
+                error(response, HttpServletResponse.SC_FORBIDDEN, "Premium subscription required");
+                return null;
+            }
+        }
+
+        AudioFile file = audioStore.resolve(song.getAudioFileUrl());
+        if (file == null) {
+            error(response, HttpServletResponse.SC_NOT_FOUND, "Audio not available");
+            return null;
+        }
+
+        long length = file.getLength();
+        long start = 0;
+        long end = length;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(file.getETag()))) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == UNSATISFIABLE) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                error(response, HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, "Range not satisfiable");
+                return null;
+            }
+            if (parsed != null) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+
+        response.setContentType(file.getContentType());
+        response.setContentLengthLong(end - start);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", file.getETag());
+        response.setDateHeader("Last-Modified", file.getLastModified());
+        response.setHeader("Cache-Control", song.isPremiumOnly() ? "private, max-age=86400" : "public, max-age=86400");
+        return new Transfer(file, start, end);
+    }
+
+    private void startAsync(HttpServletRequest request, HttpServletResponse response, Transfer transfer, byte[] intro)
+            throws IOException {
+        AsyncContext context = request.startAsync();
+        context.setTimeout(asyncTimeoutMs);
+        ServletOutputStream out = response.getOutputStream();
+        RangeWriter writer = new RangeWriter(context, out, transfer, intro);
+        context.addListener(writer);
+        out.setWriteListener(writer);
+    }
+
+    /**
+     * Writes [start, end) whenever the container reports the socket
+     * writable, taking bytes from the intro while inside it and from mapped
+     * file segments after that
+     */
+    private final class RangeWriter implements WriteListener, AsyncListener {
+        private final AsyncContext context;
+        private final ServletOutputStream out;
+        private final Transfer transfer;
+        private final byte[] intro;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private FileChannel channel;
+        private ByteBuffer segment;
+        private long position;
+        private boolean completed;
+
+        RangeWriter(AsyncContext context, ServletOutputStream out, Transfer transfer, byte[] intro) {
+            this.context = context;
+            this.out = out;
+            this.transfer = transfer;
+            this.intro = intro;
+            this.position = transfer.start;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (out.isReady()) {
+                if (segment == null || !segment.hasRemaining()) {
+                    if (position >= transfer.end) {
+                        finish();
+                        return;
+                    }
+                    segment = nextSegment();
+                }
+                int n = Math.min(CHUNK_SIZE, segment.remaining());
+                if (segment.hasArray()) {
+                    out.write(segment.array(), segment.arrayOffset() + segment.position(), n);
+                    segment.position(segment.position() + n);
+                } else {
+                    segment.get(chunk, 0, n);
+                    out.write(chunk, 0, n);
+                }
+                position += n;
+            }
+        }
+
+        private ByteBuffer nextSegment() throws IOException {
+            if (intro != null && position < intro.length) {
+                int from = (int) position;
+                return ByteBuffer.wrap(intro, from, (int) Math.min(intro.length, transfer.end) - from);
+            }
+            if (channel == null) {
+                channel = FileChannel.open(transfer.file.getPath(), StandardOpenOption.READ);
+            }
+            return audioStore.map(channel, position, transfer.end);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // Usually the client went away mid-track
+            logger.debug("Audio stream for {} aborted at byte {}", transfer.file.getPath(), position, t);
+            finish();
+        }
+
+        private void finish() {
+            closeChannel();
+            if (!completed) {
+                completed = true;
+                context.complete();
+            }
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.error("Error closing audio file", e);
+                }
+                channel = null;
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closeChannel();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            logger.debug("Audio stream for {} timed out at byte {}", transfer.file.getPath(), position);
+            finish();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            closeChannel();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * Parse a single "bytes=" range into [start, end)
+     *
+     * @return the range, UNSATISFIABLE, or null to ignore the header and send
+     *         the whole file (malformed or multiple ranges)
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the final N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[] { Math.max(0, length - suffix), length };
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length : Math.min(Long.parseLong(last) + 1, length);
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            if (end <= start) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isPaidSubscription(String subscriptionType) {
+        return "Premium".equals(subscriptionType) || "Family".equals(subscriptionType)
+            || "Student".equals(subscriptionType);
+    }
+
+    private static Long parseSongId(String pathInfo) {
+        if (pathInfo == null || pathInfo.length() < 2) {
+            return null;
+        }
+        try {
+            return Long.parseLong(pathInfo.substring(1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void error(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\": \"" + message + "\"}");
+    }
+}
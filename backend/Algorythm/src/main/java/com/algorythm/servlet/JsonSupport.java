@@ -0,0 +1,81 @@
+package com.algorythm.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+
+/**
+ * Shared Gson setup for the servlets.
+ *
+ * Gson has no built-in adapter for java.time and falls back to reflecting
+ * into LocalDate's private fields, which JDK 17+ refuses unless java.time is
+ * opened to the webapp. The adapter here writes the same
+ * {"year":..,"month":..,"day":..} object the reflective path produced, so
+ * the JSON seen by clients does not change between JDK versions.
+ */
+final class JsonSupport {
+
+    private JsonSupport() {
+    }
+
+    private static final Gson ERROR_GSON = new Gson();
+
+    /**
+     * {"error": message}, escaped so exception text cannot break the JSON
+     */
+    static String error(String message) {
+        return ERROR_GSON.toJson(Collections.singletonMap("error", message));
+    }
+
+    static Gson newGson() {
+        return new GsonBuilder()
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter().nullSafe())
+            .create();
+    }
+
+    private static final class LocalDateAdapter extends TypeAdapter<LocalDate> {
+        @Override
+        public void write(JsonWriter out, LocalDate date) throws IOException {
+            out.beginObject();
+            out.name("year").value(date.getYear());
+            out.name("month").value(date.getMonthValue());
+            out.name("day").value(date.getDayOfMonth());
+            out.endObject();
+        }
+
+        @Override
+        public LocalDate read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.STRING) {
+                return LocalDate.parse(in.nextString());
+            }
+            int year = 0;
+            int month = 1;
+            int day = 1;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "year":
+                        year = in.nextInt();
+                        break;
+                    case "month":
+                        month = in.nextInt();
+                        break;
+                    case "day":
+                        day = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return LocalDate.of(year, month, day);
+        }
+    }
+}
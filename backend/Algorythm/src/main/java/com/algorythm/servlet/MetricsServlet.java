@@ -0,0 +1,393 @@
+package com.algorythm.servlet;
+
+import com.algorythm.auth.TokenService;
+import com.algorythm.cache.SegmentedLruCache;
+import com.algorythm.cache.SingleFlight;
+import com.algorythm.cache.SongCache;
+import com.algorythm.cache.UserProfileCache;
+import com.algorythm.config.AdaptivePoolSizer;
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.config.ReadReplicas;
+import com.algorythm.dao.SongCounterBuffer;
+import com.algorythm.filter.GzipEtagFilter;
+import com.algorythm.metrics.LatencyStats;
+import com.algorythm.metrics.QueryMetrics;
+import com.algorythm.service.ListeningIngestor;
+import com.algorythm.service.PasswordHasher;
+import com.algorythm.stats.DailyStatsAggregator;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serves query, pool, cache and write-behind metrics in Prometheus text format.
+ * Only loopback clients are answered unless metrics.allowRemote=true.
+ */
+@WebServlet(urlPatterns = {"/metrics"})
+public class MetricsServlet extends HttpServlet {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsServlet.class);
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private boolean allowRemote;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        allowRemote = DatabaseConfig.getBooleanProperty("metrics.allowRemote", false);
+        logger.info("MetricsServlet initialized (allowRemote={})", allowRemote);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!allowRemote && !isLoopback(request.getRemoteAddr())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+
+        PrintWriter out = response.getWriter();
+        writeQueryMetrics(out);
+        writePoolMetrics(out);
+        writeReplicaMetrics(out);
+        writePoolSizerMetrics(out);
+        writeCacheMetrics(out);
+        writeCounterBufferMetrics(out);
+        writeIngestMetrics(out);
+        writeRequestExecutorMetrics(out);
+        writeCoalescingMetrics(out);
+        writeAuthMetrics(out);
+        writeAuthExecutorMetrics(out);
+        writeHttpMetrics(out);
+        out.flush();
+    }
+
+    private void writeQueryMetrics(PrintWriter out) {
+        Map<String, LatencyStats> statements = QueryMetrics.getStatementStats();
+
+        header(out, "algorythm_db_query_seconds", "summary", "JDBC statement execution time by DAO method");
+        for (Map.Entry<String, LatencyStats> e : statements.entrySet()) {
+            writeSummary(out, "algorythm_db_query_seconds", "statement=\"" + escape(e.getKey()) + "\"", e.getValue());
+        }
+        header(out, "algorythm_db_query_rows_total", "counter", "Rows returned or affected by DAO method");
+        for (Map.Entry<String, LatencyStats> e : statements.entrySet()) {
+            sample(out, "algorythm_db_query_rows_total", "statement=\"" + escape(e.getKey()) + "\"", e.getValue().getRowCount());
+        }
+        header(out, "algorythm_db_query_errors_total", "counter", "Statement executions that threw by DAO method");
+        for (Map.Entry<String, LatencyStats> e : statements.entrySet()) {
+            sample(out, "algorythm_db_query_errors_total", "statement=\"" + escape(e.getKey()) + "\"", e.getValue().getErrorCount());
+        }
+        header(out, "algorythm_db_slow_queries_total", "counter", "Statement executions over metrics.slowQueryMs");
+        sample(out, "algorythm_db_slow_queries_total", null, QueryMetrics.getSlowQueryCount());
+    }
+
+    private void writePoolMetrics(PrintWriter out) {
+        header(out, "algorythm_db_connection_acquire_seconds", "summary", "Time spent waiting for a pooled connection");
+        writeSummary(out, "algorythm_db_connection_acquire_seconds", null, QueryMetrics.getConnectionAcquireStats());
+        header(out, "algorythm_db_connection_usage_seconds", "summary", "Time a connection was held before being returned");
+        writeSummary(out, "algorythm_db_connection_usage_seconds", null, QueryMetrics.getConnectionUsageStats());
+        header(out, "algorythm_db_connection_timeouts_total", "counter", "Connection requests that timed out");
+        sample(out, "algorythm_db_connection_timeouts_total", null, QueryMetrics.getConnectionTimeoutCount());
+
+        HikariDataSource dataSource = DatabaseConfig.getDataSource();
+        HikariPoolMXBean pool = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            return;
+        }
+        header(out, "algorythm_db_pool_connections", "gauge", "Pool connections by state");
+        sample(out, "algorythm_db_pool_connections", "state=\"active\"", pool.getActiveConnections());
+        sample(out, "algorythm_db_pool_connections", "state=\"idle\"", pool.getIdleConnections());
+        sample(out, "algorythm_db_pool_connections", "state=\"total\"", pool.getTotalConnections());
+        header(out, "algorythm_db_pool_pending_threads", "gauge", "Threads waiting for a connection");
+        sample(out, "algorythm_db_pool_pending_threads", null, pool.getThreadsAwaitingConnection());
+        header(out, "algorythm_db_pool_max_connections", "gauge", "Configured maximum pool size");
+        sample(out, "algorythm_db_pool_max_connections", null, dataSource.getMaximumPoolSize());
+    }
+
+    private void writeReplicaMetrics(PrintWriter out) {
+        ReadReplicas replicas = DatabaseConfig.getReadReplicas();
+        if (replicas == null) {
+            return;
+        }
+        header(out, "algorythm_db_replica_healthy", "gauge", "1 when the replica is in read rotation");
+        for (ReadReplicas.Replica replica : replicas.getReplicas()) {
+            sample(out, "algorythm_db_replica_healthy", replicaLabel(replica), replica.isHealthy() ? 1 : 0);
+        }
+        header(out, "algorythm_db_replica_lag_seconds", "gauge", "Last measured replication lag, -1 if unknown");
+        for (ReadReplicas.Replica replica : replicas.getReplicas()) {
+            sample(out, "algorythm_db_replica_lag_seconds", replicaLabel(replica), replica.getLagSeconds());
+        }
+        header(out, "algorythm_db_replica_reads_total", "counter", "Read connections handed out by the replica");
+        for (ReadReplicas.Replica replica : replicas.getReplicas()) {
+            sample(out, "algorythm_db_replica_reads_total", replicaLabel(replica), replica.getReadCount());
+        }
+        header(out, "algorythm_db_replica_failures_total", "counter", "Read connections the replica failed to hand out");
+        for (ReadReplicas.Replica replica : replicas.getReplicas()) {
+            sample(out, "algorythm_db_replica_failures_total", replicaLabel(replica), replica.getFailureCount());
+        }
+        header(out, "algorythm_db_replica_connections", "gauge", "Replica pool connections by state");
+        for (ReadReplicas.Replica replica : replicas.getReplicas()) {
+            HikariPoolMXBean pool = replica.getDataSource().getHikariPoolMXBean();
+            if (pool != null) {
+                String labels = replicaLabel(replica);
+                sample(out, "algorythm_db_replica_connections", labels + ",state=\"active\"", pool.getActiveConnections());
+                sample(out, "algorythm_db_replica_connections", labels + ",state=\"idle\"", pool.getIdleConnections());
+                sample(out, "algorythm_db_replica_connections", labels + ",state=\"total\"", pool.getTotalConnections());
+            }
+        }
+        header(out, "algorythm_db_replica_fallbacks_total", "counter", "Reads sent to the primary because no replica was usable");
+        sample(out, "algorythm_db_replica_fallbacks_total", null, replicas.getFallbackCount());
+    }
+
+    private static String replicaLabel(ReadReplicas.Replica replica) {
+        return "replica=\"" + replica.getIndex() + "\"";
+    }
+
+    private void writePoolSizerMetrics(PrintWriter out) {
+        AdaptivePoolSizer sizer = DatabaseConfig.getPoolSizer();
+        if (sizer == null) {
+            return;
+        }
+        header(out, "algorythm_db_pool_size_limit", "gauge", "Current maximum pool size set by the adaptive sizer");
+        for (AdaptivePoolSizer.Target target : sizer.getTargets()) {
+            sample(out, "algorythm_db_pool_size_limit", "pool=\"" + escape(target.getName()) + "\"", target.getMaximumPoolSize());
+        }
+        header(out, "algorythm_db_pool_resizes_total", "counter", "Adaptive pool resizes by direction");
+        for (AdaptivePoolSizer.Target target : sizer.getTargets()) {
+            String pool = "pool=\"" + escape(target.getName()) + "\"";
+            sample(out, "algorythm_db_pool_resizes_total", pool + ",direction=\"grow\"", target.getGrowCount());
+            sample(out, "algorythm_db_pool_resizes_total", pool + ",direction=\"shrink\"", target.getShrinkCount());
+        }
+    }
+
+    private void writeCacheMetrics(PrintWriter out) {
+        Map<String, SegmentedLruCache<Long, ?>> caches = new LinkedHashMap<>();
+        if (SongCache.isEnabled()) {
+            caches.put("song", SongCache.get());
+        }
+        if (UserProfileCache.isEnabled()) {
+            caches.put("profile", UserProfileCache.get());
+        }
+        if (caches.isEmpty()) {
+            return;
+        }
+        header(out, "algorythm_cache_requests_total", "counter", "Cache lookups by cache and result");
+        for (Map.Entry<String, SegmentedLruCache<Long, ?>> e : caches.entrySet()) {
+            String label = "cache=\"" + e.getKey() + "\"";
+            sample(out, "algorythm_cache_requests_total", label + ",result=\"hit\"", e.getValue().getHitCount());
+            sample(out, "algorythm_cache_requests_total", label + ",result=\"miss\"", e.getValue().getMissCount());
+        }
+        header(out, "algorythm_cache_evictions_total", "counter", "Cache entries evicted for size");
+        for (Map.Entry<String, SegmentedLruCache<Long, ?>> e : caches.entrySet()) {
+            sample(out, "algorythm_cache_evictions_total", "cache=\"" + e.getKey() + "\"", e.getValue().getEvictionCount());
+        }
+        header(out, "algorythm_cache_expirations_total", "counter", "Cache entries dropped after their TTL");
+        for (Map.Entry<String, SegmentedLruCache<Long, ?>> e : caches.entrySet()) {
+            sample(out, "algorythm_cache_expirations_total", "cache=\"" + e.getKey() + "\"", e.getValue().getExpirationCount());
+        }
+        header(out, "algorythm_cache_size", "gauge", "Cache entries");
+        for (Map.Entry<String, SegmentedLruCache<Long, ?>> e : caches.entrySet()) {
+            sample(out, "algorythm_cache_size", "cache=\"" + e.getKey() + "\"", e.getValue().size());
+        }
+    }
+
+    private void writeCounterBufferMetrics(PrintWriter out) {
+        SongCounterBuffer buffer = SongCounterBuffer.getStartedInstance();
+        if (buffer == null) {
+            return;
+        }
+        header(out, "algorythm_counter_pending_deltas", "gauge", "Song play and like deltas not yet flushed");
+        sample(out, "algorythm_counter_pending_deltas", "counter=\"plays\"", buffer.getPendingPlayDeltas());
+        sample(out, "algorythm_counter_pending_deltas", "counter=\"likes\"", buffer.getPendingLikeDeltas());
+        header(out, "algorythm_counter_pending_songs", "gauge", "Songs with deltas in the current buffer");
+        sample(out, "algorythm_counter_pending_songs", null, buffer.getPendingSongCount());
+        header(out, "algorythm_counter_flushes_total", "counter", "Counter buffer flushes by outcome");
+        sample(out, "algorythm_counter_flushes_total", "outcome=\"ok\"", buffer.getFlushCount());
+        sample(out, "algorythm_counter_flushes_total", "outcome=\"failed\"", buffer.getFailedFlushCount());
+        header(out, "algorythm_counter_rows_flushed_total", "counter", "Song rows updated by counter flushes");
+        sample(out, "algorythm_counter_rows_flushed_total", null, buffer.getRowsFlushed());
+        header(out, "algorythm_counter_dropped_deltas_total", "counter", "Deltas given up on after counters.maxRetryMs of failed flushes");
+        sample(out, "algorythm_counter_dropped_deltas_total", null, buffer.getDroppedDeltas());
+    }
+
+    private void writeIngestMetrics(PrintWriter out) {
+        ListeningIngestor ingestor = ListeningIngestor.getStartedInstance();
+        if (ingestor == null) {
+            return;
+        }
+        header(out, "algorythm_ingest_queue_depth", "gauge", "Listening events accepted but not yet written");
+        sample(out, "algorythm_ingest_queue_depth", null, ingestor.getQueueDepth());
+        header(out, "algorythm_ingest_events_total", "counter", "Listening events by outcome");
+        sample(out, "algorythm_ingest_events_total", "outcome=\"accepted\"", ingestor.getAcceptedCount());
+        sample(out, "algorythm_ingest_events_total", "outcome=\"rejected\"", ingestor.getRejectedCount());
+        sample(out, "algorythm_ingest_events_total", "outcome=\"persisted\"", ingestor.getPersistedCount());
+        sample(out, "algorythm_ingest_events_total", "outcome=\"dead_lettered\"", ingestor.getDeadLetteredCount());
+        header(out, "algorythm_ingest_failed_batches_total", "counter", "Listening history batches that failed to commit");
+        sample(out, "algorythm_ingest_failed_batches_total", null, ingestor.getFailedBatchCount());
+        header(out, "algorythm_ingest_spool_segments", "gauge", "Spool segment files holding uncommitted events");
+        sample(out, "algorythm_ingest_spool_segments", null, ingestor.getSpoolSegmentCount());
+
+        DailyStatsAggregator aggregator = DailyStatsAggregator.getStartedInstance();
+        if (aggregator != null) {
+            header(out, "algorythm_stats_unattributed_plays_total", "counter", "Plays counted for their song but not their artist");
+            sample(out, "algorythm_stats_unattributed_plays_total", null, aggregator.getUnattributedPlays());
+        }
+    }
+
+    private void writeRequestExecutorMetrics(PrintWriter out) {
+        AsyncRequestExecutor requestExecutor = AsyncRequestExecutor.getInstance();
+        if (!requestExecutor.isEnabled()) {
+            return;
+        }
+        header(out, "algorythm_async_requests", "gauge", "Requests on the async executor by state");
+        sample(out, "algorythm_async_requests", "state=\"queued\"", requestExecutor.getQueueDepth());
+        sample(out, "algorythm_async_requests", "state=\"running\"", requestExecutor.getActiveCount());
+        header(out, "algorythm_async_completed_total", "counter", "Requests the async executor finished");
+        sample(out, "algorythm_async_completed_total", null, requestExecutor.getCompletedCount());
+        header(out, "algorythm_async_rejected_total", "counter", "Requests shed with 503 because the queue was full");
+        sample(out, "algorythm_async_rejected_total", null, requestExecutor.getRejectedCount());
+        header(out, "algorythm_async_timeouts_total", "counter", "Requests answered 503 at their endpoint deadline");
+        sample(out, "algorythm_async_timeouts_total", null, requestExecutor.getTimedOutCount());
+        header(out, "algorythm_async_virtual_threads", "gauge", "1 when requests run on virtual threads");
+        sample(out, "algorythm_async_virtual_threads", null, requestExecutor.isVirtual() ? 1 : 0);
+    }
+
+    private void writeCoalescingMetrics(PrintWriter out) {
+        Map<String, SingleFlight<?, ?>> flights = SingleFlight.all();
+        if (flights.isEmpty() || !SingleFlight.isEnabled()) {
+            return;
+        }
+        header(out, "algorythm_coalesce_calls_total", "counter", "Coalescable DAO reads by method");
+        for (SingleFlight<?, ?> flight : flights.values()) {
+            sample(out, "algorythm_coalesce_calls_total", "method=\"" + escape(flight.getName()) + "\"", flight.getCallCount());
+        }
+        header(out, "algorythm_coalesce_shared_total", "counter", "DAO reads that shared another caller's query instead of running their own");
+        for (SingleFlight<?, ?> flight : flights.values()) {
+            sample(out, "algorythm_coalesce_shared_total", "method=\"" + escape(flight.getName()) + "\"", flight.getCoalescedCount());
+        }
+        header(out, "algorythm_coalesce_ratio", "gauge", "Share of DAO reads served by another caller's query");
+        for (SingleFlight<?, ?> flight : flights.values()) {
+            long calls = flight.getCallCount();
+            double ratio = calls > 0 ? (double) flight.getCoalescedCount() / calls : 0;
+            sample(out, "algorythm_coalesce_ratio", "method=\"" + escape(flight.getName()) + "\"", ratio);
+        }
+        header(out, "algorythm_coalesce_in_flight", "gauge", "Distinct DAO reads currently running");
+        for (SingleFlight<?, ?> flight : flights.values()) {
+            sample(out, "algorythm_coalesce_in_flight", "method=\"" + escape(flight.getName()) + "\"", flight.getInFlightCount());
+        }
+    }
+
+    private void writeAuthMetrics(PrintWriter out) {
+        if (!TokenService.isEnabled()) {
+            return;
+        }
+        TokenService tokens = TokenService.getInstance();
+        header(out, "algorythm_auth_tokens_total", "counter", "Bearer tokens by outcome");
+        sample(out, "algorythm_auth_tokens_total", "outcome=\"issued\"", tokens.getIssuedCount());
+        sample(out, "algorythm_auth_tokens_total", "outcome=\"refreshed\"", tokens.getRefreshedCount());
+        sample(out, "algorythm_auth_tokens_total", "outcome=\"verified\"", tokens.getVerifiedCount());
+        sample(out, "algorythm_auth_tokens_total", "outcome=\"rejected\"", tokens.getRejectedCount());
+        header(out, "algorythm_auth_revoked_tokens", "gauge", "Unexpired revoked token ids held in memory");
+        sample(out, "algorythm_auth_revoked_tokens", null, tokens.getRevokedCount());
+    }
+
+    private void writeHttpMetrics(PrintWriter out) {
+        header(out, "algorythm_http_not_modified_total", "counter", "GET requests answered 304 from If-None-Match");
+        sample(out, "algorythm_http_not_modified_total", null, GzipEtagFilter.getNotModifiedCount());
+        header(out, "algorythm_http_gzip_responses_total", "counter", "Buffered responses sent gzipped");
+        sample(out, "algorythm_http_gzip_responses_total", null, GzipEtagFilter.getCompressedCount());
+        header(out, "algorythm_http_gzip_bytes_total", "counter", "Bytes of gzipped responses before and after compression");
+        sample(out, "algorythm_http_gzip_bytes_total", "stage=\"in\"", GzipEtagFilter.getCompressedBytesIn());
+        sample(out, "algorythm_http_gzip_bytes_total", "stage=\"out\"", GzipEtagFilter.getCompressedBytesOut());
+    }
+
+    private void writeAuthExecutorMetrics(PrintWriter out) {
+        AsyncRequestExecutor authExecutor = AsyncRequestExecutor.getAuthInstance();
+        if (!authExecutor.isEnabled()) {
+            return;
+        }
+        header(out, "algorythm_auth_hash_requests", "gauge", "Login and registration requests on the hashing pool by state");
+        sample(out, "algorythm_auth_hash_requests", "state=\"queued\"", authExecutor.getQueueDepth());
+        sample(out, "algorythm_auth_hash_requests", "state=\"running\"", authExecutor.getActiveCount());
+        header(out, "algorythm_auth_hash_completed_total", "counter", "Requests the hashing pool finished");
+        sample(out, "algorythm_auth_hash_completed_total", null, authExecutor.getCompletedCount());
+        header(out, "algorythm_auth_hash_rejected_total", "counter", "Requests shed with 503 because the hashing queue was full");
+        sample(out, "algorythm_auth_hash_rejected_total", null, authExecutor.getRejectedCount());
+        header(out, "algorythm_auth_hash_throttled_total", "counter", "Requests answered 429 for exceeding the per-client limit");
+        sample(out, "algorythm_auth_hash_throttled_total", null, authExecutor.getThrottledCount());
+        header(out, "algorythm_auth_hash_timeouts_total", "counter", "Hashing requests answered 503 at their deadline");
+        sample(out, "algorythm_auth_hash_timeouts_total", null, authExecutor.getTimedOutCount());
+        header(out, "algorythm_auth_pbkdf2_iterations", "gauge", "PBKDF2 cost used for new password hashes");
+        sample(out, "algorythm_auth_pbkdf2_iterations", null, PasswordHasher.getInstance().getIterations());
+    }
+
+    private static void writeSummary(PrintWriter out, String name, String labels, LatencyStats stats) {
+        Histogram histogram = stats.snapshot();
+        String prefix = labels != null ? labels + "," : "";
+        for (double q : QUANTILES) {
+            out.print(name);
+            out.print('{');
+            out.print(prefix);
+            out.print("quantile=\"");
+            out.print(q);
+            out.print("\"} ");
+            out.println(histogram.getTotalCount() == 0 ? "NaN" : seconds(histogram.getValueAtPercentile(q * 100)));
+        }
+        sample(out, name + "_sum", labels, seconds(stats.getTotalMicros()));
+        sample(out, name + "_count", labels, histogram.getTotalCount());
+    }
+
+    private static void header(PrintWriter out, String name, String type, String help) {
+        out.print("# HELP ");
+        out.print(name);
+        out.print(' ');
+        out.println(help);
+        out.print("# TYPE ");
+        out.print(name);
+        out.print(' ');
+        out.println(type);
+    }
+
+    private static void sample(PrintWriter out, String name, String labels, Object value) {
+        out.print(name);
+        if (labels != null) {
+            out.print('{');
+            out.print(labels);
+            out.print('}');
+        }
+        out.print(' ');
+        out.println(value);
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1_000_000.0);
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static boolean isLoopback(String remoteAddr) {
+        try {
+            // Remote addresses are IP literals, so this does not hit DNS
+            return remoteAddr != null && InetAddress.getByName(remoteAddr).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.algorythm.servlet;
+
+import com.algorythm.filter.AuthFilter;
+import com.algorythm.model.Playlist;
+import com.algorythm.model.Song;
+import com.algorythm.service.PlaylistService;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Servlet for playlists and their tracks
+ *
+ * GET    /playlists                         current user's playlists
+ * POST   /playlists                         create {name, description, isPublic}
+ * GET    /playlists/{id}                    playlist details
+ * DELETE /playlists/{id}                    delete playlist
+ * GET    /playlists/{id}/songs              songs in playlist order
+ * POST   /playlists/{id}/songs              append {songId} or {songIds: [...]}
+ * PUT    /playlists/{id}/songs/{songId}     move after {afterSongId}, null for the top
+ * DELETE /playlists/{id}/songs/{songId}     remove song
+ */
+@WebServlet(urlPatterns = {"/playlists", "/playlists/*"})
+public class PlaylistServlet extends HttpServlet {
+    private static final Logger logger = LoggerFactory.getLogger(PlaylistServlet.class);
+    private static final Pattern PLAYLIST_PATH = Pattern.compile("/(\\d+)");
+    private static final Pattern SONGS_PATH = Pattern.compile("/(\\d+)/songs");
+    private static final Pattern SONG_PATH = Pattern.compile("/(\\d+)/songs/(\\d+)");
+    private PlaylistService playlistService;
+    private Gson gson;
+
+    /**
+     * JSON body of POST /playlists
+     */
+    private static class CreateRequest {
+        String name;
+        String description;
+        Boolean isPublic;
+    }
+
+    /**
+     * JSON body of POST /playlists/{id}/songs
+     */
+    private static class AddSongsRequest {
+        Long songId;
+        List<Long> songIds;
+    }
+
+    /**
+     * JSON body of PUT /playlists/{id}/songs/{songId}
+     */
+    private static class MoveRequest {
+        Long afterSongId;
+    }
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        playlistService = new PlaylistService();
+        gson = JsonSupport.newGson();
+        logger.info("PlaylistServlet initialized");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        prepare(response);
+        String pathInfo = request.getPathInfo();
+        Long userId = AuthFilter.getUserId(request);
+        Matcher m;
+
+        try {
+            if (pathInfo == null || pathInfo.equals("/")) {
+                if (requireUser(userId, response)) {
+                    response.getWriter().write(gson.toJson(playlistService.getUserPlaylists(userId)));
+                }
+            } else if ((m = PLAYLIST_PATH.matcher(pathInfo)).matches()) {
+                Playlist playlist = playlistService.getPlaylist(Long.parseLong(m.group(1)), userId);
+                if (playlist == null) {
+                    notFound(response);
+                } else {
+                    response.getWriter().write(gson.toJson(playlist));
+                }
+            } else if ((m = SONGS_PATH.matcher(pathInfo)).matches()) {
+                streamSongs(Long.parseLong(m.group(1)), userId, response);
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (NumberFormatException e) {
+            badRequest(response, "Invalid ID format");
+        } catch (SQLException e) {
+            databaseError(e, response);
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        prepare(response);
+        String pathInfo = request.getPathInfo();
+        Long userId = AuthFilter.getUserId(request);
+        if (!requireUser(userId, response)) {
+            return;
+        }
+        Matcher m;
+
+        try {
+            if (pathInfo == null || pathInfo.equals("/")) {
+                CreateRequest body = gson.fromJson(request.getReader(), CreateRequest.class);
+                if (body == null) {
+                    badRequest(response, "Missing request body");
+                    return;
+                }
+                Playlist playlist = playlistService.createPlaylist(userId, body.name, body.description,
+                    body.isPublic == null || body.isPublic);
+                response.setStatus(HttpServletResponse.SC_CREATED);
+                response.getWriter().write(gson.toJson(playlist));
+            } else if ((m = SONGS_PATH.matcher(pathInfo)).matches()) {
+                Long playlistId = Long.parseLong(m.group(1));
+                AddSongsRequest body = gson.fromJson(request.getReader(), AddSongsRequest.class);
+                List<Long> songIds = new ArrayList<>();
+                if (body != null && body.songIds != null) {
+                    songIds.addAll(body.songIds);
+                }
+                if (body != null && body.songId != null) {
+                    songIds.add(body.songId);
+                }
+                songIds.removeIf(id -> id == null);
+
+                int added = playlistService.addSongs(playlistId, userId, songIds);
+                if (added < 0) {
+                    notFound(response);
+                    return;
+                }
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("added", added);
+                result.put("playlist", playlistService.getPlaylist(playlistId, userId));
+                response.getWriter().write(gson.toJson(result));
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (JsonParseException e) {
+            badRequest(response, "Invalid request body");
+        } catch (NumberFormatException e) {
+            badRequest(response, "Invalid ID format");
+        } catch (IllegalArgumentException e) {
+            badRequest(response, e.getMessage());
+        } catch (SQLException e) {
+            databaseError(e, response);
+        }
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        prepare(response);
+        String pathInfo = request.getPathInfo();
+        Long userId = AuthFilter.getUserId(request);
+        if (!requireUser(userId, response)) {
+            return;
+        }
+
+        try {
+            Matcher m = pathInfo != null ? SONG_PATH.matcher(pathInfo) : null;
+            if (m == null || !m.matches()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            MoveRequest body = gson.fromJson(request.getReader(), MoveRequest.class);
+            Long afterSongId = body != null ? body.afterSongId : null;
+            if (playlistService.moveSong(Long.parseLong(m.group(1)), userId, Long.parseLong(m.group(2)), afterSongId)) {
+                response.getWriter().write("{\"message\": \"Song moved\"}");
+            } else {
+                notFound(response);
+            }
+        } catch (JsonParseException e) {
+            badRequest(response, "Invalid request body");
+        } catch (NumberFormatException e) {
+            badRequest(response, "Invalid ID format");
+        } catch (SQLException e) {
+            databaseError(e, response);
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        prepare(response);
+        String pathInfo = request.getPathInfo();
+        Long userId = AuthFilter.getUserId(request);
+        if (!requireUser(userId, response)) {
+            return;
+        }
+        Matcher m;
+
+        try {
+            boolean removed;
+            if (pathInfo == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            } else if ((m = PLAYLIST_PATH.matcher(pathInfo)).matches()) {
+                removed = playlistService.deletePlaylist(Long.parseLong(m.group(1)), userId);
+            } else if ((m = SONG_PATH.matcher(pathInfo)).matches()) {
+                removed = playlistService.removeSong(Long.parseLong(m.group(1)), userId, Long.parseLong(m.group(2)));
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            if (removed) {
+                response.getWriter().write("{\"message\": \"Deleted\"}");
+            } else {
+                notFound(response);
+            }
+        } catch (NumberFormatException e) {
+            badRequest(response, "Invalid ID format");
+        } catch (SQLException e) {
+            databaseError(e, response);
+        }
+    }
+
+    /**
+     * Write the playlist's songs as a JSON array as rows arrive, so large
+     * playlists are never held in memory as a whole
+     */
+    private void streamSongs(Long playlistId, Long userId, HttpServletResponse response)
+            throws SQLException, IOException {
+        JsonWriter writer = new JsonWriter(response.getWriter());
+        boolean[] started = new boolean[1];
+        try {
+            boolean found = playlistService.streamSongs(playlistId, userId, song -> {
+                if (!started[0]) {
+                    writer.beginArray();
+                    started[0] = true;
+                }
+                gson.toJson(song, Song.class, writer);
+            });
+            if (!found) {
+                notFound(response);
+                return;
+            }
+            if (!started[0]) {
+                writer.beginArray();
+            }
+            writer.endArray();
+            writer.flush();
+        } catch (SQLException e) {
+            if (!response.isCommitted()) {
+                response.resetBuffer();
+                throw e;
+            }
+            // Part of the array is already on the wire; abort the response
+            logger.error("Database error while streaming playlist songs", e);
+            throw new IOException("Playlist stream aborted", e);
+        }
+    }
+
+    private void prepare(HttpServletResponse response) {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+    }
+
+    private boolean requireUser(Long userId, HttpServletResponse response) throws IOException {
+        if (userId == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.getWriter().write("{\"error\": \"Not authenticated\"}");
+            return false;
+        }
+        return true;
+    }
+
+    private void notFound(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        response.getWriter().write("{\"error\": \"Playlist or song not found\"}");
+    }
+
+    private void badRequest(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        response.getWriter().write(gson.toJson(Collections.singletonMap("error", message)));
+    }
+
+    private void databaseError(SQLException e, HttpServletResponse response) throws IOException {
+        logger.error("Database error", e);
+        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        response.getWriter().write("{\"error\": \"Database error occurred\"}");
+    }
+}
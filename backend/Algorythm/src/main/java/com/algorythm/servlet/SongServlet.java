@@ -1,8 +1,15 @@
 package com.algorythm.servlet;
 
+import com.algorythm.cache.SingleFlight;
 import com.algorythm.dao.SongDAO;
+import com.algorythm.model.Page;
 import com.algorythm.model.Song;
+import com.algorythm.search.SongSearchIndex;
+import com.algorythm.service.ChartService;
+import com.algorythm.dao.RowCallback;
+import com.algorythm.filter.GzipEtagFilter;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,23 +19,40 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Servlet for handling song-related requests
  */
-@WebServlet(urlPatterns = {"/songs", "/songs/*"})
+@WebServlet(urlPatterns = {"/songs", "/songs/*"}, asyncSupported = true)
 public class SongServlet extends HttpServlet {
     private static final Logger logger = LoggerFactory.getLogger(SongServlet.class);
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final Pattern SONG_PATH = Pattern.compile("/(\\d+)(/lyrics)?");
+    // Bump when the JSON shape of a song changes, so cached copies are not revalidated
+    private static final String ETAG_VERSION = "1";
     private SongDAO songDAO;
     private Gson gson;
+    private AsyncRequestExecutor requestExecutor;
 
     @Override
     public void init() throws ServletException {
         super.init();
         songDAO = new SongDAO();
-        gson = new Gson();
+        gson = JsonSupport.newGson();
+        requestExecutor = AsyncRequestExecutor.getInstance();
         logger.info("SongServlet initialized");
     }
 
@@ -39,20 +63,119 @@ public class SongServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
 
         String pathInfo = request.getPathInfo();
+        if (!requestExecutor.isEnabled() || "/top".equals(pathInfo) || "/recent".equals(pathInfo)) {
+            // Charts are in memory and never wait on the database
+            handleGet(request, response, false);
+            return;
+        }
+
+        Long songId = songIdFor(pathInfo);
+        if (songId != null) {
+            Song cached = songDAO.findCached(songId);
+            if (cached != null) {
+                // Cache hits are answered on the container thread as well
+                if (pathInfo.endsWith("/lyrics")) {
+                    writeLyrics(cached, response);
+                } else {
+                    writeSong(cached, request, response);
+                }
+                return;
+            }
+        }
+
+        String endpoint = endpointFor(pathInfo);
+        // Artist and album lists past coalesce.maxRows are streamed row by
+        // row like the export, so they must not be held in a BufferedResponse
+        if ("songs.export".equals(endpoint) || "songs.artist".equals(endpoint) || "songs.album".equals(endpoint)) {
+            requestExecutor.stream(endpoint, request, response, (req, resp) -> handleGet(req, resp, false));
+        } else {
+            requestExecutor.execute(endpoint, request, response, (req, resp) -> handleGet(req, resp, songId != null));
+        }
+    }
+
+    /**
+     * Song id of a /{id} or /{id}/lyrics path, or null for other paths
+     */
+    private static Long songIdFor(String pathInfo) {
+        Matcher matcher = pathInfo != null ? SONG_PATH.matcher(pathInfo) : null;
+        if (matcher == null || !matcher.matches()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Name used for the endpoint's async.timeoutMs.{endpoint} setting
+     */
+    private static String endpointFor(String pathInfo) {
+        if (pathInfo == null || pathInfo.equals("/")) {
+            return "songs.list";
+        } else if (pathInfo.endsWith("/lyrics")) {
+            return "songs.lyrics";
+        } else if (SONG_PATH.matcher(pathInfo).matches()) {
+            return "songs.get";
+        } else if (pathInfo.equals("/search")) {
+            return "songs.search";
+        } else if (pathInfo.equals("/export")) {
+            return "songs.export";
+        } else if (pathInfo.startsWith("/artist/")) {
+            return "songs.artist";
+        } else if (pathInfo.startsWith("/album/")) {
+            return "songs.album";
+        }
+        return "songs.other";
+    }
+
+    /**
+     * @param cacheMissed the song cache was already checked for a single-song
+     *                    path, so go straight to the database
+     */
+    private void handleGet(HttpServletRequest request, HttpServletResponse response, boolean cacheMissed)
+            throws IOException {
+        String pathInfo = request.getPathInfo();
 
         try {
             if (pathInfo == null || pathInfo.equals("/")) {
-                // Get all songs or search
+                // Get songs by id, search, or list all songs
+                String ids = request.getParameter("ids");
                 String searchQuery = request.getParameter("q");
-                if (searchQuery != null && !searchQuery.trim().isEmpty()) {
-                    searchSongs(searchQuery, response);
+                if (ids != null) {
+                    getSongsByIds(ids, request, response);
+                } else if (searchQuery != null && !searchQuery.trim().isEmpty()) {
+                    searchSongs(searchQuery, parseLimit(request, 20), request, response);
                 } else {
-                    getAllSongs(response);
+                    getAllSongs(request, response);
                 }
             } else if (pathInfo.matches("/\\d+")) {
                 // Get song by ID
                 Long songId = Long.parseLong(pathInfo.substring(1));
-                getSongById(songId, response);
+                getSongById(songId, cacheMissed, request, response);
+            } else if (pathInfo.matches("/\\d+/lyrics")) {
+                // Get lyrics, which list responses leave out
+                Long songId = Long.parseLong(pathInfo.substring(1, pathInfo.indexOf('/', 1)));
+                getLyrics(songId, cacheMissed, response);
+            } else if (pathInfo.equals("/search")) {
+                // Search songs by title, artist or album
+                String searchQuery = request.getParameter("q");
+                if (searchQuery == null || searchQuery.trim().isEmpty()) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    response.getWriter().write("{\"error\": \"Missing search query\"}");
+                    return;
+                }
+                searchSongs(searchQuery, parseLimit(request, 20), request, response);
+            } else if (pathInfo.equals("/export")) {
+                // Stream the whole catalog
+                exportSongs(response);
+            } else if (pathInfo.equals("/top")) {
+                // Get chart of most played songs
+                getTopSongs(request, response);
+            } else if (pathInfo.equals("/recent")) {
+                // Get recent releases
+                getRecentReleases(request, response);
             } else if (pathInfo.startsWith("/artist/")) {
                 // Get songs by artist
                 Long artistId = Long.parseLong(pathInfo.substring(8));
@@ -67,6 +190,9 @@ public class SongServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             response.getWriter().write("{\"error\": \"Invalid ID format\"}");
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write(JsonSupport.error(e.getMessage()));
         } catch (SQLException e) {
             logger.error("Database error", e);
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -74,15 +200,48 @@ public class SongServlet extends HttpServlet {
         }
     }
 
-    private void getAllSongs(HttpServletResponse response) throws SQLException, IOException {
-        List<Song> songs = songDAO.findAll();
+    private void getAllSongs(HttpServletRequest request, HttpServletResponse response) throws SQLException, IOException {
+        String cursor = request.getParameter("cursor");
+        boolean paged = cursor != null || request.getParameter("limit") != null;
+        int limit = parseLimit(request, DEFAULT_PAGE_SIZE);
+
+        Page<Song> page = songDAO.findPage(cursor, limit);
         response.setStatus(HttpServletResponse.SC_OK);
-        response.getWriter().write(gson.toJson(songs));
+        if (paged) {
+            response.getWriter().write(gson.toJson(page));
+        } else {
+            // Plain /songs keeps returning a bare array; the cursor goes in a header
+            if (page.hasNext()) {
+                response.setHeader("X-Next-Cursor", page.getNext());
+            }
+            response.getWriter().write(gson.toJson(page.getItems()));
+        }
+    }
+
+    private void getSongsByIds(String ids, HttpServletRequest request, HttpServletResponse response)
+            throws SQLException, IOException {
+        List<Long> songIds = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            if (!id.trim().isEmpty()) {
+                songIds.add(Long.parseLong(id.trim()));
+            }
+        }
+        if (songIds.size() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " ids per request");
+        }
+        writeSongs(songDAO.findListByIds(songIds), request, response);
+    }
+
+    private void getSongById(Long songId, boolean cacheMissed, HttpServletRequest request,
+                             HttpServletResponse response) throws SQLException, IOException {
+        writeSong(cacheMissed ? songDAO.loadById(songId) : songDAO.findById(songId), request, response);
     }
 
-    private void getSongById(Long songId, HttpServletResponse response) throws SQLException, IOException {
-        Song song = songDAO.findById(songId);
+    private void writeSong(Song song, HttpServletRequest request, HttpServletResponse response) throws IOException {
         if (song != null) {
+            if (notModified(request, response, "song", Collections.singletonList(song))) {
+                return;
+            }
             response.setStatus(HttpServletResponse.SC_OK);
             response.getWriter().write(gson.toJson(song));
         } else {
@@ -91,21 +250,181 @@ public class SongServlet extends HttpServlet {
         }
     }
 
+    private void getLyrics(Long songId, boolean cacheMissed, HttpServletResponse response)
+            throws SQLException, IOException {
+        // Served from the cached detail view when possible
+        writeLyrics(cacheMissed ? songDAO.loadById(songId) : songDAO.findById(songId), response);
+    }
+
+    private void writeLyrics(Song song, HttpServletResponse response) throws IOException {
+        if (song != null) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("songId", song.getSongId());
+            body.put("lyrics", song.getLyrics());
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.getWriter().write(gson.toJson(body));
+        } else {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("{\"error\": \"Song not found\"}");
+        }
+    }
+
     private void getSongsByArtist(Long artistId, HttpServletResponse response) throws SQLException, IOException {
-        List<Song> songs = songDAO.findByArtist(artistId);
-        response.setStatus(HttpServletResponse.SC_OK);
-        response.getWriter().write(gson.toJson(songs));
+        // A new release sends many identical requests at once; they share one
+        // query unless the list is too long to hold in memory
+        List<Song> songs = SingleFlight.isEnabled() ? songDAO.findByArtistIfSmall(artistId) : null;
+        if (songs != null) {
+            streamSongs(response, callback -> forEach(songs, callback));
+        } else {
+            streamSongs(response, callback -> songDAO.streamByArtist(artistId, callback));
+        }
     }
 
     private void getSongsByAlbum(Long albumId, HttpServletResponse response) throws SQLException, IOException {
-        List<Song> songs = songDAO.findByAlbum(albumId);
+        List<Song> songs = SingleFlight.isEnabled() ? songDAO.findByAlbumIfSmall(albumId) : null;
+        if (songs != null) {
+            streamSongs(response, callback -> forEach(songs, callback));
+        } else {
+            streamSongs(response, callback -> songDAO.streamByAlbum(albumId, callback));
+        }
+    }
+
+    private static void forEach(List<Song> songs, RowCallback<Song> callback) throws IOException {
+        for (Song song : songs) {
+            callback.accept(song);
+        }
+    }
+
+    private void exportSongs(HttpServletResponse response) throws SQLException, IOException {
+        streamSongs(response, songDAO::streamAll);
+    }
+
+    /**
+     * A DAO call that pushes songs into a callback
+     */
+    private interface SongStream {
+        void run(RowCallback<Song> callback) throws SQLException, IOException;
+    }
+
+    /**
+     * Write songs as a JSON array straight to the response as rows arrive
+     * from the database, instead of building the list and the JSON string
+     * in memory first.
+     */
+    private void streamSongs(HttpServletResponse response, SongStream stream) throws SQLException, IOException {
         response.setStatus(HttpServletResponse.SC_OK);
-        response.getWriter().write(gson.toJson(songs));
+        JsonWriter writer = new JsonWriter(response.getWriter());
+        try {
+            writer.beginArray();
+            stream.run(song -> gson.toJson(song, Song.class, writer));
+            writer.endArray();
+            writer.flush();
+        } catch (SQLException e) {
+            if (!response.isCommitted()) {
+                response.resetBuffer();
+                throw e;
+            }
+            // Part of the array is already on the wire; abort the response
+            logger.error("Database error while streaming songs", e);
+            throw new IOException("Song stream aborted", e);
+        }
+    }
+
+    private void getTopSongs(HttpServletRequest request, HttpServletResponse response)
+            throws SQLException, IOException {
+        int limit = parseLimit(request, 50);
+        String genre = request.getParameter("genre");
+        String language = request.getParameter("language");
+        ChartService charts = ChartService.getInstance();
+        // Until the first chart build finishes, read the charts from the database
+        boolean ready = charts.isReady();
+
+        List<Song> songs;
+        if (genre != null && !genre.trim().isEmpty()) {
+            songs = ready ? charts.getTopSongsByGenre(genre, limit) : songDAO.getTopSongsByGenre(genre, limit);
+        } else if (language != null && !language.trim().isEmpty()) {
+            songs = ready ? charts.getTopSongsByLanguage(language, limit) : songDAO.getTopSongsByLanguage(language, limit);
+        } else {
+            songs = ready ? charts.getTopSongs(limit) : songDAO.getTopSongs(limit);
+        }
+        writeSongs(songs, request, response);
+    }
+
+    private void getRecentReleases(HttpServletRequest request, HttpServletResponse response)
+            throws SQLException, IOException {
+        ChartService charts = ChartService.getInstance();
+        int limit = parseLimit(request, 50);
+        writeSongs(charts.isReady() ? charts.getRecentReleases(limit) : songDAO.getRecentReleases(limit), request, response);
     }
 
-    private void searchSongs(String query, HttpServletResponse response) throws SQLException, IOException {
-        List<Song> songs = songDAO.searchByTitle(query);
+    private void writeSongs(List<Song> songs, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (notModified(request, response, "songs", songs)) {
+            return;
+        }
         response.setStatus(HttpServletResponse.SC_OK);
         response.getWriter().write(gson.toJson(songs));
     }
+
+    /**
+     * Answer 304 before serializing when the client already holds this
+     * version of the songs. Any column change moves updated_at; the counters
+     * are included as well because charts bump them in memory. Songs without
+     * updated_at are left to the response filter, which hashes the body.
+     */
+    private static boolean notModified(HttpServletRequest request, HttpServletResponse response,
+                                       String kind, List<Song> songs) {
+        StringBuilder version = new StringBuilder(16 + songs.size() * 48).append(ETAG_VERSION);
+        for (Song song : songs) {
+            if (song.getUpdatedAt() == null) {
+                return false;
+            }
+            version.append(';').append(song.getSongId())
+                .append(':').append(song.getUpdatedAt().getTime())
+                .append(':').append(song.getUpdatedAt().getNanos())
+                .append(':').append(song.getPlayCount())
+                .append(':').append(song.getLikeCount());
+        }
+        return GzipEtagFilter.checkNotModified(request, response, "\"" + kind + "-" + digest(version) + "\"");
+    }
+
+    private static String digest(CharSequence version) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                .digest(version.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * The limit parameter, clamped to 1..MAX_PAGE_SIZE
+     */
+    private int parseLimit(HttpServletRequest request, int defaultLimit) {
+        String limit = request.getParameter("limit");
+        if (limit == null) {
+            return defaultLimit;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(limit.trim());
+        } catch (NumberFormatException e) {
+            // Reported as a 400 by handleGet, not as a bad song id
+            throw new IllegalArgumentException("Invalid limit");
+        }
+        return Math.max(1, Math.min(value, MAX_PAGE_SIZE));
+    }
+
+    private void searchSongs(String query, int limit, HttpServletRequest request, HttpServletResponse response)
+            throws SQLException, IOException {
+        List<Song> songs;
+        SongSearchIndex searchIndex = SongSearchIndex.isEnabled() ? SongSearchIndex.getInstance() : null;
+        if (searchIndex != null && searchIndex.isReady()) {
+            songs = songDAO.findListByIds(searchIndex.search(query, limit));
+        } else {
+            songs = songDAO.searchByTitle(query, limit);
+        }
+        writeSongs(songs, request, response);
+    }
 }
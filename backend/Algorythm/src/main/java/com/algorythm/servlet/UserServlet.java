@@ -1,6 +1,10 @@
 package com.algorythm.servlet;
 
+import com.algorythm.auth.AuthToken;
+import com.algorythm.auth.TokenService;
+import com.algorythm.filter.AuthFilter;
 import com.algorythm.model.User;
+import com.algorythm.model.UserProfile;
 import com.algorythm.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,15 +21,19 @@ import java.sql.SQLException;
 /**
  * Servlet for handling user-related requests
  */
-@WebServlet(urlPatterns = {"/user/register", "/user/login", "/user/profile", "/user/logout"})
+@WebServlet(urlPatterns = {"/user/register", "/user/login", "/user/profile", "/user/logout"}, asyncSupported = true)
 public class UserServlet extends HttpServlet {
     private static final Logger logger = LoggerFactory.getLogger(UserServlet.class);
     private UserService userService;
+    private AsyncRequestExecutor requestExecutor;
+    private AsyncRequestExecutor authExecutor;
 
     @Override
     public void init() throws ServletException {
         super.init();
         userService = new UserService();
+        requestExecutor = AsyncRequestExecutor.getInstance();
+        authExecutor = AsyncRequestExecutor.getAuthInstance();
         logger.info("UserServlet initialized");
     }
 
@@ -33,15 +41,35 @@ public class UserServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
         String path = request.getServletPath();
+        if ("/user/profile".equals(path)) {
+            requestExecutor.execute("user.profile", request, response, this::handleGet);
+        } else {
+            handleGet(request, response);
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        String path = request.getServletPath();
+        if ("/user/logout".equals(path)) {
+            // Logout records a revocation, so it is a POST the executor never abandons
+            requestExecutor.execute("user.logout", request, response, this::handlePost);
+            return;
+        }
+        // Registration and login hash passwords; they get their own CPU-bounded pool
+        authExecutor.execute(path.substring(1).replace('/', '.'), request, response, this::handlePost);
+    }
+
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
+        String path = request.getServletPath();
         
         try {
             switch (path) {
                 case "/user/profile":
                     showProfile(request, response);
                     break;
-                case "/user/logout":
-                    logout(request, response);
-                    break;
                 default:
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
@@ -51,9 +79,8 @@ public class UserServlet extends HttpServlet {
         }
     }
 
-    @Override
-    protected void doPost(HttpServletRequest request, HttpServletResponse response) 
-            throws ServletException, IOException {
+    private void handlePost(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
         String path = request.getServletPath();
         
         try {
@@ -64,6 +91,9 @@ public class UserServlet extends HttpServlet {
                 case "/user/login":
                     login(request, response);
                     break;
+                case "/user/logout":
+                    logout(request, response);
+                    break;
                 default:
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
@@ -96,7 +126,7 @@ public class UserServlet extends HttpServlet {
             response.getWriter().write("{\"userId\": " + userId + ", \"message\": \"User registered successfully\"}");
         } catch (IllegalArgumentException e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            response.getWriter().write("{\"error\": \"" + e.getMessage() + "\"}");
+            response.getWriter().write(JsonSupport.error(e.getMessage()));
         }
     }
 
@@ -117,21 +147,25 @@ public class UserServlet extends HttpServlet {
         try {
             User user = userService.authenticateUser(email, password);
             
-            // Create session
-            HttpSession session = request.getSession();
-            session.setAttribute("userId", user.getUserId());
-            session.setAttribute("username", user.getUsername());
-            session.setAttribute("subscriptionType", user.getSubscriptionType());
+            if (TokenService.sessionsEnabled()) {
+                HttpSession session = request.getSession();
+                session.setAttribute(AuthFilter.USER_ID, user.getUserId());
+                session.setAttribute(AuthFilter.USERNAME, user.getUsername());
+                session.setAttribute(AuthFilter.SUBSCRIPTION_TYPE, user.getSubscriptionType());
+            }
+            // Token characters are base64url and '.', safe inside a JSON string
+            String token = TokenService.isEnabled()
+                ? ", \"token\": \"" + TokenService.getInstance().issue(user) + "\"" : "";
 
             response.setStatus(HttpServletResponse.SC_OK);
             response.setContentType("application/json");
             response.getWriter().write(String.format(
-                "{\"userId\": %d, \"username\": \"%s\", \"email\": \"%s\", \"subscriptionType\": \"%s\", \"message\": \"Login successful\"}",
-                user.getUserId(), user.getUsername(), user.getEmail(), user.getSubscriptionType()
+                "{\"userId\": %d, \"username\": \"%s\", \"email\": \"%s\", \"subscriptionType\": \"%s\"%s, \"message\": \"Login successful\"}",
+                user.getUserId(), user.getUsername(), user.getEmail(), user.getSubscriptionType(), token
             ));
         } catch (IllegalArgumentException e) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write("{\"error\": \"" + e.getMessage() + "\"}");
+            response.getWriter().write(JsonSupport.error(e.getMessage()));
         }
     }
 
@@ -140,16 +174,15 @@ public class UserServlet extends HttpServlet {
      */
     private void showProfile(HttpServletRequest request, HttpServletResponse response) 
             throws SQLException, IOException {
-        HttpSession session = request.getSession(false);
+        Long userId = AuthFilter.getUserId(request);
         
-        if (session == null || session.getAttribute("userId") == null) {
+        if (userId == null) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.getWriter().write("{\"error\": \"Not authenticated\"}");
             return;
         }
 
-        Long userId = (Long) session.getAttribute("userId");
-        User user = userService.getUserById(userId);
+        UserProfile user = userService.getProfile(userId);
 
         if (user == null) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
@@ -172,7 +205,12 @@ public class UserServlet extends HttpServlet {
      * Handle user logout
      */
     private void logout(HttpServletRequest request, HttpServletResponse response) 
-            throws IOException {
+            throws SQLException, IOException {
+        AuthToken token = (AuthToken) request.getAttribute(AuthFilter.TOKEN);
+        if (token != null) {
+            TokenService.getInstance().revoke(token);
+        }
+
         HttpSession session = request.getSession(false);
         
         if (session != null) {
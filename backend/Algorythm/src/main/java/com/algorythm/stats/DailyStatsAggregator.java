@@ -0,0 +1,315 @@
+package com.algorythm.stats;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.dao.DailyStatsDAO;
+import com.algorythm.dao.SongDAO;
+import com.algorythm.model.DailyArtistStats;
+import com.algorythm.model.DailySongStats;
+import com.algorythm.model.ListeningEvent;
+import com.algorythm.model.Song;
+import com.algorythm.service.ListeningIngestor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming rollup of play events into daily_song_stats and daily_artist_stats.
+ *
+ * Consumes events as ListeningIngestor commits them and keeps running
+ * per-song and per-artist counters for each UTC day, with a HyperLogLog
+ * sketch for unique listeners. Every stats.flushIntervalSeconds the
+ * accumulated deltas are upserted in one transaction, one batch per table,
+ * so no job ever has to GROUP BY over listening_history. Plays whose artist
+ * cannot be resolved are counted for the song only and reported through
+ * getUnattributedPlays().
+ *
+ * Sketches live in memory for the day; after a restart the stored
+ * unique_listeners is only raised, never lowered, by the new estimate.
+ */
+public class DailyStatsAggregator implements ListeningIngestor.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(DailyStatsAggregator.class);
+    private static volatile DailyStatsAggregator instance;
+
+    private final DailyStatsDAO statsDAO = new DailyStatsDAO();
+    private final SongDAO songDAO = new SongDAO();
+    private final double skipThreshold;
+    private final double completeThreshold;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<DayKey, SongDay> songDays = new HashMap<>();
+    private final Map<DayKey, ArtistDay> artistDays = new HashMap<>();
+    private final AtomicLong unattributedPlays = new AtomicLong();
+
+    private static final class DayKey {
+        final long id;
+        final LocalDate date;
+
+        DayKey(long id, LocalDate date) {
+            this.id = id;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DayKey)) {
+                return false;
+            }
+            DayKey other = (DayKey) o;
+            return id == other.id && date.equals(other.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, date);
+        }
+    }
+
+    private static final class SongCounts {
+        int plays;
+        int skips;
+        int completed;
+        int completionSamples;
+        double completionSum;
+
+        void add(SongCounts other) {
+            plays += other.plays;
+            skips += other.skips;
+            completed += other.completed;
+            completionSamples += other.completionSamples;
+            completionSum += other.completionSum;
+        }
+    }
+
+    private static final class SongDay {
+        final HyperLogLog listeners = new HyperLogLog();
+        SongCounts pending = new SongCounts();
+    }
+
+    private static final class ArtistDay {
+        final HyperLogLog listeners = new HyperLogLog();
+        int plays;
+    }
+
+    DailyStatsAggregator(double skipThreshold, double completeThreshold) {
+        this.skipThreshold = skipThreshold;
+        this.completeThreshold = completeThreshold;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "daily-stats-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Whether the rollup is enabled in db.properties
+     */
+    public static boolean isEnabled() {
+        return DatabaseConfig.getBooleanProperty("stats.rollup.enabled", true);
+    }
+
+    /**
+     * Get the shared aggregator, subscribing it to the ingestor on first use
+     */
+    public static DailyStatsAggregator getInstance() {
+        if (instance == null) {
+            synchronized (DailyStatsAggregator.class) {
+                if (instance == null) {
+                    DailyStatsAggregator aggregator = new DailyStatsAggregator(
+                        Double.parseDouble(DatabaseConfig.getProperty("stats.skipThresholdPercent", "30")),
+                        Double.parseDouble(DatabaseConfig.getProperty("stats.completeThresholdPercent", "90")));
+                    long interval = DatabaseConfig.getLongProperty("stats.flushIntervalSeconds", 60);
+                    aggregator.scheduler.scheduleWithFixedDelay(aggregator::flushQuietly, interval, interval, TimeUnit.SECONDS);
+                    ListeningIngestor.getInstance().addListener(aggregator);
+                    instance = aggregator;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * The shared aggregator if it has been started, without starting it
+     */
+    public static DailyStatsAggregator getStartedInstance() {
+        return instance;
+    }
+
+    @Override
+    public void onPersisted(List<ListeningEvent> events) {
+        // Resolve artists first, in one multi-get backed by the song cache
+        Long[] artistIds = new Long[events.size()];
+        List<Long> songIds = new ArrayList<>(events.size());
+        for (ListeningEvent event : events) {
+            songIds.add(event.getSongId());
+        }
+        try {
+            Map<Long, Long> artistBySong = new HashMap<>();
+            for (Song song : songDAO.findByIds(songIds)) {
+                artistBySong.put(song.getSongId(), song.getArtistId());
+            }
+            for (int i = 0; i < events.size(); i++) {
+                artistIds[i] = artistBySong.get(events.get(i).getSongId());
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not resolve artists for {} songs", songIds.size(), e);
+        }
+
+        int unattributed = 0;
+        synchronized (this) {
+            for (int i = 0; i < events.size(); i++) {
+                ListeningEvent event = events.get(i);
+                LocalDate day = event.getPlayedAt().toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+                recordSong(event, day);
+                if (artistIds[i] != null) {
+                    ArtistDay artistDay = artistDays.computeIfAbsent(new DayKey(artistIds[i], day), k -> new ArtistDay());
+                    artistDay.plays++;
+                    artistDay.listeners.add(event.getUserId());
+                } else {
+                    unattributed++;
+                }
+            }
+        }
+        if (unattributed > 0) {
+            unattributedPlays.addAndGet(unattributed);
+            logger.warn("{} of {} plays left out of daily artist stats: artist unknown", unattributed, events.size());
+        }
+    }
+
+    private void recordSong(ListeningEvent event, LocalDate day) {
+        SongDay songDay = songDays.computeIfAbsent(new DayKey(event.getSongId(), day), k -> new SongDay());
+        songDay.listeners.add(event.getUserId());
+        SongCounts counts = songDay.pending;
+        counts.plays++;
+
+        Double completion = event.getCompletionPercentage();
+        if (completion != null) {
+            counts.completionSamples++;
+            counts.completionSum += completion;
+            if (completion >= completeThreshold) {
+                counts.completed++;
+            }
+            if (completion < skipThreshold) {
+                counts.skips++;
+            }
+        } else if (event.getDurationPlayedSeconds() < 30) {
+            counts.skips++;
+        }
+    }
+
+    /**
+     * Upsert all accumulated deltas
+     */
+    public void flush() throws SQLException {
+        Map<DayKey, SongCounts> songDeltas = new HashMap<>();
+        Map<DayKey, Integer> artistDeltas = new HashMap<>();
+        List<DailySongStats> songRows = new ArrayList<>();
+        List<DailyArtistStats> artistRows = new ArrayList<>();
+        LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+
+        synchronized (this) {
+            Iterator<Map.Entry<DayKey, SongDay>> songs = songDays.entrySet().iterator();
+            while (songs.hasNext()) {
+                Map.Entry<DayKey, SongDay> entry = songs.next();
+                SongDay day = entry.getValue();
+                SongCounts c = day.pending;
+                if (c.plays > 0) {
+                    DailySongStats row = new DailySongStats(entry.getKey().id, entry.getKey().date);
+                    row.setPlayCount(c.plays);
+                    row.setSkipCount(c.skips);
+                    row.setUniqueListeners((int) day.listeners.estimate());
+                    if (c.completionSamples > 0) {
+                        row.setCompletionRate(100.0 * c.completed / c.completionSamples);
+                        row.setAvgCompletionPercentage(c.completionSum / c.completionSamples);
+                    }
+                    songRows.add(row);
+                    songDeltas.put(entry.getKey(), c);
+                    day.pending = new SongCounts();
+                } else if (entry.getKey().date.isBefore(cutoff)) {
+                    songs.remove();
+                }
+            }
+
+            Iterator<Map.Entry<DayKey, ArtistDay>> artists = artistDays.entrySet().iterator();
+            while (artists.hasNext()) {
+                Map.Entry<DayKey, ArtistDay> entry = artists.next();
+                ArtistDay day = entry.getValue();
+                if (day.plays > 0) {
+                    DailyArtistStats row = new DailyArtistStats(entry.getKey().id, entry.getKey().date);
+                    row.setTotalPlays(day.plays);
+                    row.setUniqueListeners((int) day.listeners.estimate());
+                    artistRows.add(row);
+                    artistDeltas.put(entry.getKey(), day.plays);
+                    day.plays = 0;
+                } else if (entry.getKey().date.isBefore(cutoff)) {
+                    artists.remove();
+                }
+            }
+        }
+
+        if (songRows.isEmpty() && artistRows.isEmpty()) {
+            return;
+        }
+        try {
+            statsDAO.upsertStats(songRows, artistRows);
+        } catch (SQLException e) {
+            // Rolled back, so both tables are retried
+            restore(songDeltas, artistDeltas);
+            throw e;
+        }
+        logger.debug("Upserted daily stats for {} songs and {} artists", songRows.size(), artistRows.size());
+    }
+
+    /**
+     * Put deltas back after a failed upsert so the next flush retries them
+     */
+    private synchronized void restore(Map<DayKey, SongCounts> songDeltas, Map<DayKey, Integer> artistDeltas) {
+        for (Map.Entry<DayKey, SongCounts> delta : songDeltas.entrySet()) {
+            songDays.computeIfAbsent(delta.getKey(), k -> new SongDay()).pending.add(delta.getValue());
+        }
+        for (Map.Entry<DayKey, Integer> delta : artistDeltas.entrySet()) {
+            artistDays.computeIfAbsent(delta.getKey(), k -> new ArtistDay()).plays += delta.getValue();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            logger.error("Failed to upsert daily stats, will retry", e);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error flushing daily stats", e);
+        }
+    }
+
+    /**
+     * Called once the ingestor has committed its last batch
+     */
+    @Override
+    public void onStopped() {
+        scheduler.shutdown();
+        flushQuietly();
+    }
+
+    // Metrics
+
+    /**
+     * Plays counted for their song but not their artist, because the song
+     * could not be loaded or has no artist
+     */
+    public long getUnattributedPlays() {
+        return unattributedPlays.get();
+    }
+}
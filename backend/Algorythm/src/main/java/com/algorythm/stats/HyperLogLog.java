@@ -0,0 +1,149 @@
+package com.algorythm.stats;
+
+/**
+ * HyperLogLog cardinality sketch for counting distinct listeners.
+ *
+ * Uses 2^precision one-byte registers (4 KB at the default precision of 12,
+ * about 1.6% standard error) once it has seen enough ids. Until then only
+ * the non-zero registers are kept, in a small open-addressing table of
+ * index and rank, so the many song-days with a handful of listeners cost
+ * tens of bytes. The estimate is the same in either form.
+ */
+public class HyperLogLog {
+    private static final int INITIAL_SPARSE_CAPACITY = 8;
+
+    private final int precision;
+    private byte[] registers;
+    // (index + 1) << 8 | rank per non-zero register, 0 for an empty slot; null once dense
+    private int[] sparse = new int[INITIAL_SPARSE_CAPACITY];
+    private int sparseCount;
+
+    public HyperLogLog() {
+        this(12);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("precision must be between 4 and 16");
+        }
+        this.precision = precision;
+    }
+
+    public void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - precision));
+        long rest = hash << precision;
+        int rank = rest == 0 ? 64 - precision + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        update(index, rank);
+    }
+
+    private void update(int index, int rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+        int mask = sparse.length - 1;
+        int slot = index & mask;
+        while (sparse[slot] != 0) {
+            if ((sparse[slot] >>> 8) == index + 1) {
+                if (rank > (sparse[slot] & 0xff)) {
+                    sparse[slot] = (index + 1) << 8 | rank;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        sparse[slot] = (index + 1) << 8 | rank;
+        if (++sparseCount * 2 > sparse.length) {
+            growSparse();
+        }
+    }
+
+    /**
+     * Double the table, or switch to registers once the table would be as
+     * large as they are
+     */
+    private void growSparse() {
+        int[] old = sparse;
+        if (old.length * 2 * Integer.BYTES >= 1 << precision) {
+            registers = new byte[1 << precision];
+            sparse = null;
+            for (int entry : old) {
+                if (entry != 0) {
+                    update((entry >>> 8) - 1, entry & 0xff);
+                }
+            }
+            return;
+        }
+        sparse = new int[old.length * 2];
+        sparseCount = 0;
+        for (int entry : old) {
+            if (entry != 0) {
+                update((entry >>> 8) - 1, entry & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Merge another sketch of the same precision into this one
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision");
+        }
+        if (other.registers == null) {
+            for (int entry : other.sparse) {
+                if (entry != 0) {
+                    update((entry >>> 8) - 1, entry & 0xff);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < other.registers.length; i++) {
+            if (other.registers[i] != 0) {
+                update(i, other.registers[i]);
+            }
+        }
+    }
+
+    public long estimate() {
+        int m = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        if (registers != null) {
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        } else {
+            zeros = m - sparseCount;
+            sum = zeros;
+            for (int entry : sparse) {
+                if (entry != 0) {
+                    sum += 1.0 / (1L << (entry & 0xff));
+                }
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Small-range correction: linear counting
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // 64-bit finalizer from MurmurHash3
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb93fe53b87e6L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
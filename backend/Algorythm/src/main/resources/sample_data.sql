@@ -66,13 +66,19 @@ INSERT INTO playlists (user_id, playlist_name, description, is_public, follower_
 -- Insert songs into playlists
 INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES 
 -- My Favorites playlist
-(1, 1, 1), (1, 5, 2), (1, 9, 3), (1, 13, 4),
+(1, 1, 65536), (1, 5, 131072), (1, 9, 196608), (1, 13, 262144),
 -- Workout Mix playlist
-(2, 9, 1), (2, 10, 2), (2, 11, 3), (2, 12, 4),
+(2, 9, 65536), (2, 10, 131072), (2, 11, 196608), (2, 12, 262144),
 -- Chill Vibes playlist
-(3, 5, 1), (3, 6, 2), (3, 7, 3), (3, 13, 4), (3, 14, 5),
+(3, 5, 65536), (3, 6, 131072), (3, 7, 196608), (3, 13, 262144), (3, 14, 327680),
 -- Road Trip playlist
-(4, 1, 1), (4, 2, 2), (4, 3, 3), (4, 8, 4);
+(4, 1, 65536), (4, 2, 131072), (4, 3, 196608), (4, 8, 262144);
+
+-- Denormalized playlist totals
+UPDATE playlists p SET
+    total_songs = (SELECT COUNT(*) FROM playlist_songs ps WHERE ps.playlist_id = p.playlist_id),
+    total_duration_seconds = (SELECT COALESCE(SUM(s.duration_seconds), 0) FROM playlist_songs ps
+                              JOIN songs s ON s.song_id = ps.song_id WHERE ps.playlist_id = p.playlist_id);
 
 -- Insert sample listening history
 INSERT INTO listening_history (user_id, song_id, duration_played, completion_percentage) VALUES 
@@ -38,6 +38,7 @@ CREATE TABLE users (
 CREATE INDEX idx_email ON users(email);
 CREATE INDEX idx_username ON users(username);
 CREATE INDEX idx_subscription_type ON users(subscription_type);
+CREATE INDEX idx_users_created_at_id ON users(created_at DESC, user_id DESC);
 
 CREATE TRIGGER update_users_updated_at BEFORE UPDATE ON users
 FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
@@ -149,6 +150,7 @@ CREATE INDEX idx_album_id_songs ON songs(album_id);
 CREATE INDEX idx_play_count ON songs(play_count DESC);
 CREATE INDEX idx_release_date_songs ON songs(release_date DESC);
 CREATE INDEX idx_songs_artist_album ON songs(artist_id, album_id);
+CREATE INDEX idx_songs_created_at_id ON songs(created_at DESC, song_id DESC);
 
 CREATE TRIGGER update_songs_updated_at BEFORE UPDATE ON songs
 FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
@@ -221,7 +223,8 @@ CREATE TABLE playlist_songs (
     playlist_id BIGINT NOT NULL,
     song_id BIGINT NOT NULL,
     added_by_user_id BIGINT NOT NULL,
-    position INT NOT NULL,
+    -- Sparse ordering key (gaps of 65536) so a move rewrites only one row
+    position BIGINT NOT NULL,
     added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (playlist_id) REFERENCES playlists(playlist_id) ON DELETE CASCADE,
     FOREIGN KEY (song_id) REFERENCES songs(song_id) ON DELETE CASCADE,
@@ -439,6 +442,19 @@ CREATE INDEX idx_user_id_pt ON payment_transactions(user_id);
 CREATE INDEX idx_transaction_date ON payment_transactions(transaction_date DESC);
 CREATE INDEX idx_status_pt ON payment_transactions(status);
 
+-- Token revocations (bearer token logouts, polled by every node)
+-- ============================================================================
+
+CREATE TABLE token_revocations (
+    revocation_id BIGSERIAL PRIMARY KEY,
+    token_id VARCHAR(32) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_revoked_at_tr ON token_revocations(revoked_at);
+CREATE INDEX idx_expires_at_tr ON token_revocations(expires_at);
+
 -- Full-Text Search Setup
 -- ============================================================================
 
@@ -25,6 +25,7 @@ CREATE TABLE users (
 CREATE INDEX idx_email ON users(email);
 CREATE INDEX idx_username ON users(username);
 CREATE INDEX idx_subscription_type ON users(subscription_type);
+CREATE INDEX idx_users_created_at_id ON users(created_at, user_id);
 
 CREATE TABLE user_profiles (
     profile_id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -102,6 +103,7 @@ CREATE INDEX idx_artist_id_songs ON songs(artist_id);
 CREATE INDEX idx_album_id ON songs(album_id);
 CREATE INDEX idx_genre ON songs(genre);
 CREATE FULLTEXT INDEX idx_song_fulltext ON songs(song_title);
+CREATE INDEX idx_songs_created_at_id ON songs(created_at, song_id);
 
 -- Playlists
 -- ============================================================================
@@ -113,6 +115,8 @@ CREATE TABLE playlists (
     description TEXT,
     is_public BOOLEAN DEFAULT TRUE,
     cover_image_url VARCHAR(500),
+    total_songs INT DEFAULT 0,
+    total_duration_seconds INT DEFAULT 0,
     follower_count BIGINT DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
@@ -126,15 +130,19 @@ CREATE TABLE playlist_songs (
     playlist_song_id BIGINT AUTO_INCREMENT PRIMARY KEY,
     playlist_id BIGINT NOT NULL,
     song_id BIGINT NOT NULL,
+    added_by_user_id BIGINT,
     added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    position INT,
+    -- Sparse ordering key (gaps of 65536) so a move rewrites only one row
+    position BIGINT NOT NULL,
     FOREIGN KEY (playlist_id) REFERENCES playlists(playlist_id) ON DELETE CASCADE,
     FOREIGN KEY (song_id) REFERENCES songs(song_id) ON DELETE CASCADE,
+    FOREIGN KEY (added_by_user_id) REFERENCES users(user_id) ON DELETE SET NULL,
     UNIQUE KEY unique_playlist_song (playlist_id, song_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 CREATE INDEX idx_playlist_id ON playlist_songs(playlist_id);
 CREATE INDEX idx_song_id_playlist ON playlist_songs(song_id);
+CREATE INDEX idx_playlist_position ON playlist_songs(playlist_id, position);
 
 -- User Activity
 -- ============================================================================
@@ -186,3 +194,66 @@ CREATE TABLE user_follows_playlist (
     FOREIGN KEY (playlist_id) REFERENCES playlists(playlist_id) ON DELETE CASCADE,
     UNIQUE KEY unique_user_playlist (user_id, playlist_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Analytics and Reporting
+-- ============================================================================
+
+CREATE TABLE daily_song_stats (
+    stat_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    song_id BIGINT NOT NULL,
+    stat_date DATE NOT NULL,
+    play_count INT DEFAULT 0,
+    unique_listeners INT DEFAULT 0,
+    skip_count INT DEFAULT 0,
+    completion_rate DECIMAL(5, 2),
+    avg_completion_percentage DECIMAL(5, 2),
+    FOREIGN KEY (song_id) REFERENCES songs(song_id) ON DELETE CASCADE,
+    UNIQUE KEY unique_song_date (song_id, stat_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE INDEX idx_stat_date_dss ON daily_song_stats(stat_date);
+
+CREATE TABLE daily_artist_stats (
+    stat_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    artist_id BIGINT NOT NULL,
+    stat_date DATE NOT NULL,
+    total_plays INT DEFAULT 0,
+    unique_listeners INT DEFAULT 0,
+    new_followers INT DEFAULT 0,
+    FOREIGN KEY (artist_id) REFERENCES artists(artist_id) ON DELETE CASCADE,
+    UNIQUE KEY unique_artist_date (artist_id, stat_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE INDEX idx_stat_date_das ON daily_artist_stats(stat_date);
+
+-- Recommendations
+-- ============================================================================
+
+CREATE TABLE recommendations (
+    recommendation_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    song_id BIGINT NOT NULL,
+    recommendation_source VARCHAR(20) NOT NULL CHECK (recommendation_source IN ('Collaborative', 'Content-Based', 'Trending', 'Editorial')),
+    relevance_score DECIMAL(5, 2),
+    generated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    was_played BOOLEAN DEFAULT FALSE,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (song_id) REFERENCES songs(song_id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE INDEX idx_user_source_rec ON recommendations(user_id, recommendation_source);
+CREATE INDEX idx_user_generated ON recommendations(user_id, generated_at);
+CREATE INDEX idx_song_id_rec ON recommendations(song_id);
+
+-- Token revocations (bearer token logouts, polled by every node)
+-- ============================================================================
+
+CREATE TABLE token_revocations (
+    revocation_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    token_id VARCHAR(32) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE INDEX idx_revoked_at_tr ON token_revocations(revoked_at);
+CREATE INDEX idx_expires_at_tr ON token_revocations(expires_at);
@@ -0,0 +1,233 @@
+package com.algorythm.auth;
+
+import com.algorythm.dao.TokenRevocationDAO;
+import com.algorythm.model.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TokenServiceTest {
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OTHER_SECRET = "fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.UTF_8);
+    private static final long TTL = 3600;
+    private static final long MAX_SESSION = 7200;
+    private static final String HEADER = encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}");
+
+    private RevocationCache revocations;
+    private TokenService service;
+
+    /**
+     * Keeps revocations in memory only
+     */
+    private static final class NoDatabase extends TokenRevocationDAO {
+        @Override
+        public void insert(String tokenId, long expiresAtMillis) {}
+
+        @Override
+        public void findRecent(int windowSeconds, Map<String, Long> into) {}
+
+        @Override
+        public void findActive(Map<String, Long> into) {}
+
+        @Override
+        public int deleteExpired() {
+            return 0;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        revocations = new RevocationCache(new NoDatabase(), TimeUnit.HOURS.toMillis(1));
+        service = newService(SECRET, null);
+    }
+
+    @After
+    public void tearDown() {
+        revocations.shutdown();
+    }
+
+    private TokenService newService(byte[] secret, byte[] previous) {
+        return new TokenService(secret, previous, TTL, MAX_SESSION, revocations, 2000);
+    }
+
+    @Test
+    public void issuedTokenVerifies() {
+        AuthToken token = service.verify(service.issue(user(42L, "alice", "free")));
+
+        assertNotNull(token);
+        assertEquals(Long.valueOf(42L), token.getUserId());
+        assertEquals("alice", token.getUsername());
+        assertEquals("free", token.getSubscriptionType());
+        assertEquals(token.getIssuedAt(), token.getAuthTime());
+        assertEquals(token.getIssuedAt() + TTL, token.getExpiresAt());
+        assertFalse(service.shouldRefresh(token));
+    }
+
+    @Test
+    public void tamperedPayloadIsRejected() {
+        String token = service.issue(user(42L, "alice", "free"));
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        String forged = parts[0] + "." + encode(payload.replace("\"free\"", "\"premium\"")) + "." + parts[2];
+
+        assertNull(service.verify(forged));
+    }
+
+    @Test
+    public void tamperedSignatureIsRejected() {
+        String token = service.issue(user(42L, "alice", "free"));
+        char last = token.charAt(token.length() - 1);
+        String forged = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertNull(service.verify(forged));
+    }
+
+    @Test
+    public void malformedTokensAreRejected() {
+        assertNull(service.verify(""));
+        assertNull(service.verify("not-a-token"));
+        assertNull(service.verify("a.b"));
+        assertNull(service.verify("a.b.c.d"));
+        assertNull(service.verify(HEADER + ".!!!." + "x"));
+    }
+
+    @Test
+    public void expiredTokenIsRejected() {
+        long now = now();
+        String token = sign(SECRET, "{\"jti\":\"j1\",\"sid\":\"s1\",\"uid\":42,\"iat\":" + (now - TTL - 10)
+            + ",\"exp\":" + (now - 10) + ",\"auth_time\":" + (now - TTL - 10) + "}");
+
+        assertNull(service.verify(token));
+    }
+
+    @Test
+    public void sessionPastMaxAgeIsRejected() {
+        long now = now();
+        String token = sign(SECRET, "{\"jti\":\"j1\",\"sid\":\"s1\",\"uid\":42,\"iat\":" + (now - 10)
+            + ",\"exp\":" + (now + TTL) + ",\"auth_time\":" + (now - MAX_SESSION - 1) + "}");
+
+        assertNull(service.verify(token));
+    }
+
+    @Test
+    public void previousKeyIsAcceptedDuringRotation() {
+        String oldToken = newService(OTHER_SECRET, null).issue(user(42L, "alice", "free"));
+
+        assertNull(service.verify(oldToken));
+        assertNotNull(newService(SECRET, OTHER_SECRET).verify(oldToken));
+        assertNull(newService(OTHER_SECRET, null).verify(service.issue(user(42L, "alice", "free"))));
+    }
+
+    @Test
+    public void refreshIssuesNewIdInSameSessionWithCurrentPlan() {
+        long now = now();
+        AuthToken token = service.verify(sign(SECRET, "{\"jti\":\"j1\",\"sid\":\"s1\",\"uid\":42,\"name\":\"alice\","
+            + "\"plan\":\"free\",\"iat\":" + (now - TTL / 2) + ",\"exp\":" + (now + TTL / 2)
+            + ",\"auth_time\":" + (now - TTL / 2) + "}"));
+        assertNotNull(token);
+        assertTrue(service.shouldRefresh(token));
+
+        AuthToken refreshed = service.verify(service.refresh(token, "alice", "premium"));
+
+        assertNotNull(refreshed);
+        assertNotEquals(token.getTokenId(), refreshed.getTokenId());
+        assertEquals("s1", refreshed.getSessionId());
+        assertEquals("premium", refreshed.getSubscriptionType());
+        assertEquals(token.getAuthTime(), refreshed.getAuthTime());
+        assertTrue(refreshed.getExpiresAt() > token.getExpiresAt());
+    }
+
+    @Test
+    public void refreshStopsAtMaxSessionAge() {
+        long now = now();
+        long authTime = now - MAX_SESSION + 100;
+        AuthToken token = service.verify(sign(SECRET, "{\"jti\":\"j1\",\"sid\":\"s1\",\"uid\":42,\"iat\":"
+            + (now - TTL / 2) + ",\"exp\":" + (now + TTL / 2) + ",\"auth_time\":" + authTime + "}"));
+        assertNotNull(token);
+
+        AuthToken refreshed = service.verify(service.refresh(token, "alice", "free"));
+
+        assertNotNull(refreshed);
+        assertEquals(authTime + MAX_SESSION, refreshed.getExpiresAt());
+        assertFalse(service.shouldRefresh(refreshed));
+    }
+
+    @Test
+    public void logoutRevokesEveryTokenOfTheSession() throws Exception {
+        long now = now();
+        String original = sign(SECRET, "{\"jti\":\"j1\",\"sid\":\"s1\",\"uid\":42,\"iat\":" + (now - TTL / 2)
+            + ",\"exp\":" + (now + TTL / 2) + ",\"auth_time\":" + (now - TTL / 2) + "}");
+        AuthToken refreshed = service.verify(service.refresh(service.verify(original), "alice", "free"));
+
+        service.revoke(refreshed);
+
+        assertNull(service.verify(original));
+        assertNull(service.verify(service.refresh(refreshed, "alice", "free")));
+        assertNotNull(service.verify(service.issue(user(42L, "alice", "free"))));
+    }
+
+    @Test
+    public void revokingUserRejectsEarlierLoginsOnly() throws Exception {
+        String alice = service.issue(user(42L, "alice", "free"));
+        String bob = service.issue(user(43L, "bob", "free"));
+
+        service.revokeUser(42L);
+
+        assertNull(service.verify(alice));
+        assertNotNull(service.verify(bob));
+        long later = now() + 1;
+        assertNotNull(service.verify(sign(SECRET, "{\"jti\":\"j2\",\"sid\":\"s2\",\"uid\":42,\"iat\":" + later
+            + ",\"exp\":" + (later + TTL) + ",\"auth_time\":" + later + "}")));
+    }
+
+    @Test
+    public void tokenWithoutSessionIdIsItsOwnSession() throws Exception {
+        long now = now();
+        String legacy = sign(SECRET, "{\"jti\":\"j1\",\"uid\":42,\"iat\":" + now + ",\"exp\":" + (now + TTL) + "}");
+        AuthToken token = service.verify(legacy);
+
+        assertNotNull(token);
+        assertEquals("j1", token.getSessionId());
+        assertEquals(now, token.getAuthTime());
+
+        service.revoke(token);
+        assertNull(service.verify(legacy));
+    }
+
+    private static User user(Long id, String username, String plan) {
+        User user = new User();
+        user.setUserId(id);
+        user.setUsername(username);
+        user.setSubscriptionType(plan);
+        return user;
+    }
+
+    private static String sign(byte[] secret, String claims) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            String signingInput = HEADER + "." + encode(claims);
+            return signingInput + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long now() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,60 @@
+package com.algorythm.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PasswordHasherTest {
+    // Far below the production cost, to keep the tests fast
+    private static final int ITERATIONS = 1000;
+
+    private final PasswordHasher hasher = new PasswordHasher(ITERATIONS);
+
+    @Test
+    public void hashVerifiesOnlyTheSamePassword() {
+        String stored = hasher.hash("correct horse");
+
+        assertTrue(stored.startsWith("pbkdf2-sha256$" + ITERATIONS + "$"));
+        assertTrue(hasher.verify("correct horse", stored));
+        assertFalse(hasher.verify("correct horse ", stored));
+        assertFalse(hasher.verify("", stored));
+    }
+
+    @Test
+    public void hashesAreSalted() {
+        assertNotEquals(hasher.hash("secret"), hasher.hash("secret"));
+    }
+
+    @Test
+    public void legacyHashVerifiesAndNeedsRehash() {
+        String legacy = PasswordHasher.legacyHash("secret");
+
+        assertTrue(hasher.verify("secret", legacy));
+        assertFalse(hasher.verify("other", legacy));
+        assertTrue(hasher.needsRehash(legacy));
+
+        String upgraded = hasher.hash("secret");
+        assertTrue(hasher.verify("secret", upgraded));
+        assertFalse(hasher.needsRehash(upgraded));
+    }
+
+    @Test
+    public void cheaperHashNeedsRehashButStillVerifies() {
+        String cheap = hasher.hash("secret");
+        PasswordHasher stronger = new PasswordHasher(ITERATIONS * 2);
+
+        assertTrue(stronger.verify("secret", cheap));
+        assertTrue(stronger.needsRehash(cheap));
+        assertFalse(new PasswordHasher(ITERATIONS / 2).needsRehash(cheap));
+    }
+
+    @Test
+    public void malformedHashesDoNotVerify() {
+        assertFalse(hasher.verify("secret", null));
+        assertFalse(hasher.verify("secret", "pbkdf2-sha256$1000$onlythree"));
+        assertFalse(hasher.verify("secret", "pbkdf2-sha256$1000$!!!$!!!"));
+        assertFalse(hasher.verify("secret", "pbkdf2-sha256$abc$AAAA$AAAA"));
+        assertTrue(hasher.needsRehash(null));
+        assertTrue(hasher.needsRehash("pbkdf2-sha256$abc$AAAA$AAAA"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.algorythm.service;
+
+import com.algorythm.model.Song;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TopNChartTest {
+
+    private static Song song(long id, long playCount) {
+        Song song = new Song("Song " + id, 1L, 180, "/audio/" + id + ".mp3");
+        song.setSongId(id);
+        song.setPlayCount(playCount);
+        return song;
+    }
+
+    @Test
+    public void loadKeepsCapacityInRankingOrder() {
+        TopNChart chart = new TopNChart(2);
+        chart.load(Arrays.asList(song(1, 10), song(2, 30), song(3, 20)));
+
+        List<Song> top = chart.top(5);
+        assertEquals(2, top.size());
+        assertEquals(Long.valueOf(2), top.get(0).getSongId());
+        assertEquals(Long.valueOf(3), top.get(1).getSongId());
+    }
+
+    @Test
+    public void deltasReorderWithoutTouchingPublishedSongs() {
+        Song loaded = song(1, 10);
+        TopNChart chart = new TopNChart(3);
+        chart.load(Arrays.asList(loaded, song(2, 20)));
+        List<Song> before = chart.top(2);
+
+        Map<Long, Long> deltas = new HashMap<>();
+        deltas.put(1L, 15L);
+        deltas.put(99L, 100L);
+        chart.applyDeltas(deltas);
+
+        List<Song> after = chart.top(2);
+        assertEquals(Long.valueOf(1), after.get(0).getSongId());
+        assertEquals(25, after.get(0).getPlayCount());
+        assertEquals(2, chart.size());
+
+        // Earlier readers and the loaded list still see the old counts
+        assertEquals(Long.valueOf(2), before.get(0).getSongId());
+        assertEquals(10, before.get(1).getPlayCount());
+        assertEquals(10, loaded.getPlayCount());
+    }
+
+    @Test
+    public void untrackedDeltasLeaveSnapshotInPlace() {
+        TopNChart chart = new TopNChart(3);
+        chart.load(Collections.singletonList(song(1, 10)));
+        List<Song> before = chart.top(3);
+
+        chart.applyDeltas(Collections.singletonMap(2L, 5L));
+        assertSame(before.get(0), chart.top(3).get(0));
+    }
+}
@@ -0,0 +1,273 @@
+package com.algorythm.servlet;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the semaphore-bulkhead mode on a platform thread-per-task executor,
+ * which stands in for virtual threads on runtimes older than Java 21
+ */
+public class AsyncRequestExecutorTest {
+    private static final long WAIT_SECONDS = 5;
+
+    private final List<AsyncRequestExecutor> executors = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        for (AsyncRequestExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    private AsyncRequestExecutor bulkhead(int permits, int queueCapacity, long timeoutMs) {
+        ExecutorService perTask = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "test-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        AsyncRequestExecutor executor = new AsyncRequestExecutor("test", true, permits, queueCapacity,
+            endpoint -> timeoutMs, perTask, 0);
+        executors.add(executor);
+        return executor;
+    }
+
+    @Test
+    public void bulkheadLimitsConcurrentHandlers() throws Exception {
+        AsyncRequestExecutor executor = bulkhead(2, 10, 0);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Exchange> exchanges = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Exchange exchange = new Exchange("GET");
+            exchanges.add(exchange);
+            executor.execute("songs.get", exchange.request, exchange.response, (req, resp) -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                resp.getWriter().write("ok");
+            });
+        }
+
+        waitUntil(() -> executor.getActiveCount() == 2 && executor.getQueueDepth() == 4);
+        release.countDown();
+        for (Exchange exchange : exchanges) {
+            exchange.awaitComplete();
+            assertEquals(200, exchange.status);
+            assertEquals("ok", exchange.body());
+        }
+        assertEquals(2, maxRunning.get());
+        assertEquals(6, executor.getCompletedCount());
+    }
+
+    @Test
+    public void requestsPastAdmissionLimitAreShed() throws Exception {
+        AsyncRequestExecutor executor = bulkhead(1, 1, 0);
+        Exchange running = submitBlocked(executor, "GET");
+        Exchange queued = submitBlocked(executor, "GET");
+        Exchange shed = submitBlocked(executor, "GET");
+
+        shed.awaitComplete();
+        assertEquals(503, shed.status);
+        assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        running.awaitComplete();
+        queued.awaitComplete();
+        assertEquals(200, running.status);
+        assertEquals(200, queued.status);
+    }
+
+    @Test
+    public void requestWaitingForPermitExpires() throws Exception {
+        AsyncRequestExecutor executor = bulkhead(1, 5, 100);
+        Exchange write = submitBlocked(executor, "POST");
+        AtomicBoolean ran = new AtomicBoolean();
+        Exchange queued = new Exchange("GET");
+        executor.execute("songs.get", queued.request, queued.response, (req, resp) -> ran.set(true));
+
+        queued.awaitComplete();
+        assertEquals(503, queued.status);
+        assertEquals(1, executor.getTimedOutCount());
+
+        // The write that held the permit was past its deadline too, but was left to finish
+        release.countDown();
+        write.awaitComplete();
+        assertEquals(200, write.status);
+        assertEquals("done", write.body());
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void runningGetIsInterruptedAtDeadline() throws Exception {
+        AsyncRequestExecutor executor = bulkhead(1, 5, 100);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Exchange exchange = new Exchange("GET");
+        executor.execute("songs.get", exchange.request, exchange.response, (req, resp) -> {
+            try {
+                release.await();
+                resp.getWriter().write("late");
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+
+        exchange.awaitComplete();
+        assertTrue(interrupted.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(503, exchange.status);
+        assertFalse(exchange.body().contains("late"));
+    }
+
+    private Exchange submitBlocked(AsyncRequestExecutor executor, String method) throws Exception {
+        Exchange exchange = new Exchange(method);
+        int admitted = executor.getActiveCount() + executor.getQueueDepth();
+        executor.execute("user.register", exchange.request, exchange.response, (req, resp) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            resp.getWriter().write("done");
+        });
+        if (exchange.completed.getCount() > 0) {
+            waitUntil(() -> executor.getActiveCount() + executor.getQueueDepth() > admitted);
+        }
+        return exchange;
+    }
+
+    private static void waitUntil(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (!condition.holds()) {
+            assertTrue("Timed out waiting for executor state", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    /**
+     * A request in async mode and the container response it writes to
+     */
+    private static final class Exchange {
+        final HttpServletRequest request;
+        final HttpServletResponse response;
+        final CountDownLatch completed = new CountDownLatch(1);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        volatile int status = 200;
+        private PrintWriter writer;
+
+        Exchange(String method) {
+            AsyncContext context = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {AsyncContext.class}, (proxy, m, args) -> {
+                    if (m.getName().equals("complete")) {
+                        completed.countDown();
+                    }
+                    return null;
+                });
+            request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getMethod":
+                            return method;
+                        case "isAsyncSupported":
+                            return true;
+                        case "startAsync":
+                            return context;
+                        case "getRemoteAddr":
+                            return "127.0.0.1";
+                        default:
+                            return null;
+                    }
+                });
+            ServletOutputStream stream = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    out.write(b);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+            response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "setStatus":
+                            status = (Integer) args[0];
+                            return null;
+                        case "getStatus":
+                            return status;
+                        case "getOutputStream":
+                            return stream;
+                        case "getWriter":
+                            synchronized (this) {
+                                if (writer == null) {
+                                    writer = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), true);
+                                }
+                                return writer;
+                            }
+                        case "flushBuffer":
+                            synchronized (this) {
+                                if (writer != null) {
+                                    writer.flush();
+                                }
+                            }
+                            return null;
+                        case "isCommitted":
+                            return false;
+                        case "getCharacterEncoding":
+                            return "UTF-8";
+                        default:
+                            return null;
+                    }
+                });
+        }
+
+        void awaitComplete() throws InterruptedException {
+            assertTrue("Request was not completed", completed.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        String body() {
+            synchronized (this) {
+                if (writer != null) {
+                    writer.flush();
+                }
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.algorythm.dao;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.config.ReadReplicas;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Creates and seeds the embedded H2 database shared by all benchmarks in a fork.
+ *
+ * Runs against benchmark-db.properties unless algorythm.db.properties names
+ * another file; with benchmark-replica-db.properties every configured
+ * replica is seeded the same way, so reads routed to it see the same data.
+ */
+public final class BenchmarkDatabase {
+    public static final int ARTISTS = 500;
+    public static final int ALBUMS = 2000;
+    public static final int SONGS = 20000;
+    public static final int USERS = 5000;
+
+    private static boolean initialized;
+
+    static {
+        if (System.getProperty("algorythm.db.properties") == null) {
+            System.setProperty("algorythm.db.properties", "benchmark-db.properties");
+        }
+    }
+
+    private BenchmarkDatabase() {}
+
+    public static synchronized void ensureInitialized() throws SQLException, IOException {
+        if (initialized) {
+            return;
+        }
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            createSchema(conn);
+            seed(conn);
+        }
+        ReadReplicas replicas = DatabaseConfig.getReadReplicas();
+        if (replicas != null) {
+            for (ReadReplicas.Replica replica : replicas.getReplicas()) {
+                // Seeded outside the read-only replica pool
+                try (Connection conn = DriverManager.getConnection(replica.getUrl(),
+                        DatabaseConfig.getProperty("db.username", "sa"), DatabaseConfig.getProperty("db.password", ""));
+                     Statement stmt = conn.createStatement()) {
+                    createSchema(conn);
+                    seed(conn);
+                    stmt.execute("CREATE TABLE replica_status (lag_seconds DOUBLE)");
+                    stmt.execute("INSERT INTO replica_status VALUES (0)");
+                }
+            }
+        }
+        initialized = true;
+    }
+
+    private static void createSchema(Connection conn) throws IOException, SQLException {
+        String script;
+        try (InputStream in = BenchmarkDatabase.class.getClassLoader().getResourceAsStream("benchmark-schema.sql");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            script = reader.lines()
+                .filter(line -> !line.trim().startsWith("--"))
+                .collect(Collectors.joining("\n"));
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : script.split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
+    private static void seed(Connection conn) throws SQLException {
+        Random random = new Random(42);
+        conn.setAutoCommit(false);
+
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO artists (artist_name) VALUES (?)")) {
+            for (int i = 1; i <= ARTISTS; i++) {
+                stmt.setString(1, "Artist " + i);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO albums (album_title, artist_id) VALUES (?, ?)")) {
+            for (int i = 1; i <= ALBUMS; i++) {
+                stmt.setString(1, "Album " + i);
+                stmt.setLong(2, 1 + (i % ARTISTS));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        String lyrics = String.join("\n", Collections.nCopies(40, "la la la, a line of lyrics that list views never show"));
+        String[] languages = {"English", "Spanish", "Hindi", "Korean", "French"};
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO songs (song_title, album_id, artist_id, duration_seconds, audio_file_url, " +
+                "track_number, release_date, lyrics, language, play_count, like_count) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= SONGS; i++) {
+                long album = 1 + (i % ALBUMS);
+                stmt.setString(1, "Song title number " + i);
+                stmt.setLong(2, album);
+                stmt.setLong(3, 1 + (album % ARTISTS));
+                stmt.setInt(4, 120 + random.nextInt(240));
+                stmt.setString(5, "/audio/" + i + ".mp3");
+                stmt.setInt(6, 1 + (i % 12));
+                stmt.setDate(7, Date.valueOf(LocalDate.of(2000, 1, 1).plusDays(random.nextInt(9000))));
+                stmt.setString(8, lyrics);
+                stmt.setString(9, languages[i % languages.length]);
+                // Power-law-ish play counts
+                stmt.setLong(10, (long) (1_000_000 / Math.pow(i, 0.8)));
+                stmt.setLong(11, random.nextInt(10000));
+                stmt.addBatch();
+                if (i % 1000 == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO users (username, email, password_hash, full_name, subscription_type) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= USERS; i++) {
+                stmt.setString(1, "user" + i);
+                stmt.setString(2, "user" + i + "@example.com");
+                stmt.setString(3, "hash" + i);
+                stmt.setString(4, "User " + i);
+                stmt.setString(5, i % 4 == 0 ? "Premium" : "Free");
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        conn.commit();
+        conn.setAutoCommit(true);
+    }
+}
@@ -0,0 +1,69 @@
+package com.algorythm.dao;
+
+import com.algorythm.config.DatabaseConfig;
+import com.algorythm.model.Song;
+import com.algorythm.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping 100 already-fetched rows to model objects, isolated from
+ * query execution by re-walking a scrollable result set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMappingBenchmark {
+    private Connection conn;
+    private PreparedStatement songStmt;
+    private PreparedStatement userStmt;
+    private ResultSet songRows;
+    private ResultSet userRows;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkDatabase.ensureInitialized();
+        conn = DatabaseConfig.getConnection();
+        songStmt = conn.prepareStatement("SELECT " + SongRowMapper.LIST + " FROM songs LIMIT 100",
+            ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        songRows = songStmt.executeQuery();
+        userStmt = conn.prepareStatement("SELECT " + UserRowMapper.PROFILE + " FROM users LIMIT 100",
+            ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        userRows = userStmt.executeQuery();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        songRows.close();
+        userRows.close();
+        songStmt.close();
+        userStmt.close();
+        conn.close();
+    }
+
+    @Benchmark
+    public void mapSongs(Blackhole bh) throws Exception {
+        songRows.beforeFirst();
+        while (songRows.next()) {
+            Song song = SongRowMapper.mapList(songRows);
+            bh.consume(song);
+        }
+    }
+
+    @Benchmark
+    public void mapUsers(Blackhole bh) throws Exception {
+        userRows.beforeFirst();
+        while (userRows.next()) {
+            User user = UserRowMapper.mapProfile(userRows);
+            bh.consume(user);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.algorythm.dao;
+
+import com.algorythm.model.Page;
+import com.algorythm.model.Song;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end DAO calls (pool borrow, query, mapping) against embedded H2.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SongDaoBenchmark {
+    private final SongDAO songDAO = new SongDAO();
+    private final UserDAO userDAO = new UserDAO();
+    private String deepCursor;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkDatabase.ensureInitialized();
+        Page<Song> page = songDAO.findPage(null, 100);
+        for (int i = 0; i < 50 && page.hasNext(); i++) {
+            page = songDAO.findPage(page.getNext(), 100);
+        }
+        deepCursor = page.getNext();
+    }
+
+    private static long randomSongId() {
+        return 1 + ThreadLocalRandom.current().nextInt(BenchmarkDatabase.SONGS);
+    }
+
+    @Benchmark
+    public Song findByIdUncached() throws Exception {
+        return songDAO.findByIdUncached(randomSongId());
+    }
+
+    @Benchmark
+    public Song findByIdCached() throws Exception {
+        // 100 hot ids, so this measures the cache hit path
+        return songDAO.findById(1 + (randomSongId() % 100));
+    }
+
+    @Benchmark
+    public List<Song> findByArtist() throws Exception {
+        return songDAO.findByArtist(1 + (randomSongId() % BenchmarkDatabase.ARTISTS));
+    }
+
+    @Benchmark
+    public List<Song> getTopSongs() throws Exception {
+        return songDAO.getTopSongs(50);
+    }
+
+    @Benchmark
+    public Page<Song> findPageDeep() throws Exception {
+        return songDAO.findPage(deepCursor, 100);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public Object findUsersOffsetDeep() throws Exception {
+        return userDAO.findAll(100, 4000);
+    }
+
+    @Benchmark
+    public Object findUsersFirstPage() throws Exception {
+        return userDAO.findPage(null, 100);
+    }
+}
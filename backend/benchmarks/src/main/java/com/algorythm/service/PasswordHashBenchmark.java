@@ -0,0 +1,43 @@
+package com.algorythm.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a PasswordHasher hash and verification per login/registration at
+ * several PBKDF2 iteration counts. Pick auth.pbkdf2.iterations (or
+ * auth.pbkdf2.targetMs) from these numbers; one hashing thread sustains
+ * roughly 1000 / score logins per second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PasswordHashBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"100000", "210000", "310000", "600000"})
+    public int iterations;
+
+    private PasswordHasher hasher;
+    private String stored;
+
+    @Setup
+    public void setup() {
+        hasher = new PasswordHasher(iterations);
+        stored = hasher.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return hasher.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return hasher.verify(PASSWORD, stored);
+    }
+}
@@ -0,0 +1,98 @@
+package com.algorythm.servlet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Burst of concurrent slow clients served thread-per-request on Tomcat's
+ * default 200 platform threads versus one virtual thread per request, as
+ * AsyncRequestExecutor does with async.virtualThreads. Each request spends
+ * clientMs blocked on the client (a slow upload or a slow reader) and then
+ * queryMicros on the database behind a semaphore of poolSize permits, the
+ * same bulkhead both modes use in front of Hikari.
+ *
+ * One operation is a whole burst, so the sampled time is the latency of the
+ * slowest request in it: the p99/max columns are the tail, and
+ * clients / mean is the throughput. The virtual mode needs a Java 21 JVM and
+ * fails its setup on older ones.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestExecutorBenchmark {
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"200", "2000"})
+    public int clients;
+
+    @Param({"20"})
+    public int clientMs;
+
+    @Param({"200"})
+    public int queryMicros;
+
+    @Param({"10"})
+    public int poolSize;
+
+    private ExecutorService executor;
+    private Semaphore connections;
+
+    @Setup
+    public void setup() {
+        if ("virtual".equals(mode)) {
+            executor = AsyncRequestExecutor.newVirtualThreadExecutor("bench-vworker-");
+            if (executor == null) {
+                throw new IllegalStateException("Virtual threads need Java 21, running "
+                    + System.getProperty("java.version"));
+            }
+        } else {
+            executor = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        }
+        connections = new Semaphore(poolSize, true);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            executor.execute(() -> {
+                try {
+                    handle();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private void handle() throws InterruptedException {
+        Thread.sleep(clientMs);
+        connections.acquire();
+        try {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(queryMicros));
+        } finally {
+            connections.release();
+        }
+    }
+}
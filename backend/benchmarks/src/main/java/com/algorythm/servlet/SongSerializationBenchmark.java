@@ -0,0 +1,61 @@
+package com.algorythm.servlet;
+
+import com.algorythm.model.Song;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson serialization of a song list as SongServlet does it: one String for
+ * the whole list versus streaming each song into a JsonWriter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SongSerializationBenchmark {
+    @Param({"100", "1000"})
+    public int size;
+
+    private final Gson gson = JsonSupport.newGson();
+    private List<Song> songs;
+
+    @Setup
+    public void setup() {
+        songs = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Song song = new Song("Song title number " + i, (long) (i % 50), 200, "/audio/" + i + ".mp3");
+            song.setSongId((long) i);
+            song.setAlbumId((long) (i % 200));
+            song.setReleaseDate(LocalDate.of(2020, 1, 1).plusDays(i));
+            song.setLanguage("English");
+            song.setPlayCount(1000L * i);
+            songs.add(song);
+        }
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return gson.toJson(songs);
+    }
+
+    @Benchmark
+    public void streamToWriter() throws IOException {
+        JsonWriter writer = new JsonWriter(Writer.nullWriter());
+        writer.beginArray();
+        for (Song song : songs) {
+            gson.toJson(song, Song.class, writer);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+}
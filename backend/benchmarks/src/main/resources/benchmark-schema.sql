@@ -0,0 +1,69 @@
+-- Reduced schema for the embedded benchmark database
+
+CREATE TABLE users (
+    user_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) UNIQUE NOT NULL,
+    email VARCHAR(100) UNIQUE NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    full_name VARCHAR(100),
+    date_of_birth DATE,
+    gender VARCHAR(50),
+    profile_picture_url VARCHAR(500),
+    subscription_type VARCHAR(20) DEFAULT 'Free',
+    is_verified BOOLEAN DEFAULT FALSE,
+    is_active BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_login TIMESTAMP NULL
+);
+
+CREATE INDEX idx_users_created_at_id ON users(created_at, user_id);
+
+CREATE TABLE artists (
+    artist_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    artist_name VARCHAR(200) NOT NULL
+);
+
+CREATE TABLE albums (
+    album_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    album_title VARCHAR(200) NOT NULL,
+    artist_id BIGINT NOT NULL
+);
+
+CREATE TABLE songs (
+    song_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    song_title VARCHAR(200) NOT NULL,
+    album_id BIGINT,
+    artist_id BIGINT NOT NULL,
+    duration_seconds INT NOT NULL,
+    audio_file_url VARCHAR(500) NOT NULL,
+    audio_quality VARCHAR(20) DEFAULT 'High',
+    track_number INT,
+    disc_number INT DEFAULT 1,
+    release_date DATE,
+    lyrics TEXT,
+    language VARCHAR(50),
+    explicit_content BOOLEAN DEFAULT FALSE,
+    is_premium_only BOOLEAN DEFAULT FALSE,
+    play_count BIGINT DEFAULT 0,
+    like_count BIGINT DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_artist_id_songs ON songs(artist_id);
+CREATE INDEX idx_album_id_songs ON songs(album_id);
+CREATE INDEX idx_play_count ON songs(play_count);
+CREATE INDEX idx_release_date_songs ON songs(release_date);
+CREATE INDEX idx_songs_created_at_id ON songs(created_at, song_id);
+
+CREATE TABLE genres (
+    genre_id INT AUTO_INCREMENT PRIMARY KEY,
+    genre_name VARCHAR(100) UNIQUE NOT NULL
+);
+
+CREATE TABLE song_genres (
+    song_genre_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    song_id BIGINT NOT NULL,
+    genre_id INT NOT NULL
+);
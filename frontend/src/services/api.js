@@ -28,7 +28,17 @@ api.interceptors.request.use(
 
 // Response interceptor for handling errors
 api.interceptors.response.use(
-  (response) => response,
+  (response) => {
+    // The backend hands out a fresh token once the current one is half expired
+    const refreshed = response.headers['x-auth-token'];
+    if (refreshed) {
+      const user = JSON.parse(localStorage.getItem('user') || '{}');
+      if (user.token) {
+        localStorage.setItem('user', JSON.stringify({ ...user, token: refreshed }));
+      }
+    }
+    return response;
+  },
   (error) => {
     if (error.response?.status === 401) {
       // Unauthorized - clear user data and redirect to login
@@ -65,7 +75,7 @@ export const authAPI = {
   },
 
   logout: async () => {
-    const response = await api.get('/user/logout');
+    const response = await api.post('/user/logout');
     return response.data;
   },
 